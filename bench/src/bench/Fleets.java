@@ -0,0 +1,30 @@
+package bench;
+
+import model.Board;
+import model.Ship;
+
+/**
+ * Fleets used by the benchmarks.
+ */
+public class Fleets {
+
+    private Fleets() {
+    }
+
+    /**
+     * Returns a board with every ship placed across the left of the even rows,
+     * so rows 1, 3, 5, 7 and 9 are all water.
+     *
+     * @return the board
+     */
+    public static Board spaced() {
+        Board board = new Board(true);
+        int y = 0;
+        for (Ship ship : board.getShips()) {
+            board.placeShip(ship, 0, y);
+            y += 2;
+        }
+        return board;
+    }
+
+}
@@ -0,0 +1,108 @@
+package bench;
+
+import server.EventLog;
+import server.Game;
+import server.GameShards;
+import server.MatchRoom;
+import server.Player;
+import server.TimeoutService;
+import server.messages.FleetPlacementMessage;
+import server.messages.MoveMessage;
+
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link Game#applyMove} between two players with stub
+ * connections, on a single shard. Each call is a shot at water by the
+ * player whose turn it is, timed from handing the move to the game until
+ * the shooter has been told it is their opponent's turn, so it includes the
+ * hop to the shard's thread and back.
+ * <p>
+ * Each player has 50 squares of water to shoot at, so every 100th call also
+ * ends the game and starts a new one, which is counted in that call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class GameBenchmark {
+
+    private static final int SHOTS_PER_GAME = 100;
+
+    private GameShards shards;
+    private MatchRoom matchRoom;
+    private StubConnection connection1;
+    private StubConnection connection2;
+    private Player player1;
+    private Player player2;
+    private Game game;
+    private int shots1;
+    private int shots2;
+
+    @Setup
+    public void setUp() {
+        EventLog.configure("off", 1);
+        shards = new GameShards(1);
+        matchRoom = new MatchRoom(new TimeoutService(), shards);
+        connection1 = new StubConnection();
+        connection2 = new StubConnection();
+        player1 = new Player(new Socket(), matchRoom, connection1);
+        player2 = new Player(new Socket(), matchRoom, connection2);
+        player1.parseInput(new String[] { "name", "one" });
+        player2.parseInput(new String[] { "name", "two" });
+        newGame();
+    }
+
+    @Benchmark
+    public void applyMove() {
+        if (shots1 + shots2 == SHOTS_PER_GAME) {
+            newGame();
+        }
+        StubConnection shooter;
+        Player player;
+        int shot;
+        if (connection1.isYourTurn()) {
+            shooter = connection1;
+            player = player1;
+            shot = shots1++;
+        } else {
+            shooter = connection2;
+            player = player2;
+            shot = shots2++;
+        }
+        int ended = shooter.getTurnsEnded();
+        game.applyMove(new MoveMessage(shot % 10, shot / 10 * 2 + 1), player);
+        shooter.awaitTurnsEnded(ended + 1);
+    }
+
+    // leaves the old game, and waits until the new one has started
+    private void newGame() {
+        player1.leaveGame();
+        connection1.resetTurn();
+        connection2.resetTurn();
+        game = new Game(player1, player2, shards.assign(),
+                matchRoom.getSessions(), 30000);
+        player1.parseInput(new FleetPlacementMessage(Fleets.spaced()));
+        player2.parseInput(new FleetPlacementMessage(Fleets.spaced()));
+        while (!connection1.isYourTurn() && !connection2.isYourTurn()) {
+            Thread.onSpinWait();
+        }
+        shots1 = 0;
+        shots2 = 0;
+    }
+
+}
@@ -0,0 +1,66 @@
+package bench;
+
+import server.EventLog;
+import server.GameShards;
+import server.MatchRoom;
+import server.Player;
+import server.TimeoutService;
+
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link MatchRoom#sendMatchRoomList} with a number of players
+ * waiting in the match room, sending the list to a player with a stub
+ * connection. The list isn't encoded, as that happens on the player's
+ * writer thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class MatchRoomBenchmark {
+
+    @Param({ "10", "1000", "10000" })
+    public int waiting;
+
+    private MatchRoom matchRoom;
+    private Player reader;
+    private StubConnection connection;
+
+    @Setup
+    public void setUp() {
+        EventLog.configure("off", 1);
+        matchRoom = new MatchRoom(new TimeoutService(), new GameShards(1));
+        for (int i = 0; i < waiting; ++i) {
+            Player player = new Player(new Socket(), matchRoom,
+                    new StubConnection());
+            player.parseInput(new String[] { "name", "waiting" + i });
+            player.parseInput(new String[] { "join", "start" });
+        }
+        connection = new StubConnection();
+        reader = new Player(new Socket(), matchRoom, connection);
+        reader.parseInput(new String[] { "name", "reader" });
+    }
+
+    @Benchmark
+    public Object sendMatchRoomList() {
+        matchRoom.sendMatchRoomList(reader);
+        return connection.getLast();
+    }
+
+}
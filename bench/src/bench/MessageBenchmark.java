@@ -0,0 +1,119 @@
+package bench;
+
+import model.Ship;
+import server.messages.ChatMessage;
+import server.messages.FleetPlacementMessage;
+import server.messages.GameSnapshotMessage;
+import server.messages.MatchRoomDeltaMessage;
+import server.messages.MatchRoomListMessage;
+import server.messages.MoveMessage;
+import server.messages.MoveResponseMessage;
+import server.messages.NotificationMessage;
+import server.messages.SpectatorMoveMessage;
+import server.messages.SpectatorSnapshotMessage;
+import server.net.Codec;
+import server.net.Frames;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks encoding and decoding every message in server.messages with
+ * each codec of the framed protocol. Messages the binary codec has no
+ * layout for fall back to Java serialization, as they do on a connection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class MessageBenchmark {
+
+    @Param({ "ChatMessage", "FleetPlacementMessage", "GameSnapshotMessage",
+            "MatchRoomDeltaMessage", "MatchRoomListMessage", "MoveMessage",
+            "MoveResponseMessage", "NotificationMessage",
+            "SpectatorMoveMessage", "SpectatorSnapshotMessage" })
+    public String message;
+
+    @Param({ "binary", "serialized" })
+    public String codecName;
+
+    private Codec codec;
+    private Object sample;
+
+    @Setup
+    public void setUp() {
+        codec = Frames.getCodec(codecName);
+        sample = sample(message);
+    }
+
+    @Benchmark
+    public Object roundTrip() throws IOException, ClassNotFoundException {
+        byte[] payload = codec.encode(sample);
+        return codec.decode(payload, 0, payload.length);
+    }
+
+    // a message of the given class, of the size it usually is in a game
+    private static Object sample(String name) {
+        FleetPlacementMessage fleet = new FleetPlacementMessage(
+                Fleets.spaced());
+        MoveResponseMessage move = new MoveResponseMessage(4, 0,
+                Ship.Type.AIRCRAFT_CARRIER, 0, 0, false, true, false);
+        switch (name) {
+        case "ChatMessage":
+            return new ChatMessage("good game, well played");
+        case "FleetPlacementMessage":
+            return fleet;
+        case "GameSnapshotMessage":
+            return new GameSnapshotMessage("opponent", fleet, 0x5555L,
+                    0x33L, 0xAAAAL, 0x11L, 0x0F0FL, 0x1L, fleet, true, true);
+        case "MatchRoomDeltaMessage":
+            return new MatchRoomDeltaMessage(42,
+                    new int[] { MatchRoomDeltaMessage.PLAYER_ADDED,
+                            MatchRoomDeltaMessage.PLAYER_REMOVED,
+                            MatchRoomDeltaMessage.NAME_CHANGED },
+                    new String[] { "abcdefgh", "ijklmnop", "qrstuvwx" },
+                    new String[] { "alice", null, "bob" });
+        case "MatchRoomListMessage":
+            HashMap<String, String> list = new HashMap<>();
+            for (int i = 0; i < 20; ++i) {
+                list.put("key" + i, "player" + i);
+            }
+            return new MatchRoomListMessage(list, 42);
+        case "MoveMessage":
+            return new MoveMessage(3, 7);
+        case "MoveResponseMessage":
+            return move;
+        case "NotificationMessage":
+            return new NotificationMessage(
+                    NotificationMessage.OPPONENTS_NAME, "opponent");
+        case "SpectatorMoveMessage":
+            return new SpectatorMoveMessage(1, move);
+        case "SpectatorSnapshotMessage":
+            return new SpectatorSnapshotMessage(
+                    new String[] { "alice", "bob" },
+                    new long[] { 0x5555L, 0xAAAAL },
+                    new long[] { 0x33L, 0x11L },
+                    new long[] { 0x0F0FL, 0x00F0L },
+                    new long[] { 0x1L, 0x0L },
+                    new FleetPlacementMessage[] { fleet, fleet }, 0);
+        default:
+            throw new IllegalArgumentException(name);
+        }
+    }
+
+}
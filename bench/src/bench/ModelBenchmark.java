@@ -0,0 +1,114 @@
+package bench;
+
+import model.Board;
+import model.Ship;
+import model.Square;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the board model: validating a fleet, placing a ship,
+ * guessing a square and checking whether a fleet is sunk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ModelBenchmark {
+
+    private Board placed;
+    private Board empty;
+    private Ship ship;
+
+    @Setup
+    public void setUp() {
+        placed = Fleets.spaced();
+        empty = new Board(true);
+        ship = empty.getShips().get(0);
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return Board.isValid(placed);
+    }
+
+    /**
+     * Places a ship and picks it up again, so every call places it on an
+     * empty board.
+     */
+    @Benchmark
+    public boolean placeShip() {
+        boolean result = empty.placeShip(ship, 3, 4);
+        empty.pickUpShip(ship);
+        return result;
+    }
+
+    @Benchmark
+    public boolean guess(SquareState state) {
+        return state.square.guess();
+    }
+
+    @Benchmark
+    public boolean gameOver(FleetState state) {
+        return state.board.gameOver();
+    }
+
+    /**
+     * A square with or without a ship on it. Guessing a ship's square again
+     * keeps hitting the ship, which costs the same each time.
+     */
+    @State(Scope.Thread)
+    public static class SquareState {
+
+        @Param({ "water", "ship" })
+        public String contents;
+
+        private Square square;
+
+        @Setup
+        public void setUp() {
+            square = Fleets.spaced().getSquare(0,
+                    contents.equals("ship") ? 0 : 1);
+        }
+
+    }
+
+    /**
+     * A fleet with every ship afloat, where gameOver stops at the first
+     * ship, or with only the last ship afloat, where it checks them all.
+     */
+    @State(Scope.Thread)
+    public static class FleetState {
+
+        @Param({ "afloat", "lastAfloat" })
+        public String fleet;
+
+        private Board board;
+
+        @Setup
+        public void setUp() {
+            board = Fleets.spaced();
+            if (fleet.equals("lastAfloat")) {
+                for (int i = 0; i < board.getShips().size() - 1; ++i) {
+                    board.getShips().get(i).sink();
+                }
+            }
+        }
+
+    }
+
+}
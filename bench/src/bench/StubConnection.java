@@ -0,0 +1,100 @@
+package bench;
+
+import server.messages.NotificationMessage;
+import server.net.Connection;
+import server.net.PreparedMessage;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A connection which keeps only the last message sent through it, so that
+ * players can be driven without sockets. It also follows the turn
+ * notifications, so a benchmark can wait for a move to be handled.
+ */
+public class StubConnection implements Connection {
+
+    private volatile Object last;
+    private volatile boolean yourTurn;
+    private AtomicInteger turnsEnded;
+
+    /**
+     * Constructs a StubConnection which hasn't been sent anything.
+     */
+    public StubConnection() {
+        this.turnsEnded = new AtomicInteger();
+    }
+
+    @Override
+    public void send(Object message) {
+        if (message instanceof PreparedMessage) {
+            message = ((PreparedMessage) message).getMessage();
+        }
+        if (message instanceof NotificationMessage) {
+            int code = ((NotificationMessage) message).getCode();
+            if (code == NotificationMessage.YOUR_TURN) {
+                yourTurn = true;
+            } else if (code == NotificationMessage.OPPONENTS_TURN) {
+                yourTurn = false;
+                turnsEnded.incrementAndGet();
+            }
+        }
+        last = message;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return 0;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Returns the last message sent.
+     *
+     * @return the message, unwrapped if it was prepared
+     */
+    public Object getLast() {
+        return last;
+    }
+
+    /**
+     * Returns whether the last turn notification was for this player's turn.
+     *
+     * @return true if it is the player's turn
+     */
+    public boolean isYourTurn() {
+        return yourTurn;
+    }
+
+    /**
+     * Forgets the turn, before a new game is started.
+     */
+    public void resetTurn() {
+        yourTurn = false;
+    }
+
+    /**
+     * Returns the number of times the player has been told it is their
+     * opponent's turn.
+     *
+     * @return the number of turns ended
+     */
+    public int getTurnsEnded() {
+        return turnsEnded.get();
+    }
+
+    /**
+     * Spins until the player has been told it is their opponent's turn a
+     * number of times.
+     *
+     * @param count the number of turns ended to wait for
+     */
+    public void awaitTurnsEnded(int count) {
+        while (turnsEnded.get() < count) {
+            Thread.onSpinWait();
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+package check;
+
+import model.BitBoard;
+import model.Board;
+import model.Ship;
+import model.Square;
+
+import java.util.Random;
+
+/**
+ * Compares {@link BitBoard}, which the server plays games on, against
+ * {@link Board}, which it replaced there, on random fleets. Every
+ * {@link Ship} is placed on both at the same random position, which must
+ * succeed or fail on both, until a whole fleet fits. Every {@link Square} of
+ * the board is then guessed in a random order, and after each guess both
+ * must agree on the hit, the guessed {@link Square}s, which {@link Ship}s
+ * are sunk and whether the game is over.
+ *
+ * <pre>
+ * java -classpath src:check/out check.BitBoardCheck [fleets] [seed]
+ * </pre>
+ */
+public class BitBoardCheck {
+
+    private static final int SQUARES =
+            Board.BOARD_DIMENSION * Board.BOARD_DIMENSION;
+
+    private static int placements;
+    private static int guesses;
+    private static int mismatches;
+
+    /**
+     * Checks the given number of random fleets, and prints every difference
+     * between the two boards. Exits with status 1 if there was one.
+     *
+     * @param args
+     *            The number of fleets (default 20000) and the seed of the
+     *            random fleets (default 1)
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        Random random = new Random(seed);
+        for (int n = 0; n < count; ++n) {
+            Board board = new Board(true);
+            BitBoard bitBoard = new BitBoard();
+            if (!placeFleet(random, n, board, bitBoard)) {
+                continue;
+            }
+            compareShips(n, board, bitBoard);
+            compareShips(n, board, new BitBoard(board));
+            playOut(random, n, board, bitBoard);
+        }
+        System.out.println(count + " fleets, " + placements + " placements, "
+                + guesses + " guesses, " + mismatches + " mismatches");
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    // tries each ship at random positions, on and off the board, until it
+    // fits on both boards, false if the boards disagreed
+    private static boolean placeFleet(Random random, int n, Board board,
+            BitBoard bitBoard) {
+        for (Ship ship : board.getShips()) {
+            boolean placed = false;
+            while (!placed) {
+                ship.setVertical(random.nextBoolean());
+                int x = random.nextInt(Board.BOARD_DIMENSION + 2) - 1;
+                int y = random.nextInt(Board.BOARD_DIMENSION + 2) - 1;
+                boolean bits = bitBoard.placeShip(ship.getType(), x, y,
+                        ship.isVertical());
+                // Board.placeShip doesn't check the co-ordinate across the
+                // ship, and throws if it is off the board
+                placed = (ship.isVertical() ? x : y) < Board.BOARD_DIMENSION
+                        && board.placeShip(ship, x, y);
+                ++placements;
+                if (bits != placed) {
+                    mismatch(n, "placing " + ship.getType() + " at " + x + ","
+                            + y + (ship.isVertical() ? " vertical" : "")
+                            + ": board " + placed + ", bitboard " + bits);
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void compareShips(int n, Board board, BitBoard bitBoard) {
+        for (Ship ship : board.getShips()) {
+            int[] topLeft = ship.getTopLeft();
+            if (!bitBoard.isPlaced(ship.getType())
+                    || bitBoard.getShipX(ship.getType()) != topLeft[0]
+                    || bitBoard.getShipY(ship.getType()) != topLeft[1]
+                    || bitBoard.isShipVertical(ship.getType())
+                            != ship.isVertical()) {
+                mismatch(n, ship.getType() + " placed differently");
+            }
+        }
+        for (int y = 0; y < Board.BOARD_DIMENSION; ++y) {
+            for (int x = 0; x < Board.BOARD_DIMENSION; ++x) {
+                Square square = board.getSquare(x, y);
+                Ship.Type type = square.isShip() ? square.getShip().getType()
+                        : null;
+                if (bitBoard.isShip(x, y) != square.isShip()
+                        || bitBoard.getShipType(x, y) != type) {
+                    mismatch(n, "square " + x + "," + y + " differs");
+                }
+            }
+        }
+    }
+
+    // guesses every square in a random order on both boards
+    private static void playOut(Random random, int n, Board board,
+            BitBoard bitBoard) {
+        int[] order = new int[SQUARES];
+        for (int i = 0; i < SQUARES; ++i) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        for (int i = 0; i < SQUARES; ++i) {
+            int x = order[i] % Board.BOARD_DIMENSION;
+            int y = order[i] / Board.BOARD_DIMENSION;
+            Square square = board.getSquare(x, y);
+            boolean hit = square.guess();
+            ++guesses;
+            if (bitBoard.guess(x, y) != hit || !bitBoard.isGuessed(x, y)) {
+                mismatch(n, "guess at " + x + "," + y + " differs");
+                return;
+            }
+            for (Ship ship : board.getShips()) {
+                if (bitBoard.isSunk(ship.getType()) != ship.isSunk()) {
+                    mismatch(n, ship.getType() + " sunk differs after "
+                            + (i + 1) + " guesses");
+                    return;
+                }
+            }
+            if (bitBoard.gameOver() != board.gameOver()) {
+                mismatch(n, "game over differs after " + (i + 1)
+                        + " guesses");
+                return;
+            }
+        }
+    }
+
+    private static void mismatch(int n, String difference) {
+        ++mismatches;
+        System.out.println("Fleet " + n + ": " + difference);
+    }
+
+}
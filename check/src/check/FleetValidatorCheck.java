@@ -0,0 +1,164 @@
+package check;
+
+import model.Board;
+import model.FleetValidator;
+import model.Ship;
+import model.Square;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Compares {@link FleetValidator#isValid(Board)} against the check
+ * {@link Board#isValid(Board)} made before it, which placed every
+ * {@link Ship} again on a temporary {@link Board} and compared the two, on
+ * random Boards. Most of the Boards are broken on purpose: {@link Ship}s
+ * left unplaced, overlapping, missing, duplicated, turned without moving
+ * their {@link Square}s, {@link Square}s pointing at the wrong {@link Ship},
+ * and {@link Ship}s on {@link Square}s outside the grid. The old check threw
+ * on some of the last, which must now be rejected instead.
+ *
+ * <pre>
+ * java -classpath src:check/out check.FleetValidatorCheck [boards] [seed]
+ * </pre>
+ */
+public class FleetValidatorCheck {
+
+    private static final String[] KINDS = { "placed near the corner",
+            "placed anywhere", "unplaced ship", "overlapping ships",
+            "missing ship", "duplicate ship", "tampered square",
+            "turned ship", "ship off the grid" };
+
+    /**
+     * Checks the given number of random Boards, and prints every Board the
+     * two checks disagree on. Exits with status 1 if there was one.
+     *
+     * @param args
+     *            The number of Boards (default 200000) and the seed of the
+     *            random Boards (default 7)
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 7;
+        Random random = new Random(seed);
+        int accepted = 0;
+        int rejected = 0;
+        int threw = 0;
+        int mismatches = 0;
+        for (int n = 0; n < count; ++n) {
+            int kind = random.nextInt(KINDS.length);
+            Board board = randomBoard(random, kind);
+            boolean actual = FleetValidator.isValid(board);
+            boolean expected;
+            try {
+                expected = referenceIsValid(board);
+            } catch (RuntimeException e) {
+                // the old check only threw on Boards it couldn't read
+                expected = false;
+                ++threw;
+            }
+            if (expected != actual) {
+                ++mismatches;
+                System.out.println("Board " + n + " (" + KINDS[kind]
+                        + "): expected " + expected + ", was " + actual);
+            } else if (actual) {
+                ++accepted;
+            } else {
+                ++rejected;
+            }
+        }
+        System.out.println(count + " boards, " + accepted + " accepted, "
+                + rejected + " rejected (" + threw
+                + " which the old check threw on), " + mismatches
+                + " mismatches");
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Board.isValid before FleetValidator
+    private static boolean referenceIsValid(Board board) {
+        Board tempBoard = new Board(true);
+        for (Ship s : board.getShips()) {
+            if (s.getSquares().size() == 0) {
+                return false;
+            }
+            int[] tl = s.getTopLeft();
+            Ship tempBoardShip = tempBoard.findShipByType(s.getType());
+            tempBoardShip.setVertical(s.isVertical());
+            if (!tempBoard.placeShip(tempBoardShip, tl[0], tl[1])) {
+                return false;
+            }
+        }
+        return tempBoard.shipPlacementEquals(board);
+    }
+
+    // places the ships at random, then breaks the board as the kind says
+    private static Board randomBoard(Random random, int kind) {
+        Board board = new Board(true);
+        ArrayList<Ship> ships = board.getShips();
+        // close to the corner most fleets fail to place, anywhere most fit
+        int range = kind == 0 ? 6 : Board.BOARD_DIMENSION;
+        for (Ship ship : ships) {
+            ship.setVertical(random.nextBoolean());
+            if (kind == 2 && random.nextInt(5) == 0) {
+                continue;
+            }
+            int x = random.nextInt(range);
+            int y = random.nextInt(range);
+            if (!board.placeShip(ship, x, y) && kind == 3) {
+                // sets the squares directly, over other ships
+                for (int i = 0; i < ship.getLength(); ++i) {
+                    int squareX = ship.isVertical() ? x : x + i;
+                    int squareY = ship.isVertical() ? y + i : y;
+                    if (squareX < Board.BOARD_DIMENSION
+                            && squareY < Board.BOARD_DIMENSION) {
+                        Square square = board.getSquare(squareX, squareY);
+                        square.setShip(ship);
+                        ship.setSquare(square);
+                    }
+                }
+            }
+        }
+        Ship ship = ships.get(random.nextInt(ships.size()));
+        switch (kind) {
+        case 4:
+            ships.remove(ship);
+            break;
+        case 5:
+            Ship duplicate = new Ship(ship.getType());
+            duplicate.setVertical(random.nextBoolean());
+            board.placeShip(duplicate, random.nextInt(Board.BOARD_DIMENSION),
+                    random.nextInt(Board.BOARD_DIMENSION));
+            ships.add(duplicate);
+            break;
+        case 6:
+            board.getSquare(random.nextInt(Board.BOARD_DIMENSION),
+                    random.nextInt(Board.BOARD_DIMENSION)).setShip(ship);
+            break;
+        case 7:
+            ship.setVertical(!ship.isVertical());
+            break;
+        case 8:
+            // squares which aren't part of the grid, as a client could send
+            ship.clearSquares();
+            int x = random.nextBoolean() ? -1 - random.nextInt(2)
+                    : Board.BOARD_DIMENSION + random.nextInt(2);
+            int y = random.nextInt(Board.BOARD_DIMENSION);
+            if (random.nextBoolean()) {
+                int swap = x;
+                x = y;
+                y = swap;
+            }
+            for (int i = 0; i < ship.getLength(); ++i) {
+                ship.setSquare(new Square(ship.isVertical() ? x : x + i,
+                        ship.isVertical() ? y + i : y, true));
+            }
+            break;
+        default:
+            break;
+        }
+        return board;
+    }
+
+}
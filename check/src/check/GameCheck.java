@@ -0,0 +1,215 @@
+package check;
+
+import model.Board;
+import model.Ship;
+import server.EventLog;
+import server.Game;
+import server.GameShards;
+import server.MatchRoom;
+import server.Player;
+import server.Sessions;
+import server.TimeoutService;
+import server.messages.FleetPlacementMessage;
+import server.messages.MoveMessage;
+import server.messages.NotificationMessage;
+import server.net.Connection;
+import server.net.PreparedMessage;
+
+import java.net.Socket;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Plays games to the end between two players with stub connections on a
+ * single shard, and checks that a game which was won is over for both
+ * players: its resume tokens are forgotten so {@link Sessions} is empty
+ * again, the shard no longer counts it, neither player is still in it, and
+ * the loser leaving or losing their connection afterwards doesn't tell the
+ * winner anything.
+ *
+ * <pre>
+ * java -classpath src:check/out check.GameCheck [games]
+ * </pre>
+ */
+public class GameCheck {
+
+    // time a game is given to get to each step
+    private static final long WAIT = 5000;
+
+    private static int failures;
+
+    /**
+     * Plays the given number of games, and prints every check which failed.
+     * Exits with status 1 if there was one.
+     *
+     * @param args
+     *            The number of games (default 100)
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        EventLog.configure("off", 1);
+        GameShards shards = new GameShards(1);
+        MatchRoom matchRoom = new MatchRoom(new TimeoutService(), shards);
+        Sessions sessions = matchRoom.getSessions();
+        Recorder connection1 = new Recorder();
+        Recorder connection2 = new Recorder();
+        Player player1 = new Player(new Socket(), matchRoom, connection1);
+        Player player2 = new Player(new Socket(), matchRoom, connection2);
+        player1.parseInput(new String[] { "name", "one" });
+        player2.parseInput(new String[] { "name", "two" });
+        for (int n = 0; n < count; ++n) {
+            connection1.reset();
+            connection2.reset();
+            Game game = new Game(player1, player2, shards.assign(), sessions,
+                    30000);
+            connection1.play(game, player1);
+            connection2.play(game, player2);
+            player1.parseInput(new FleetPlacementMessage(fleet()));
+            player2.parseInput(new FleetPlacementMessage(fleet()));
+            if (!await(connection1, connection2)) {
+                fail(n, "the game didn't end");
+                continue;
+            }
+            Recorder winner = connection1.has(NotificationMessage.GAME_WIN)
+                    ? connection1 : connection2;
+            Player loser = winner == connection1 ? player2 : player1;
+            String token1 = connection1.token;
+            String token2 = connection2.token;
+            if (!awaitOver(sessions, shards)) {
+                fail(n, sessions.size() + " sessions and a shard load of "
+                        + shards.getTotalLoad() + " after the game");
+            }
+            if (sessions.get(token1) != null || sessions.get(token2) != null) {
+                fail(n, "a resume token still finds the game");
+            }
+            if (player1.getGame() != null || player2.getGame() != null) {
+                fail(n, "a player is still in the game");
+            }
+            game.playerLeft(loser);
+            game.connectionLost(loser);
+            // handled on the shard thread, which has nothing else to do
+            Thread.sleep(20);
+            if (winner.has(NotificationMessage.OPPONENT_DISCONNECTED)
+                    || winner.has(
+                            NotificationMessage.OPPONENT_CONNECTION_LOST)) {
+                fail(n, "the winner was told the loser left");
+            }
+            if (sessions.size() != 0) {
+                fail(n, "the loser leaving registered a session");
+            }
+        }
+        System.out.println(count + " games, " + sessions.size()
+                + " sessions left, " + failures + " failures");
+        System.exit(failures > 0 ? 1 : 0);
+    }
+
+    // every ship across the left of the even rows
+    private static Board fleet() {
+        Board board = new Board(true);
+        int y = 0;
+        for (Ship ship : board.getShips()) {
+            board.placeShip(ship, 0, y);
+            y += 2;
+        }
+        return board;
+    }
+
+    private static boolean await(Recorder connection1, Recorder connection2)
+            throws InterruptedException {
+        long end = System.currentTimeMillis() + WAIT;
+        while (!connection1.isOver() || !connection2.isOver()) {
+            if (System.currentTimeMillis() > end) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    // the notifications are sent before the game ends itself in the same
+    // event, so it is given a moment
+    private static boolean awaitOver(Sessions sessions, GameShards shards)
+            throws InterruptedException {
+        long end = System.currentTimeMillis() + WAIT;
+        while (sessions.size() != 0 || shards.getTotalLoad() != 0) {
+            if (System.currentTimeMillis() > end) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    private static void fail(int n, String problem) {
+        ++failures;
+        System.out.println("Game " + n + ": " + problem);
+    }
+
+    /**
+     * A connection which keeps the notification codes sent through it, and
+     * shoots at the next square whenever it is the player's turn.
+     */
+    private static class Recorder implements Connection {
+
+        private ConcurrentLinkedQueue<Integer> codes;
+        private volatile String token;
+        private volatile Game game;
+        private volatile Player player;
+        private int next;
+
+        private Recorder() {
+            this.codes = new ConcurrentLinkedQueue<>();
+        }
+
+        private void reset() {
+            codes.clear();
+            token = null;
+            next = 0;
+        }
+
+        private void play(Game game, Player player) {
+            this.game = game;
+            this.player = player;
+        }
+
+        private boolean has(int code) {
+            return codes.contains(code);
+        }
+
+        private boolean isOver() {
+            return has(NotificationMessage.GAME_WIN)
+                    || has(NotificationMessage.GAME_LOSE);
+        }
+
+        @Override
+        public void send(Object message) {
+            if (message instanceof PreparedMessage) {
+                message = ((PreparedMessage) message).getMessage();
+            }
+            if (!(message instanceof NotificationMessage)) {
+                return;
+            }
+            NotificationMessage notification = (NotificationMessage) message;
+            codes.add(notification.getCode());
+            if (notification.getCode() == NotificationMessage.RESUME_TOKEN) {
+                token = notification.getText()[0];
+            } else if (notification.getCode()
+                    == NotificationMessage.YOUR_TURN && next < 100) {
+                // sent from the game's thread, which only queues the move
+                game.applyMove(new MoveMessage(next % 10, next / 10), player);
+                ++next;
+            }
+        }
+
+        @Override
+        public int getQueueDepth() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -2,6 +2,7 @@ package client;
 
 import server.Game;
 import server.messages.ChatMessage;
+import server.messages.FleetPlacementMessage;
 import server.messages.MoveMessage;
 import server.messages.MoveResponseMessage;
 import server.messages.NotificationMessage;
@@ -183,6 +184,13 @@ public class Client extends Thread {
                 break;
             case NotificationMessage.OPPONENT_DISCONNECTED:
                 view.addChatMessage("Opponent disconnected.");
+                break;
+            case NotificationMessage.OPPONENT_CONNECTION_LOST:
+                view.addChatMessage("Opponent lost connection, waiting for them to come back.");
+                break;
+            case NotificationMessage.OPPONENT_RECONNECTED:
+                view.addChatMessage("Opponent reconnected.");
+                break;
             }
         } else if (input instanceof MoveResponseMessage) {
             MoveResponseMessage move = (MoveResponseMessage) input;
@@ -202,7 +210,8 @@ public class Client extends Thread {
     }
 
     /**
-     * Sends the {@link Board} over the {@link ObjectOutputStream}.
+     * Sends the positions of the {@link Ship}s on the {@link Board} over the
+     * {@link ObjectOutputStream}, as a {@link FleetPlacementMessage}.
      * @param board
      *          The {@link Board} to send to the server
      * @throws IOException
@@ -210,8 +219,7 @@ public class Client extends Thread {
     public void sendBoard(Board board) throws IOException {
         System.out.println(">> " + NotificationMessage.SEND_BOARD);
         board.printBoard(true);
-        out.reset();
-        out.writeObject(board);
+        out.writeObject(new FleetPlacementMessage(board));
         out.flush();
     }
 
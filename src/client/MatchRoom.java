@@ -1,7 +1,12 @@
 package client;
 
+import server.messages.MatchRoomDeltaMessage;
 import server.messages.MatchRoomListMessage;
 import server.messages.NotificationMessage;
+import server.net.Codec;
+import server.net.FramedObjectInputStream;
+import server.net.FramedObjectOutputStream;
+import server.net.Frames;
 import view.ClientView;
 import view.InviteReceivedPane;
 import view.InviteSentPane;
@@ -29,6 +34,7 @@ public class MatchRoom extends Thread {
     private String ownName;
     private volatile NameState nameState;
     private HashMap<String, InviteReceivedPane> inviteDialogs;
+    private long lobbySequence = -1;
     private InviteSentPane inviteSentPane;
 
     public String serverAddress;
@@ -56,9 +62,19 @@ public class MatchRoom extends Thread {
                 }
                 int port = Integer.parseInt(portStr);
                 Socket socket = new Socket(hostname, port);
-                out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
-                in = new ObjectInputStream(socket.getInputStream());
-                out.flush();
+                InputStream socketIn = new BufferedInputStream(socket.getInputStream());
+                OutputStream socketOut = new BufferedOutputStream(socket.getOutputStream());
+                int codecs = Frames.readGreeting(socketIn);
+                if (codecs != 0) {
+                    Codec codec = Frames.chooseCodec(socketOut, codecs,
+                            properties.getProperty("protocol.codec", "binary"));
+                    out = new FramedObjectOutputStream(socketOut, codec);
+                    in = new FramedObjectInputStream(socketIn, codec);
+                } else {
+                    out = new ObjectOutputStream(socketOut);
+                    in = new ObjectInputStream(socketIn);
+                    out.flush();
+                }
 
                 serverAddress = socket.getRemoteSocketAddress().toString();
                 System.out.println(serverAddress);
@@ -148,6 +164,21 @@ public class MatchRoom extends Thread {
         sendStringArray(new String[] { "join", "start" });
     }
 
+    /**
+     * Asks the server to pair the player with an opponent from the quick
+     * match queue.
+     */
+    public void joinQuickMatch() {
+        sendStringArray(new String[] { "join", "quick" });
+    }
+
+    /**
+     * Asks the server to take the player out of the quick match queue.
+     */
+    public void cancelQuickMatch() {
+        sendStringArray(new String[] { "join", "cancelquick" });
+    }
+
     /**
      * Enumerations to represent the state of the player's name. The state is
      * WAITING when they are waiting for a response from the server, ACCEPTED means
@@ -178,12 +209,15 @@ public class MatchRoom extends Thread {
         
         if (input instanceof MatchRoomListMessage) {
             final HashMap<String, String> matchRoomList = ((MatchRoomListMessage) input).getMatchRoomList();
+            lobbySequence = ((MatchRoomListMessage) input).getSequence();
             EventQueue.invokeLater(new Runnable() {
                 @Override
                 public void run() {
                     matchRoomView.updateMatchRoomList(matchRoomList);
                 }
             });
+        } else if (input instanceof MatchRoomDeltaMessage) {
+            parseMatchRoomDelta((MatchRoomDeltaMessage) input);
         } else if (input instanceof NotificationMessage) {
             NotificationMessage n = (NotificationMessage) input;
 
@@ -232,6 +266,8 @@ public class MatchRoom extends Thread {
                     System.out.println("");
                     break;
                 case NotificationMessage.JOIN_GAME_REQUEST_ACCEPTED:
+                case NotificationMessage.QUICK_MATCH_QUEUED:
+                case NotificationMessage.QUICK_MATCH_CANCELLED:
                     System.out.println("");
                     break;
                 case NotificationMessage.JOIN_GAME_REQUEST_CANCELLED:
@@ -245,6 +281,33 @@ public class MatchRoom extends Thread {
         }
     }
 
+    /**
+     * Applies the changes in a {@link MatchRoomDeltaMessage} that haven't
+     * been applied yet to the match room list. If any changes were missed,
+     * the whole list is requested from the server instead.
+     *
+     * @param delta changes to the match room list
+     */
+    private void parseMatchRoomDelta(final MatchRoomDeltaMessage delta) {
+        if (lobbySequence < 0 || delta.getSequence() <= lobbySequence) {
+            return;
+        }
+        if (delta.getFirstSequence() > lobbySequence + 1) {
+            System.out.println("missed match room changes, refreshing");
+            lobbySequence = -1;
+            sendStringArray(new String[] { "join", "refresh" });
+            return;
+        }
+        final int firstIndex = (int) (lobbySequence + 1 - delta.getFirstSequence());
+        lobbySequence = delta.getSequence();
+        EventQueue.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                matchRoomView.applyMatchRoomChanges(delta, firstIndex);
+            }
+        });
+    }
+
     /**
      * Starts the game and opens {@link view.ClientView}. Passes the information
      * just received by the server to {@link model.Client} to be parsed.
@@ -253,6 +316,12 @@ public class MatchRoom extends Thread {
      */
     private void startGame(Object firstInput) {
         matchRoomView.setVisible(false);
+        EventQueue.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                matchRoomView.quickMatchEnded();
+            }
+        });
         ClientView clientView = new ClientView(this.out, this.in, this);
         clientModel = clientView.getModel();
         clientModel.parseInput(firstInput);
@@ -0,0 +1,341 @@
+package client.bot;
+
+import model.Board;
+import model.Ship;
+import server.messages.FleetPlacementMessage;
+import server.messages.MatchRoomDeltaMessage;
+import server.messages.MatchRoomListMessage;
+import server.messages.MoveMessage;
+import server.messages.MoveResponseMessage;
+import server.messages.NotificationMessage;
+import server.net.Codec;
+import server.net.FramedObjectInputStream;
+import server.net.FramedObjectOutputStream;
+import server.net.Frames;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A player without a window, which plays games against one partner for as
+ * long as a load test runs. It connects the way the Swing client does,
+ * registers its name and joins the match room. The guest of a pair invites
+ * the host once it sees the host in the match room list, and the host
+ * accepts. Both then place a random fleet and shoot at random squares they
+ * haven't shot at, after a think time, until the game is over, and go back
+ * to the match room for the next game.
+ * <p>
+ * Each bot reads from its own thread. Shots are sent from a shared
+ * scheduler once their think time has passed.
+ */
+public class Bot implements Runnable {
+
+    // time the guest waits for its invitation to be accepted before it
+    // looks for the host again
+    private static final long INVITE_TIMEOUT = 2000;
+
+    private String name;
+    private String partnerName;
+    private boolean host;
+    private long thinkTime;
+    private BotStats stats;
+    private AtomicBoolean running;
+    private ScheduledExecutorService scheduler;
+    private Socket socket;
+    private ObjectOutputStream out;
+    private ObjectInputStream in;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private volatile boolean inGame;
+    private volatile int lobbyVisit;
+    private long invitedAt;
+    private long lobbySequence;
+    private int[] targets;
+    private int nextTarget;
+    private volatile long shotStart;
+
+    /**
+     * Constructs a Bot and connects it to the server. The bot starts
+     * playing once it is run.
+     *
+     * @param hostname the server's host name
+     * @param port the server's port
+     * @param codec name of the codec to ask for if the server uses the
+     *            framed protocol
+     * @param name the bot's name
+     * @param partnerName the name of the bot it plays against
+     * @param host true if the bot accepts its partner's invitation, false if
+     *            it sends it
+     * @param thinkTime average time in milliseconds before each shot
+     * @param stats the counts of the load test
+     * @param running cleared when no more games are to be started
+     * @param scheduler the scheduler sending the shots
+     * @throws IOException if the bot can't connect
+     */
+    public Bot(String hostname, int port, String codec, String name,
+            String partnerName, boolean host, long thinkTime,
+            BotStats stats, AtomicBoolean running,
+            ScheduledExecutorService scheduler) throws IOException {
+        this.name = name;
+        this.partnerName = partnerName;
+        this.host = host;
+        this.thinkTime = thinkTime;
+        this.stats = stats;
+        this.running = running;
+        this.scheduler = scheduler;
+        this.targets = new int[Board.BOARD_DIMENSION * Board.BOARD_DIMENSION];
+        for (int i = 0; i < targets.length; ++i) {
+            targets[i] = i;
+        }
+        this.socket = new Socket(hostname, port);
+        socket.setTcpNoDelay(true);
+        InputStream socketIn = new BufferedInputStream(socket.getInputStream());
+        OutputStream socketOut = new BufferedOutputStream(
+                socket.getOutputStream());
+        int codecs = Frames.readGreeting(socketIn);
+        if (codecs != 0) {
+            Codec chosen = Frames.chooseCodec(socketOut, codecs, codec);
+            out = new FramedObjectOutputStream(socketOut, chosen);
+            in = new FramedObjectInputStream(socketIn, chosen);
+        } else {
+            out = new ObjectOutputStream(socketOut);
+            in = new ObjectInputStream(socketIn);
+            out.flush();
+        }
+        stats.connected();
+    }
+
+    /**
+     * Registers the bot's name, then handles messages from the server until
+     * the connection is closed.
+     */
+    @Override
+    public void run() {
+        try {
+            send(new String[] { "name", name });
+            Object input;
+            while ((input = in.readObject()) != null) {
+                handle(input);
+            }
+            stats.disconnected(!running.get());
+        } catch (IOException e) {
+            stats.disconnected(!running.get() || socket.isClosed());
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+            stats.disconnected(false);
+        }
+    }
+
+    /**
+     * Closes the bot's connection.
+     */
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void handle(Object input) throws IOException {
+        if (input instanceof NotificationMessage) {
+            NotificationMessage notification = (NotificationMessage) input;
+            handleNotification(notification.getCode(),
+                    notification.getText());
+        } else if (input instanceof MoveResponseMessage) {
+            MoveResponseMessage response = (MoveResponseMessage) input;
+            if (!response.isOwnBoard()) {
+                stats.shot(shotStart);
+            }
+        } else if (input instanceof MatchRoomListMessage) {
+            MatchRoomListMessage list = (MatchRoomListMessage) input;
+            lobbySequence = list.getSequence();
+            for (Map.Entry<String, String> entry
+                    : list.getMatchRoomList().entrySet()) {
+                if (partnerName.equals(entry.getValue())) {
+                    invite(entry.getKey());
+                }
+            }
+        } else if (input instanceof MatchRoomDeltaMessage) {
+            MatchRoomDeltaMessage delta = (MatchRoomDeltaMessage) input;
+            for (int i = 0; i < delta.getChangeCount(); ++i) {
+                // changes already in the last list are skipped
+                if (delta.getFirstSequence() + i > lobbySequence
+                        && delta.getChange(i)
+                                != MatchRoomDeltaMessage.PLAYER_REMOVED
+                        && partnerName.equals(delta.getName(i))) {
+                    invite(delta.getKey(i));
+                }
+            }
+            lobbySequence = Math.max(lobbySequence, delta.getSequence());
+        }
+    }
+
+    private void handleNotification(int code, String[] text)
+            throws IOException {
+        switch (code) {
+        case NotificationMessage.NAME_ACCEPTED:
+            joinMatchRoom();
+            break;
+        case NotificationMessage.NEW_JOIN_GAME_REQUEST:
+            if (host && partnerName.equals(text[1])) {
+                send(new String[] { "join", "accept", text[0] });
+            } else {
+                send(new String[] { "join", "reject", text[0] });
+            }
+            break;
+        case NotificationMessage.PLACE_SHIPS:
+            inGame = true;
+            nextTarget = 0;
+            if (host) {
+                stats.gameStarted();
+            }
+            send(new FleetPlacementMessage(randomFleet()));
+            break;
+        case NotificationMessage.YOUR_TURN:
+            scheduleShot();
+            break;
+        case NotificationMessage.GAME_WIN:
+        case NotificationMessage.GAME_LOSE:
+            gameOver(true);
+            break;
+        case NotificationMessage.TIMEOUT_WIN:
+        case NotificationMessage.TIMEOUT_LOSE:
+        case NotificationMessage.TIMEOUT_DRAW:
+        case NotificationMessage.OPPONENT_DISCONNECTED:
+            gameOver(false);
+            break;
+        case NotificationMessage.INVALID_NAME:
+        case NotificationMessage.NAME_TAKEN:
+        case NotificationMessage.INVALID_BOARD:
+        case NotificationMessage.REPEATED_MOVE:
+        case NotificationMessage.NOT_YOUR_TURN:
+        case NotificationMessage.INVALID_MOVE:
+        case NotificationMessage.NOT_IN_GAME:
+            stats.rejected();
+            break;
+        default:
+            break;
+        }
+    }
+
+    // goes back to the match room if the test is still running
+    private void gameOver(boolean finished) {
+        if (!inGame) {
+            return;
+        }
+        inGame = false;
+        if (host) {
+            stats.gameEnded(finished);
+        }
+        if (running.get()) {
+            try {
+                joinMatchRoom();
+            } catch (IOException e) {
+                close();
+            }
+        }
+    }
+
+    private void joinMatchRoom() throws IOException {
+        invitedAt = 0;
+        ++lobbyVisit;
+        lobbySequence = -1;
+        send(new String[] { "join", "start" });
+    }
+
+    // the guest invites the host when it first sees them in the match room,
+    // and asks for the list again if the invitation goes unanswered
+    private void invite(String key) throws IOException {
+        long now = System.currentTimeMillis();
+        if (host || inGame || !running.get()
+                || (invitedAt != 0 && now - invitedAt < INVITE_TIMEOUT)) {
+            return;
+        }
+        invitedAt = now;
+        send(new String[] { "join", "join", key });
+        final int visit = lobbyVisit;
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (lobbyVisit == visit && !inGame) {
+                    try {
+                        send(new String[] { "join", "refresh" });
+                    } catch (IOException e) {
+                        close();
+                    }
+                }
+            }
+        }, INVITE_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    // shoots at a random square not shot at yet in this game
+    private void scheduleShot() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int pick = nextTarget + random.nextInt(targets.length - nextTarget);
+        int target = targets[pick];
+        targets[pick] = targets[nextTarget];
+        targets[nextTarget++] = target;
+        final MoveMessage move = new MoveMessage(
+                target % Board.BOARD_DIMENSION,
+                target / Board.BOARD_DIMENSION);
+        Runnable shot = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    shotStart = System.nanoTime();
+                    send(move);
+                } catch (IOException e) {
+                    close();
+                }
+            }
+        };
+        if (thinkTime <= 0) {
+            shot.run();
+        } else {
+            // between half and one and a half times the think time
+            long delay = thinkTime / 2 + random.nextLong(thinkTime + 1);
+            scheduler.schedule(shot, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // places every ship at a random position and direction it fits in
+    private static Board randomFleet() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Board board = new Board(true);
+        for (Ship ship : board.getShips()) {
+            do {
+                ship.setVertical(random.nextBoolean());
+            } while (!board.placeShip(ship,
+                    random.nextInt(Board.BOARD_DIMENSION),
+                    random.nextInt(Board.BOARD_DIMENSION)));
+        }
+        return board;
+    }
+
+    private void send(Object message) throws IOException {
+        writeLock.lock();
+        try {
+            out.writeObject(message);
+            out.flush();
+            // otherwise a long test keeps every message sent in the
+            // stream's handle table
+            out.reset();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+}
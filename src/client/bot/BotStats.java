@@ -0,0 +1,198 @@
+package client.bot;
+
+import server.metrics.Counter;
+import server.metrics.Histogram;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The counts shared by all the {@link Bot}s of a load test. Every bot
+ * records into the same counters and histogram, which take no locks.
+ */
+public class BotStats {
+
+    private AtomicInteger connected;
+    private AtomicInteger gamesRunning;
+    private Counter gamesFinished;
+    private Counter gamesAbandoned;
+    private Counter shots;
+    private Histogram shotRoundTrip;
+    private Counter connectFailures;
+    private Counter disconnects;
+    private Counter rejections;
+
+    /**
+     * Constructs BotStats with every count at zero.
+     */
+    public BotStats() {
+        this.connected = new AtomicInteger();
+        this.gamesRunning = new AtomicInteger();
+        this.gamesFinished = new Counter();
+        this.gamesAbandoned = new Counter();
+        this.shots = new Counter();
+        this.shotRoundTrip = new Histogram();
+        this.connectFailures = new Counter();
+        this.disconnects = new Counter();
+        this.rejections = new Counter();
+    }
+
+    /**
+     * Called when a bot has connected.
+     */
+    void connected() {
+        connected.incrementAndGet();
+    }
+
+    /**
+     * Called when a bot has lost its connection.
+     *
+     * @param expected false if the connection was lost during the test,
+     *            which counts as an error
+     */
+    void disconnected(boolean expected) {
+        connected.decrementAndGet();
+        if (!expected) {
+            disconnects.increment();
+        }
+    }
+
+    /**
+     * Called when a bot couldn't connect.
+     */
+    void connectFailed() {
+        connectFailures.increment();
+    }
+
+    /**
+     * Called once for each game when its ships are to be placed.
+     */
+    void gameStarted() {
+        gamesRunning.incrementAndGet();
+    }
+
+    /**
+     * Called once for each game when it is over.
+     *
+     * @param finished true if a fleet was sunk, false if the game ended
+     *            because of a timeout or a player leaving
+     */
+    void gameEnded(boolean finished) {
+        gamesRunning.decrementAndGet();
+        if (finished) {
+            gamesFinished.increment();
+        } else {
+            gamesAbandoned.increment();
+        }
+    }
+
+    /**
+     * Records a shot and the time taken for its response to come back.
+     *
+     * @param start when the shot was sent, from {@link System#nanoTime()}
+     */
+    void shot(long start) {
+        shots.increment();
+        shotRoundTrip.recordSince(start);
+    }
+
+    /**
+     * Called when the server rejects a name, a board or a move.
+     */
+    void rejected() {
+        rejections.increment();
+    }
+
+    /**
+     * Returns the number of bots connected.
+     *
+     * @return the number of connections
+     */
+    public int getConnected() {
+        return connected.get();
+    }
+
+    /**
+     * Returns the number of games being played.
+     *
+     * @return the number of running games
+     */
+    public int getGamesRunning() {
+        return gamesRunning.get();
+    }
+
+    /**
+     * Returns the number of games played until a fleet was sunk.
+     *
+     * @return the number of finished games
+     */
+    public long getGamesFinished() {
+        return gamesFinished.get();
+    }
+
+    /**
+     * Returns the number of games that ended because of a timeout or a
+     * player leaving.
+     *
+     * @return the number of abandoned games
+     */
+    public long getGamesAbandoned() {
+        return gamesAbandoned.get();
+    }
+
+    /**
+     * Returns the number of shots answered by the server.
+     *
+     * @return the number of shots
+     */
+    public long getShots() {
+        return shots.get();
+    }
+
+    /**
+     * Returns the time from sending each shot to receiving its response.
+     *
+     * @return the round trips in nanoseconds
+     */
+    public Histogram getShotRoundTrip() {
+        return shotRoundTrip;
+    }
+
+    /**
+     * Returns the number of bots which couldn't connect.
+     *
+     * @return the number of failed connections
+     */
+    public long getConnectFailures() {
+        return connectFailures.get();
+    }
+
+    /**
+     * Returns the number of connections lost during the test.
+     *
+     * @return the number of lost connections
+     */
+    public long getDisconnects() {
+        return disconnects.get();
+    }
+
+    /**
+     * Returns the number of names, boards and moves the server rejected.
+     *
+     * @return the number of rejections
+     */
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    /**
+     * Returns the total number of errors.
+     *
+     * @return failed connections, lost connections, rejections and abandoned
+     *         games
+     */
+    public long getErrors() {
+        return getConnectFailures() + getDisconnects() + getRejections()
+                + getGamesAbandoned();
+    }
+
+}
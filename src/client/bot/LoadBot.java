@@ -0,0 +1,225 @@
+package client.bot;
+
+import server.metrics.Histogram;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a load test against a server with many {@link Bot}s playing at once,
+ * in pairs, without any windows. The server's host name, port and the
+ * codec to ask for are read from config.properties, as the Swing client
+ * does:
+ *
+ * <pre>
+ * java -classpath src client.bot.LoadBot &lt;connections&gt; [think time ms] [seconds]
+ * </pre>
+ *
+ * Progress is printed every five seconds, and a report once the time is up
+ * and the games being played have ended: games and shots per second, shot
+ * round trip percentiles and errors.
+ */
+public class LoadBot {
+
+    // time games still being played at the end are waited for
+    private static final long GRACE_PERIOD = 60000;
+    private static final long PROGRESS_INTERVAL = 5000;
+
+    private String hostname;
+    private int port;
+    private String codec;
+    private int connections;
+    private long thinkTime;
+    private long duration;
+    private BotStats stats;
+    private AtomicBoolean running;
+    private ScheduledThreadPoolExecutor scheduler;
+    private ArrayList<Bot> bots;
+
+    /**
+     * Constructs a LoadBot.
+     *
+     * @param hostname the server's host name
+     * @param port the server's port
+     * @param codec name of the codec the bots ask for
+     * @param connections number of bots, rounded up to an even number
+     * @param thinkTime average time in milliseconds before each shot
+     * @param duration time in milliseconds new games are started for
+     */
+    public LoadBot(String hostname, int port, String codec, int connections,
+            long thinkTime, long duration) {
+        this.hostname = hostname;
+        this.port = port;
+        this.codec = codec;
+        this.connections = connections + connections % 2;
+        this.thinkTime = thinkTime;
+        this.duration = duration;
+        this.stats = new BotStats();
+        this.running = new AtomicBoolean(true);
+        this.bots = new ArrayList<>();
+        this.scheduler = new ScheduledThreadPoolExecutor(
+                Math.max(2, Runtime.getRuntime().availableProcessors()),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "bot-shots");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Connects the bots, lets them play for the duration of the test, waits
+     * for the games still being played, and prints the report.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void run() throws InterruptedException {
+        // names of an earlier test may still be held by the server
+        String prefix = "bot" + Integer.toString(
+                ThreadLocalRandom.current().nextInt(0x10000), 16) + "-";
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < connections; i += 2) {
+            connect(prefix + i, prefix + (i + 1), true);
+            connect(prefix + (i + 1), prefix + i, false);
+        }
+        System.out.println(stats.getConnected() + " bots connected in "
+                + (System.currentTimeMillis() - start) + " ms, "
+                + stats.getConnectFailures() + " failed");
+
+        // games and shots are counted from here, once every bot has
+        // connected
+        long shotsBefore = stats.getShots();
+        long gamesBefore = stats.getGamesFinished();
+        start = System.currentTimeMillis();
+        long end = start + duration;
+        long shots = shotsBefore;
+        long lastProgress = start;
+        while (System.currentTimeMillis() < end) {
+            Thread.sleep(Math.min(PROGRESS_INTERVAL,
+                    Math.max(1, end - System.currentTimeMillis())));
+            long now = System.currentTimeMillis();
+            long total = stats.getShots();
+            System.out.println(progress(now - start, total - shots,
+                    now - lastProgress));
+            shots = total;
+            lastProgress = now;
+        }
+        running.set(false);
+        long graceEnd = System.currentTimeMillis() + GRACE_PERIOD;
+        while (stats.getGamesRunning() > 0
+                && System.currentTimeMillis() < graceEnd) {
+            Thread.sleep(100);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        for (Bot bot : bots) {
+            bot.close();
+        }
+        System.out.print(report(elapsed, stats.getShots() - shotsBefore,
+                stats.getGamesFinished() - gamesBefore));
+    }
+
+    private void connect(String name, String partnerName, boolean host) {
+        try {
+            Bot bot = new Bot(hostname, port, codec, name, partnerName, host,
+                    thinkTime, stats, running, scheduler);
+            bots.add(bot);
+            // reading only needs a small stack, which lets thousands of bots
+            // run on one machine
+            Thread thread = new Thread(null, bot, name, 256 * 1024);
+            thread.setDaemon(true);
+            thread.start();
+        } catch (IOException e) {
+            stats.connectFailed();
+        }
+    }
+
+    private String progress(long elapsed, long shots, long interval) {
+        long[] percentiles = stats.getShotRoundTrip().getPercentiles(50, 99);
+        return (elapsed / 1000) + "s: " + stats.getConnected()
+                + " connected, " + stats.getGamesRunning() + " games running, "
+                + stats.getGamesFinished() + " finished, "
+                + shots * 1000 / Math.max(1, interval) + " shots/s, "
+                + "round trip p50 " + millis(percentiles[0]) + " p99 "
+                + millis(percentiles[1]) + " ms, " + stats.getErrors()
+                + " errors";
+    }
+
+    private String report(long elapsed, long shots, long games) {
+        double seconds = Math.max(1, elapsed) / 1000.0;
+        Histogram roundTrip = stats.getShotRoundTrip();
+        long[] percentiles = roundTrip.getPercentiles(50, 90, 99, 99.9);
+        StringBuilder report = new StringBuilder();
+        report.append("Bots: ").append(connections).append(", think time ")
+                .append(thinkTime).append(" ms, ")
+                .append(String.format("%.1f", seconds)).append(" s\n");
+        report.append("Games: ").append(games).append(" finished, ")
+                .append(String.format("%.1f", games / seconds))
+                .append(" per second\n");
+        report.append("Shots: ").append(shots).append(", ")
+                .append(String.format("%.1f", shots / seconds))
+                .append(" per second\n");
+        report.append("Shot round trip (ms): p50 ")
+                .append(millis(percentiles[0])).append(", p90 ")
+                .append(millis(percentiles[1])).append(", p99 ")
+                .append(millis(percentiles[2])).append(", p99.9 ")
+                .append(millis(percentiles[3])).append(", max ")
+                .append(millis(roundTrip.getMax())).append('\n');
+        report.append("Errors: ").append(stats.getErrors())
+                .append(" (connect failures ")
+                .append(stats.getConnectFailures())
+                .append(", lost connections ").append(stats.getDisconnects())
+                .append(", rejected ").append(stats.getRejections())
+                .append(", abandoned games ")
+                .append(stats.getGamesAbandoned()).append(", still running ")
+                .append(stats.getGamesRunning()).append(")\n");
+        return report.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1e6);
+    }
+
+    /**
+     * Reads the server's address from config.properties and runs a load
+     * test.
+     *
+     * @param args the number of bots, then optionally the think time in
+     *            milliseconds (default 500) and the duration in seconds
+     *            (default 60)
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1 || args.length > 3) {
+            System.out.println("Usage: LoadBot <connections> "
+                    + "[think time ms] [seconds]");
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream inputStream = new FileInputStream(
+                "config.properties")) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            System.out.println("Could not read config.properties, "
+                    + "using localhost:8900");
+        }
+        String hostname = properties.getProperty("hostname", "localhost");
+        int port = Integer.parseInt(properties.getProperty("port", "8900"));
+        String codec = properties.getProperty("protocol.codec", "binary");
+        int connections = Integer.parseInt(args[0]);
+        long thinkTime = args.length > 1 ? Long.parseLong(args[1]) : 500;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : 60;
+        new LoadBot(hostname, port, codec, connections, thinkTime,
+                seconds * 1000).run();
+        System.exit(0);
+    }
+
+}
@@ -0,0 +1,291 @@
+package model;
+
+/**
+ * A compact Battleships board used by the server to keep track of a game. The
+ * 100 {@link Square}s are bits in a pair of longs: bit y * 10 + x of the low
+ * long for the first 64 squares and of the high long for the rest. The board
+ * keeps one such mask for the squares containing ships, one for the squares
+ * that have been guessed and one for each {@link Ship.Type}, so guesses,
+ * sunk ships and the end of the game are all checked with a few bitwise
+ * operations rather than by walking {@link Square} and {@link Ship} objects.
+ */
+public class BitBoard {
+
+    private static final Ship.Type[] TYPES = Ship.Type.values();
+    private static final int SHIP_TYPES = TYPES.length;
+
+    private long shipsLow;
+    private long shipsHigh;
+    private long guessedLow;
+    private long guessedHigh;
+    private long[] shipLow;
+    private long[] shipHigh;
+
+    /**
+     * Creates an empty BitBoard with no {@link Ship}s placed.
+     */
+    public BitBoard() {
+        this.shipLow = new long[SHIP_TYPES];
+        this.shipHigh = new long[SHIP_TYPES];
+    }
+
+    /**
+     * Creates a BitBoard with the {@link Ship}s in the same positions as on a
+     * {@link Board}. The {@link Board} should already have been validated.
+     *
+     * @param board
+     *            The {@link Board} to copy the {@link Ship} positions from
+     */
+    public BitBoard(Board board) {
+        this();
+        for (Ship ship : board.getShips()) {
+            if (ship.getSquares().size() > 0) {
+                int[] tl = ship.getTopLeft();
+                placeShip(ship.getType(), tl[0], tl[1], ship.isVertical());
+            }
+        }
+    }
+
+    /**
+     * Places a {@link Ship} with its top-left {@link Square} at the given
+     * co-ordinates
+     *
+     * @param type
+     *            The {@link Ship.Type} of the {@link Ship}
+     * @param x
+     *            The index of the top-left {@link Square} on the X-axis
+     * @param y
+     *            The index of the top-left {@link Square} on the Y-axis
+     * @param vertical
+     *            true if the {@link Ship} is vertical
+     * @return true if the {@link Ship} has been placed, false if it would be
+     *         off the board or overlap another {@link Ship}, or a
+     *         {@link Ship} of the same type has already been placed
+     */
+    public boolean placeShip(Ship.Type type, int x, int y, boolean vertical) {
+        int length = type.getLength();
+        int end = vertical ? y + length - 1 : x + length - 1;
+        if (x < 0 || y < 0 || end >= Board.BOARD_DIMENSION
+                || (vertical ? x : y) >= Board.BOARD_DIMENSION) {
+            return false;
+        }
+        int t = type.ordinal();
+        if ((shipLow[t] | shipHigh[t]) != 0) {
+            return false;
+        }
+        long low = 0;
+        long high = 0;
+        int index = index(x, y);
+        int step = vertical ? Board.BOARD_DIMENSION : 1;
+        for (int i = 0; i < length; ++i, index += step) {
+            if (index < 64) {
+                low |= 1L << index;
+            } else {
+                high |= 1L << (index - 64);
+            }
+        }
+        if ((low & shipsLow) != 0 || (high & shipsHigh) != 0) {
+            return false;
+        }
+        shipLow[t] = low;
+        shipHigh[t] = high;
+        shipsLow |= low;
+        shipsHigh |= high;
+        return true;
+    }
+
+    /**
+     * Guesses a {@link Square}, marking it as guessed
+     *
+     * @param x
+     *            The index of the {@link Square} on the X-axis
+     * @param y
+     *            The index of the {@link Square} on the Y-axis
+     * @return true if the {@link Square} contains a {@link Ship}
+     */
+    public boolean guess(int x, int y) {
+        int index = index(x, y);
+        if (index < 64) {
+            long bit = 1L << index;
+            guessedLow |= bit;
+            return (shipsLow & bit) != 0;
+        }
+        long bit = 1L << (index - 64);
+        guessedHigh |= bit;
+        return (shipsHigh & bit) != 0;
+    }
+
+    /**
+     * Checks if a {@link Square} has been guessed
+     *
+     * @param x
+     *            The index of the {@link Square} on the X-axis
+     * @param y
+     *            The index of the {@link Square} on the Y-axis
+     * @return true if the {@link Square} has been guessed
+     */
+    public boolean isGuessed(int x, int y) {
+        int index = index(x, y);
+        return index < 64 ? (guessedLow & (1L << index)) != 0
+                : (guessedHigh & (1L << (index - 64))) != 0;
+    }
+
+    /**
+     * Checks if a {@link Square} contains a {@link Ship}
+     *
+     * @param x
+     *            The index of the {@link Square} on the X-axis
+     * @param y
+     *            The index of the {@link Square} on the Y-axis
+     * @return true if the {@link Square} contains a {@link Ship}
+     */
+    public boolean isShip(int x, int y) {
+        int index = index(x, y);
+        return index < 64 ? (shipsLow & (1L << index)) != 0
+                : (shipsHigh & (1L << (index - 64))) != 0;
+    }
+
+    /**
+     * Gets the {@link Ship.Type} of the {@link Ship} on a {@link Square}
+     *
+     * @param x
+     *            The index of the {@link Square} on the X-axis
+     * @param y
+     *            The index of the {@link Square} on the Y-axis
+     * @return the {@link Ship.Type}, or null if the {@link Square} is empty
+     */
+    public Ship.Type getShipType(int x, int y) {
+        int index = index(x, y);
+        for (int t = 0; t < SHIP_TYPES; ++t) {
+            if (index < 64 ? (shipLow[t] & (1L << index)) != 0
+                    : (shipHigh[t] & (1L << (index - 64))) != 0) {
+                return TYPES[t];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if every {@link Square} of a {@link Ship} has been guessed
+     *
+     * @param type
+     *            The {@link Ship.Type} of the {@link Ship}
+     * @return true if the {@link Ship} is placed and sunk
+     */
+    public boolean isSunk(Ship.Type type) {
+        int t = type.ordinal();
+        return (shipLow[t] | shipHigh[t]) != 0
+                && (shipLow[t] & ~guessedLow) == 0
+                && (shipHigh[t] & ~guessedHigh) == 0;
+    }
+
+    /**
+     * Gets the index on the X-axis of the top-left {@link Square} of a placed
+     * {@link Ship}
+     *
+     * @param type
+     *            The {@link Ship.Type} of the {@link Ship}
+     * @return the index of the top-left {@link Square} on the X-axis
+     */
+    public int getShipX(Ship.Type type) {
+        return topLeft(type.ordinal()) % Board.BOARD_DIMENSION;
+    }
+
+    /**
+     * Gets the index on the Y-axis of the top-left {@link Square} of a placed
+     * {@link Ship}
+     *
+     * @param type
+     *            The {@link Ship.Type} of the {@link Ship}
+     * @return the index of the top-left {@link Square} on the Y-axis
+     */
+    public int getShipY(Ship.Type type) {
+        return topLeft(type.ordinal()) / Board.BOARD_DIMENSION;
+    }
+
+    /**
+     * Checks if a placed {@link Ship} is vertical
+     *
+     * @param type
+     *            The {@link Ship.Type} of the {@link Ship}
+     * @return true if the {@link Ship} is vertical
+     */
+    public boolean isShipVertical(Ship.Type type) {
+        int t = type.ordinal();
+        int next = topLeft(t) + Board.BOARD_DIMENSION;
+        return next < 64 ? (shipLow[t] & (1L << next)) != 0
+                : (shipHigh[t] & (1L << (next - 64))) != 0;
+    }
+
+    /**
+     * Checks if a {@link Ship} of a type has been placed
+     *
+     * @param type
+     *            The {@link Ship.Type} of the {@link Ship}
+     * @return true if the {@link Ship} is placed
+     */
+    public boolean isPlaced(Ship.Type type) {
+        int t = type.ordinal();
+        return (shipLow[t] | shipHigh[t]) != 0;
+    }
+
+    /**
+     * Gets the guessed {@link Square}s among the first 64, bit y * 10 + x
+     *
+     * @return the low bits of the guessed squares
+     */
+    public long getGuessedLow() {
+        return guessedLow;
+    }
+
+    /**
+     * Gets the guessed {@link Square}s after the first 64, bit y * 10 + x - 64
+     *
+     * @return the high bits of the guessed squares
+     */
+    public long getGuessedHigh() {
+        return guessedHigh;
+    }
+
+    /**
+     * Gets the guessed {@link Square}s among the first 64 which contain a
+     * {@link Ship}
+     *
+     * @return the low bits of the hit squares
+     */
+    public long getHitsLow() {
+        return guessedLow & shipsLow;
+    }
+
+    /**
+     * Gets the guessed {@link Square}s after the first 64 which contain a
+     * {@link Ship}
+     *
+     * @return the high bits of the hit squares
+     */
+    public long getHitsHigh() {
+        return guessedHigh & shipsHigh;
+    }
+
+    /**
+     * Checks if the game is over(i.e. if every {@link Square} containing a
+     * {@link Ship} has been guessed)
+     *
+     * @return true if all {@link Ship}s are sunk, false otherwise
+     */
+    public boolean gameOver() {
+        return (shipsLow & ~guessedLow) == 0 && (shipsHigh & ~guessedHigh) == 0;
+    }
+
+    // index of the top-left square of a ship, its lowest bit
+    private int topLeft(int t) {
+        return shipLow[t] != 0 ? Long.numberOfTrailingZeros(shipLow[t])
+                : 64 + Long.numberOfTrailingZeros(shipHigh[t]);
+    }
+
+    // index of the bit of a square, y * 10 + x
+    private static int index(int x, int y) {
+        return y * Board.BOARD_DIMENSION + x;
+    }
+
+}
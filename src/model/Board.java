@@ -63,19 +63,7 @@ public class Board implements Serializable {
      *         overlapping or over the edge of the board), otherwise false
      */
     public static boolean isValid(Board board) {
-        Board tempBoard = new Board(true);
-        for (Ship s : board.getShips()) {
-            if (s.getSquares().size() == 0) {
-                return false;
-            }
-            int[] tl = s.getTopLeft();
-            Ship tempBoardShip = tempBoard.findShipByType(s.getType());
-            tempBoardShip.setVertical(s.isVertical());
-            if (!tempBoard.placeShip(tempBoardShip, tl[0], tl[1])) {
-                return false;
-            }
-        }
-        return tempBoard.shipPlacementEquals(board);
+        return FleetValidator.isValid(board);
     }
 
     /**
@@ -253,17 +241,17 @@ public class Board implements Serializable {
      *            The {@link MoveResponseMessage} being applied to the Board
      */
     public void applyMove(MoveResponseMessage move) {
-        Ship ship = move.shipSank();
-        if (ship != null) {
+        if (move.isShipSunk()) {
+            Ship ship = new Ship(move.getSunkShipType());
+            ship.setVertical(move.isSunkShipVertical());
+            ship.updateSquareReferences(this, move.getSunkShipX(),
+                    move.getSunkShipY());
             ship.sink();
             if (!ownBoard) {
-                ship.updateSquareReferences(this);
                 ships.add(ship);
                 firePropertyChange("sankShip", null, ship);
             }
-            for (Square shipSquare : ship.getSquares()) {
-                Square boardSquare = getSquare(shipSquare.getX(),
-                        shipSquare.getY());
+            for (Square boardSquare : ship.getSquares()) {
                 boardSquare.update(true, ship);
             }
             // TODO: Fix me
@@ -298,7 +286,14 @@ public class Board implements Serializable {
         return true;
     }
 
-    private Ship findShipByType(Ship.Type type) {
+    /**
+     * Gets the {@link Ship} of the given {@link Ship.Type}
+     *
+     * @param type
+     *            The {@link Ship.Type} of the {@link Ship}
+     * @return the {@link Ship} of that type, or null if the Board has none
+     */
+    public Ship findShipByType(Ship.Type type) {
         for (Ship s : ships) {
             if (s.getType() == type) {
                 return s;
@@ -0,0 +1,212 @@
+package model;
+
+import java.util.ArrayList;
+
+/**
+ * Checks {@link Ship} placements without building a temporary {@link Board}.
+ * A placement is described by the {@link Ship.Type}, the co-ordinates of its
+ * top-left {@link Square} and its orientation, and the {@link Square}s it
+ * covers are built as a 100-bit mask in two longs, the same layout as
+ * {@link BitBoard}. Bounds and overlaps are checked with a few bitwise
+ * operations, and no objects are created while validating.
+ */
+public class FleetValidator {
+
+    private static final Ship.Type[] TYPES = Ship.Type.values();
+
+    /**
+     * Validates {@link Ship} placements, checking that every {@link Ship} is
+     * within the board and that none of them overlap. The placements are
+     * given as parallel arrays, one entry per {@link Ship}.
+     *
+     * @param types
+     *            The ordinal of the {@link Ship.Type} of each {@link Ship}
+     * @param xs
+     *            The index of the top-left {@link Square} on the X-axis
+     * @param ys
+     *            The index of the top-left {@link Square} on the Y-axis
+     * @param vertical
+     *            true for each {@link Ship} that is vertical
+     * @return true if the placements are valid, otherwise false
+     */
+    public static boolean isValid(int[] types, int[] xs, int[] ys,
+            boolean[] vertical) {
+        int count = types.length;
+        if (xs.length != count || ys.length != count
+                || vertical.length != count) {
+            return false;
+        }
+        long low = 0;
+        long high = 0;
+        for (int i = 0; i < count; ++i) {
+            if (types[i] < 0 || types[i] >= TYPES.length) {
+                return false;
+            }
+            int length = TYPES[types[i]].getLength();
+            if (!fits(length, xs[i], ys[i], vertical[i])) {
+                return false;
+            }
+            long shipLow = maskLow(length, xs[i], ys[i], vertical[i]);
+            long shipHigh = maskHigh(length, xs[i], ys[i], vertical[i]);
+            if ((shipLow & low) != 0 || (shipHigh & high) != 0) {
+                return false;
+            }
+            low |= shipLow;
+            high |= shipHigh;
+        }
+        return true;
+    }
+
+    /**
+     * Validates a whole fleet: the placements must be valid, and there must be
+     * exactly one {@link Ship} of every {@link Ship.Type}.
+     *
+     * @param types
+     *            The ordinal of the {@link Ship.Type} of each {@link Ship}
+     * @param xs
+     *            The index of the top-left {@link Square} on the X-axis
+     * @param ys
+     *            The index of the top-left {@link Square} on the Y-axis
+     * @param vertical
+     *            true for each {@link Ship} that is vertical
+     * @return true if the fleet is complete and valid, otherwise false
+     */
+    public static boolean isFleet(int[] types, int[] xs, int[] ys,
+            boolean[] vertical) {
+        if (types.length != TYPES.length
+                || !isValid(types, xs, ys, vertical)) {
+            return false;
+        }
+        int seen = 0;
+        for (int type : types) {
+            seen |= 1 << type;
+        }
+        return seen == (1 << TYPES.length) - 1;
+    }
+
+    /**
+     * Validates a Board by checking its {@link Ship} positions are correct,
+     * with the same result as placing its {@link Ship}s on an empty
+     * {@link Board} and comparing the two. Every {@link Ship} must be placed,
+     * within the board and not overlapping another, and the {@link Square}s
+     * of the Board must match the {@link Ship}s.
+     *
+     * @param board
+     *            The Board which is having its validity tested
+     * @return true if the Board and its {@link Ship}s are valid, otherwise
+     *         false
+     */
+    public static boolean isValid(Board board) {
+        ArrayList<Ship> ships = board.getShips();
+        long low = 0;
+        long high = 0;
+        for (int i = 0; i < ships.size(); ++i) {
+            Ship ship = ships.get(i);
+            if (ship.getSquares().size() == 0) {
+                return false;
+            }
+            int x = topLeftX(ship);
+            int y = topLeftY(ship);
+            int length = ship.getLength();
+            if (!fits(length, x, y, ship.isVertical())) {
+                return false;
+            }
+            long shipLow = maskLow(length, x, y, ship.isVertical());
+            long shipHigh = maskHigh(length, x, y, ship.isVertical());
+            if ((shipLow & low) != 0 || (shipHigh & high) != 0) {
+                return false;
+            }
+            low |= shipLow;
+            high |= shipHigh;
+        }
+
+        // the squares of the board must contain exactly the placed ships
+        for (int y = 0; y < Board.BOARD_DIMENSION; ++y) {
+            for (int x = 0; x < Board.BOARD_DIMENSION; ++x) {
+                int index = y * Board.BOARD_DIMENSION + x;
+                boolean placed = index < 64 ? (low & (1L << index)) != 0
+                        : (high & (1L << (index - 64))) != 0;
+                Square square = board.getSquare(x, y);
+                if (square.isShip() != placed) {
+                    return false;
+                }
+                if (placed && square.getShip().getType()
+                        != placedType(ships, x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // checks the ship is within the board
+    private static boolean fits(int length, int x, int y, boolean vertical) {
+        int end = vertical ? y + length - 1 : x + length - 1;
+        return x >= 0 && y >= 0 && end < Board.BOARD_DIMENSION
+                && (vertical ? x : y) < Board.BOARD_DIMENSION;
+    }
+
+    // bits of the first 64 squares covered by a ship
+    private static long maskLow(int length, int x, int y, boolean vertical) {
+        long mask = 0;
+        int index = y * Board.BOARD_DIMENSION + x;
+        int step = vertical ? Board.BOARD_DIMENSION : 1;
+        for (int i = 0; i < length; ++i, index += step) {
+            if (index < 64) {
+                mask |= 1L << index;
+            }
+        }
+        return mask;
+    }
+
+    // bits of the last 36 squares covered by a ship
+    private static long maskHigh(int length, int x, int y, boolean vertical) {
+        long mask = 0;
+        int index = y * Board.BOARD_DIMENSION + x;
+        int step = vertical ? Board.BOARD_DIMENSION : 1;
+        for (int i = 0; i < length; ++i, index += step) {
+            if (index >= 64) {
+                mask |= 1L << (index - 64);
+            }
+        }
+        return mask;
+    }
+
+    // type of the placed ship covering a square, ships are known not to
+    // overlap
+    private static Ship.Type placedType(ArrayList<Ship> ships, int x, int y) {
+        for (int i = 0; i < ships.size(); ++i) {
+            Ship ship = ships.get(i);
+            int shipX = topLeftX(ship);
+            int shipY = topLeftY(ship);
+            int end = ship.getLength() - 1;
+            if (ship.isVertical() ? x == shipX && y >= shipY
+                    && y <= shipY + end : y == shipY && x >= shipX
+                    && x <= shipX + end) {
+                return ship.getType();
+            }
+        }
+        return null;
+    }
+
+    // same as Ship.getTopLeft()[0], without creating an array
+    private static int topLeftX(Ship ship) {
+        ArrayList<Square> squares = ship.getSquares();
+        int x = squares.get(0).getX();
+        for (int i = 1; i < squares.size(); ++i) {
+            x = Math.min(x, squares.get(i).getX());
+        }
+        return x;
+    }
+
+    // same as Ship.getTopLeft()[1], without creating an array
+    private static int topLeftY(Ship ship) {
+        ArrayList<Square> squares = ship.getSquares();
+        int y = squares.get(0).getY();
+        for (int i = 1; i < squares.size(); ++i) {
+            y = Math.min(y, squares.get(i).getY());
+        }
+        return y;
+    }
+
+}
@@ -170,6 +170,15 @@ public class Ship implements Serializable {
             this.name = name;
         }
 
+        /**
+         * Gets the length of the Type
+         * @return 
+         *          the number of {@link Square}s a Ship of the Type covers
+         */
+        public int getLength() {
+            return length;
+        }
+
         /**
          * Gets the name of the Type
          * @return 
@@ -194,4 +203,27 @@ public class Ship implements Serializable {
         this.squares = newSquares;
     }
 
+    /**
+     * Sets the list of {@link Square}s which indicate the position of the 
+     * Ship to board's {@link Square}s, starting from the top-left 
+     * {@link Square} and following the orientation of the Ship
+     * @param board 
+     *          The {@link Board} which is being used to update from
+     * @param x 
+     *          The index of the top-left {@link Square} on the X-axis
+     * @param y 
+     *          The index of the top-left {@link Square} on the Y-axis
+     */
+    public void updateSquareReferences(Board board, int x, int y) {
+        ArrayList<Square> newSquares = new ArrayList<>();
+        for (int i = 0; i < getLength(); i++) {
+            if (vertical) {
+                newSquares.add(board.getSquare(x, y + i));
+            } else {
+                newSquares.add(board.getSquare(x + i, y));
+            }
+        }
+        this.squares = newSquares;
+    }
+
 }
@@ -0,0 +1,278 @@
+package server;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The server's event log. Events are numeric codes, mostly the constants of
+ * {@link server.messages.NotificationMessage}, together with the id of the
+ * connection they belong to and up to two numbers or an Object. Logging an
+ * event only copies these into a ring buffer; a background thread turns
+ * them into lines and writes them in batches, so game threads never wait
+ * for the console or build strings.
+ * <p>
+ * Events below the configured level return straight away, and debug events
+ * can be sampled so that only one in every few is kept. If the buffer is
+ * full the event is dropped and counted, rather than blocking the caller.
+ */
+public class EventLog implements Runnable {
+
+    public static final int DEBUG = 0;
+    public static final int INFO = 1;
+    public static final int WARN = 2;
+    public static final int OFF = 3;
+
+    /**
+     * Direction of an event received from a client.
+     */
+    public static final int IN = 0;
+
+    /**
+     * Direction of an event sent to a client.
+     */
+    public static final int OUT = 1;
+
+    /**
+     * Code of a player disconnecting, which has no notification.
+     */
+    public static final int DISCONNECTED = 1;
+
+    /**
+     * Code of a connection closed because its outbound queue is full.
+     */
+    public static final int QUEUE_FULL = 2;
+
+    private static final String[] LEVEL_NAMES = { "DEBUG", "INFO", "WARN" };
+    private static final int CAPACITY = 1 << 14;
+    private static final int MASK = CAPACITY - 1;
+    private static final int BATCH_SIZE = 512;
+    private static final int NO_NUMBERS = Integer.MIN_VALUE;
+
+    private static volatile int level = DEBUG;
+    private static volatile int sampleRate = 1;
+    private static EventLog instance = new EventLog(System.out);
+
+    private long[] times;
+    private int[] levels;
+    private int[] directions;
+    private int[] connections;
+    private int[] codes;
+    private int[] xs;
+    private int[] ys;
+    private Object[] texts;
+    private AtomicLongArray published;
+    private AtomicLong head;
+    private volatile long tail;
+    private AtomicLong dropped;
+    private Writer out;
+    private Thread writer;
+
+    private EventLog(OutputStream out) {
+        this.times = new long[CAPACITY];
+        this.levels = new int[CAPACITY];
+        this.directions = new int[CAPACITY];
+        this.connections = new int[CAPACITY];
+        this.codes = new int[CAPACITY];
+        this.xs = new int[CAPACITY];
+        this.ys = new int[CAPACITY];
+        this.texts = new Object[CAPACITY];
+        this.published = new AtomicLongArray(CAPACITY);
+        for (int i = 0; i < CAPACITY; ++i) {
+            published.set(i, -1);
+        }
+        this.head = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.out = new BufferedWriter(new OutputStreamWriter(out,
+                StandardCharsets.UTF_8));
+        this.writer = new Thread(this, "event-log");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeBatch(new StringBuilder(), Integer.MAX_VALUE);
+            }
+        }));
+    }
+
+    /**
+     * Sets the lowest level of the events that are logged, and how many
+     * debug events are logged.
+     *
+     * @param level name of the level: debug, info, warn or off
+     * @param sampleRate one in this many debug events is logged
+     */
+    public static void configure(String level, int sampleRate) {
+        int parsed = DEBUG;
+        while (parsed < OFF && !LEVEL_NAMES[parsed].equalsIgnoreCase(level)) {
+            ++parsed;
+        }
+        if (parsed == OFF && !level.equalsIgnoreCase("off")) {
+            System.out.println("Unknown log level " + level);
+            parsed = INFO;
+        }
+        EventLog.level = parsed;
+        EventLog.sampleRate = Math.max(1, sampleRate);
+    }
+
+    /**
+     * Checks if events of a level are logged. Only needed before doing work
+     * to find the arguments of an event.
+     *
+     * @param level the level of the event
+     * @return true if events of the level are logged
+     */
+    public static boolean isEnabled(int level) {
+        return level >= EventLog.level;
+    }
+
+    /**
+     * Logs an event.
+     *
+     * @param level the level of the event
+     * @param direction {@link #IN} or {@link #OUT}
+     * @param connection the id of the connection
+     * @param code the code of the event
+     */
+    public static void log(int level, int direction, int connection,
+            int code) {
+        if (level >= EventLog.level) {
+            instance.append(level, direction, connection, code, NO_NUMBERS, 0,
+                    null);
+        }
+    }
+
+    /**
+     * Logs an event with an Object, which is only converted to a String by
+     * the background thread.
+     *
+     * @param level the level of the event
+     * @param direction {@link #IN} or {@link #OUT}
+     * @param connection the id of the connection
+     * @param code the code of the event
+     * @param text the Object logged with the event
+     */
+    public static void log(int level, int direction, int connection, int code,
+            Object text) {
+        if (level >= EventLog.level) {
+            instance.append(level, direction, connection, code, NO_NUMBERS, 0,
+                    text);
+        }
+    }
+
+    /**
+     * Logs an event with two numbers, such as the coordinates of a shot.
+     *
+     * @param level the level of the event
+     * @param direction {@link #IN} or {@link #OUT}
+     * @param connection the id of the connection
+     * @param code the code of the event
+     * @param x the first number
+     * @param y the second number
+     */
+    public static void log(int level, int direction, int connection, int code,
+            int x, int y) {
+        if (level >= EventLog.level) {
+            instance.append(level, direction, connection, code, x, y, null);
+        }
+    }
+
+    /**
+     * Returns the number of events dropped because the buffer was full.
+     *
+     * @return the number of dropped events
+     */
+    public static long getDroppedCount() {
+        return instance.dropped.get();
+    }
+
+    private void append(int level, int direction, int connection, int code,
+            int x, int y, Object text) {
+        int rate = sampleRate;
+        if (level == DEBUG && rate > 1
+                && ThreadLocalRandom.current().nextInt(rate) != 0) {
+            return;
+        }
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail >= CAPACITY) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+        int index = (int) (sequence & MASK);
+        times[index] = System.currentTimeMillis();
+        levels[index] = level;
+        directions[index] = direction;
+        connections[index] = connection;
+        codes[index] = code;
+        xs[index] = x;
+        ys[index] = y;
+        texts[index] = text;
+        published.lazySet(index, sequence);
+    }
+
+    /**
+     * Writes the logged events in batches, sleeping briefly whenever the
+     * buffer is empty.
+     */
+    @Override
+    public void run() {
+        StringBuilder line = new StringBuilder(128);
+        while (true) {
+            if (writeBatch(line, BATCH_SIZE) == 0) {
+                LockSupport.parkNanos(1000000);
+            }
+        }
+    }
+
+    // writes up to the given number of events, returns how many were written
+    private synchronized int writeBatch(StringBuilder line, int limit) {
+        int count = 0;
+        long sequence = tail;
+        try {
+            while (count < limit) {
+                int index = (int) (sequence & MASK);
+                if (published.get(index) != sequence) {
+                    break;
+                }
+                format(line, index);
+                texts[index] = null;
+                out.append(line);
+                line.setLength(0);
+                tail = ++sequence;
+                ++count;
+            }
+            if (count > 0) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return count;
+    }
+
+    private void format(StringBuilder line, int index) {
+        line.append(times[index]).append(' ')
+                .append(LEVEL_NAMES[levels[index]]).append(' ')
+                .append(directions[index] == IN ? "<< #" : ">> #")
+                .append(connections[index]).append(' ').append(codes[index]);
+        if (xs[index] != NO_NUMBERS) {
+            line.append(' ').append(xs[index]).append(' ').append(ys[index]);
+        }
+        if (texts[index] != null) {
+            line.append(' ').append(texts[index]);
+        }
+        line.append('\n');
+    }
+
+}
@@ -1,57 +1,221 @@
 package server;
 
+import model.BitBoard;
 import model.Board;
 import model.Ship;
-import model.Square;
+import server.journal.GameJournal;
+import server.journal.RecoveredGame;
+import server.messages.FleetPlacementMessage;
+import server.messages.GameSnapshotMessage;
 import server.messages.MoveMessage;
 import server.messages.MoveResponseMessage;
 import server.messages.NotificationMessage;
+import server.messages.SpectatorMoveMessage;
+import server.messages.SpectatorSnapshotMessage;
+import server.metrics.Histogram;
+import server.metrics.Metrics;
+import server.replay.Replay;
+import server.replay.ReplayWriter;
 
 import java.util.Random;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * A game between two players. The game is an actor: moves, boards and
+ * players leaving are posted to its {@link Mailbox} as events, which run one
+ * at a time on the thread of the game's {@link GameShard}. Its timeouts run
+ * on the same thread, so the state of the game never moves between threads
+ * and needs no locks. If the shard keeps a {@link GameJournal}, every change
+ * to the game is recorded in it.
+ * <p>
+ * Each seat has a resume token. A player whose connection is lost keeps
+ * their seat for the resume window, during which they can take it back from
+ * a new connection with the token and carry on where they left off.
+ * <p>
+ * Other players can watch the game. They are sent what can be seen of both
+ * boards, then the result of every shot through the game's
+ * {@link Spectators}. When a game that has started ends, it is saved as a
+ * {@link Replay} if the shard keeps them.
+ */
 public class Game {
 
-    private Player player1;
-    private Player player2;
+    private static final AtomicLong nextId = new AtomicLong();
+    // time to apply a move on the shard, and from receiving it to applied
+    private static final Histogram MOVE_TIME = Metrics.histogram("game.move");
+    private static final Histogram RECEIVE_MOVE =
+            Metrics.histogram("receive.move");
+
+    private final long id;
+
+    private volatile Player player1;
+    private volatile Player player2;
     private Player turn;
+    private String token1;
+    private String token2;
 
-    private Timer placementTimer;
-    private Timer turnTimer;
+    private Board board1;
+    private Board board2;
+    private BitBoard bitBoard1;
+    private BitBoard bitBoard2;
+
+    private GameShard shard;
+    private Sessions sessions;
+    private long resumeWindow;
+    private GameJournal journal;
+    private Spectators spectators;
+    private Mailbox mailbox;
+    private TimeoutService timeouts;
+    private TimeoutService.Timeout placementTimeout;
+    private TimeoutService.Timeout turnTimeout;
+    private TimeoutService.Timeout resumeTimeout1;
+    private TimeoutService.Timeout resumeTimeout2;
+    // counts the turns, so a turn timeout which fired just before the turn
+    // changed can tell it is out of date
+    private int turnNumber;
+    private volatile long turnStarted;
 
     public final static int TURN_TIMEOUT = 60000;
     public final static int PLACEMENT_TIMEOUT = 120000;
 
     private boolean gameStarted;
+    private int firstTurn = -1;
+    private byte[] moves = new byte[32];
+    private int moveCount;
+    private int winner = -1;
+    private int outcome = Replay.ABANDONED;
+    private boolean gameOver;
+    private boolean released;
 
     /**
      * Constructs a Game between two players, and informs the players of the
-     * name of their opponent. A timer is started, which the ships are to be
+     * name of their opponent. A timeout is started, which the ships are to be
      * placed by the end of.
      *
      * @param player1 a player
      * @param player2 another player
+     * @param shard the shard running the game's events and timeouts, which
+     *            has already counted the game in its load
+     * @param sessions the resume tokens of the running games
+     * @param resumeWindow time in milliseconds a player who lost their
+     *            connection keeps their seat for
      */
-    public Game(Player player1, Player player2) {
-        this.player1 = player1;
-        this.player2 = player2;
+    public Game(Player player1, Player player2, GameShard shard,
+            Sessions sessions, long resumeWindow) {
+        this(nextId.incrementAndGet(), player1, player2, shard, sessions,
+                resumeWindow);
+        this.token1 = sessions.newToken(this);
+        this.token2 = sessions.newToken(this);
+        // posted before the players can see the game, so it runs first, but
+        // only once both players have the game, so that it can't tell them
+        // to place their ships before their boards would reach it
+        mailbox.post(new Runnable() {
+            @Override
+            public void run() {
+                start();
+            }
+        });
         player1.setGame(this);
         player2.setGame(this);
-        player1.writeNotification(NotificationMessage.OPPONENTS_NAME,
-                player2.getPlayerName());
-        player2.writeNotification(NotificationMessage.OPPONENTS_NAME,
-                player1.getPlayerName());
-        NotificationMessage placeShipsMessage = new NotificationMessage(
-                NotificationMessage.PLACE_SHIPS);
+        mailbox.open();
+    }
 
-        player1.writeObject(placeShipsMessage);
-        System.out.println(">> "  + player1.socket.getRemoteSocketAddress().toString() + " "+ NotificationMessage.PLACE_SHIPS);
-        player2.writeObject(placeShipsMessage);
-        System.out.println(">> "+ player2.socket.getRemoteSocketAddress().toString() + " "+ NotificationMessage.PLACE_SHIPS);
+    private Game(long id, Player player1, Player player2, GameShard shard,
+            Sessions sessions, long resumeWindow) {
+        this.id = id;
+        this.player1 = player1;
+        this.player2 = player2;
+        this.shard = shard;
+        this.sessions = sessions;
+        this.resumeWindow = resumeWindow;
+        this.journal = shard.getJournal();
+        this.timeouts = shard.getThread();
+        this.mailbox = new Mailbox(timeouts, true);
+        this.spectators = new Spectators(this, shard.getFanout());
+        shard.gameCreated(this);
+    }
 
-        placementTimer = new Timer();
-        placementTimer.schedule(new PlacementTimerTask(), PLACEMENT_TIMEOUT);
+    /**
+     * Rebuilds a game recovered from the journal. Neither player is
+     * connected, so both seats wait for their players to resume the game
+     * for the resume window, and the turn timeout carries on from the start.
+     *
+     * @param recovered the game recovered from the journal
+     * @param shard the shard the game's journal is on, which has already
+     *            counted the game in its load
+     * @param sessions the resume tokens of the running games
+     * @param resumeWindow time in milliseconds the players have to resume
+     *            the game
+     * @return the game
+     */
+    public static Game recover(final RecoveredGame recovered, GameShard shard,
+            Sessions sessions, long resumeWindow) {
+        final Game game = new Game(recovered.getId(),
+                Player.absent(recovered.getName(0)),
+                Player.absent(recovered.getName(1)), shard, sessions,
+                resumeWindow);
+        game.token1 = recovered.getToken(0);
+        game.token2 = recovered.getToken(1);
+        // restored before a player resuming with their token gets to it
+        game.mailbox.post(new Runnable() {
+            @Override
+            public void run() {
+                game.restore(recovered);
+            }
+        });
+        sessions.register(game.token1, game);
+        sessions.register(game.token2, game);
+        game.mailbox.open();
+        return game;
+    }
+
+    /**
+     * Makes sure that new games get ids greater than the given one, so they
+     * don't clash with games recovered from the journal.
+     *
+     * @param lastId the greatest id in use
+     */
+    public static void reserveIds(long lastId) {
+        long id;
+        while (lastId > (id = nextId.get())) {
+            if (nextId.compareAndSet(id, lastId)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the id of the game, which identifies it in the journal.
+     *
+     * @return the game's id
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the names of the players in the game. Can be called from any
+     * thread.
+     *
+     * @return the names of the first and the second player
+     */
+    public String[] getPlayerNames() {
+        return new String[] { player1.getPlayerName(),
+                player2.getPlayerName() };
+    }
+
+    /**
+     * Returns how long the player whose turn it is has been thinking. Can be
+     * called from any thread.
+     *
+     * @return the age of the turn in milliseconds, or -1 if no one has the
+     *         turn
+     */
+    public long getTurnAgeMillis() {
+        long started = turnStarted;
+        if (started == 0) {
+            return -1;
+        }
+        return Math.max(0, System.currentTimeMillis() - started);
     }
 
     /**
@@ -68,11 +232,404 @@ public class Game {
     }
 
     /**
-     * Sets the game in both players to null.
+     * Applies a move a player has sent. Responds to the move with either
+     * a NotificationMessage stating an error, or a MoveResponseMessage.
+     *
+     * @see server.messages.NotificationMessage
+     * @see server.messages.MoveResponseMessage
+     * @param move the move sent by the player
+     * @param player the player who sent the move
+     */
+    public void applyMove(final MoveMessage move, final Player player) {
+        final long received = System.nanoTime();
+        mailbox.post(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                move(move.getX(), move.getY(), player);
+                MOVE_TIME.recordSince(start);
+                RECEIVE_MOVE.recordSince(received);
+            }
+        });
+    }
+
+    /**
+     * Sets the board of a player, which has already been validated. Once
+     * both players have set their boards, the game is started.
+     *
+     * @param player the player who sent the board
+     * @param board the player's board
+     */
+    public void placeBoard(final Player player, final Board board) {
+        mailbox.post(new Runnable() {
+            @Override
+            public void run() {
+                setBoard(player, board);
+            }
+        });
+    }
+
+    /**
+     * Keeps the seat of a player whose connection was lost for the resume
+     * window, and tells the opponent they are waiting for them. If the game
+     * was already won, it is ended straight away.
+     *
+     * @param player the player who lost their connection
+     */
+    public void connectionLost(final Player player) {
+        mailbox.post(new Runnable() {
+            @Override
+            public void run() {
+                if (gameOver || !isSeated(player)) {
+                    return;
+                }
+                if (released) {
+                    killGame();
+                    return;
+                }
+                Player opponent = getOpponent(player);
+                EventLog.log(EventLog.INFO, EventLog.OUT, opponent.getId(),
+                        NotificationMessage.OPPONENT_CONNECTION_LOST);
+                opponent.writeNotification(
+                        NotificationMessage.OPPONENT_CONNECTION_LOST);
+                waitForResume(player);
+            }
+        });
+    }
+
+    /**
+     * Gives a seat back to a player who has reconnected with its resume
+     * token, and sends them a snapshot of the game.
+     *
+     * @param token the resume token of the seat
+     * @param player the player on the new connection
+     */
+    public void resume(final String token, final Player player) {
+        mailbox.post(new Runnable() {
+            @Override
+            public void run() {
+                takeSeat(token, player);
+            }
+        });
+    }
+
+    /**
+     * Lets a player watch the game, unless it is over. The player is sent a
+     * snapshot of both boards, then the result of every shot.
+     *
+     * @param player the player who wants to watch the game
+     */
+    public void addSpectator(final Player player) {
+        mailbox.post(new Runnable() {
+            @Override
+            public void run() {
+                if (gameOver || released) {
+                    EventLog.log(EventLog.INFO, EventLog.OUT, player.getId(),
+                            NotificationMessage.GAME_NOT_FOUND);
+                    player.writeNotification(
+                            NotificationMessage.GAME_NOT_FOUND);
+                    return;
+                }
+                player.setWatching(Game.this);
+                spectators.add(player, spectatorSnapshot());
+            }
+        });
+    }
+
+    /**
+     * Stops sending the game's events to a player.
+     *
+     * @param player the player who stopped watching
+     */
+    public void removeSpectator(Player player) {
+        spectators.remove(player);
+    }
+
+    /**
+     * Sends a new snapshot to a spectator who has skipped events because
+     * they were behind.
+     *
+     * @param player the spectator
+     */
+    void resyncSpectator(final Player player) {
+        mailbox.post(new Runnable() {
+            @Override
+            public void run() {
+                spectators.resynced(player, spectatorSnapshot());
+            }
+        });
+    }
+
+    /**
+     * Returns the number of players watching the game.
+     *
+     * @return the number of spectators
+     */
+    public int getSpectatorCount() {
+        return spectators.getCount();
+    }
+
+    /**
+     * Ends the game because a player has left it, and notifies the opponent.
+     *
+     * @param player the player who left
+     */
+    public void playerLeft(final Player player) {
+        mailbox.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!gameOver && isSeated(player)) {
+                    Player opponent = getOpponent(player);
+                    EventLog.log(EventLog.INFO, EventLog.OUT, opponent.getId(),
+                            NotificationMessage.OPPONENT_DISCONNECTED);
+                    opponent.writeNotification(
+                            NotificationMessage.OPPONENT_DISCONNECTED);
+                    setResult(opponent, Replay.FORFEIT);
+                    killGame();
+                }
+            }
+        });
+    }
+
+    private void start() {
+        if (journal != null) {
+            journal.gameCreated(id, player1.getPlayerName(),
+                    player2.getPlayerName(), token1, token2);
+        }
+        player1.writeNotification(NotificationMessage.RESUME_TOKEN, token1);
+        player2.writeNotification(NotificationMessage.RESUME_TOKEN, token2);
+        player1.writeNotification(NotificationMessage.OPPONENTS_NAME,
+                player2.getPlayerName());
+        player2.writeNotification(NotificationMessage.OPPONENTS_NAME,
+                player1.getPlayerName());
+        player1.writeNotification(NotificationMessage.PLACE_SHIPS);
+        EventLog.log(EventLog.DEBUG, EventLog.OUT, player1.getId(),
+                NotificationMessage.PLACE_SHIPS);
+        player2.writeNotification(NotificationMessage.PLACE_SHIPS);
+        EventLog.log(EventLog.DEBUG, EventLog.OUT, player2.getId(),
+                NotificationMessage.PLACE_SHIPS);
+
+        placementTimeout = timeouts.schedule(new PlacementTimerTask(),
+                PLACEMENT_TIMEOUT);
+    }
+
+    /**
+     * Ends the game: cancels its timeouts, forgets its resume tokens and sets
+     * the game in both players to null.
      */
-    public void killGame() {
-        player1.setGame(null);
-        player2.setGame(null);
+    private void killGame() {
+        gameOver = true;
+        turn = null;
+        // a game recovered after it started never had a placement timeout
+        if (placementTimeout != null) {
+            placementTimeout.cancel();
+        }
+        if (turnTimeout != null) {
+            turnTimeout.cancel();
+        }
+        if (resumeTimeout1 != null) {
+            resumeTimeout1.cancel();
+        }
+        if (resumeTimeout2 != null) {
+            resumeTimeout2.cancel();
+        }
+        sessions.remove(token1, this);
+        sessions.remove(token2, this);
+        player1.clearGame(this);
+        player2.clearGame(this);
+        release();
+    }
+
+    // records the winner of the game and how they won, for its replay
+    private void setResult(Player winner, int outcome) {
+        this.winner = winner == player1 ? 0 : 1;
+        this.outcome = outcome;
+    }
+
+    // adds a shot to the moves saved in the game's replay
+    private void addMove(int player, int square) {
+        if (moveCount == moves.length) {
+            byte[] grown = new byte[moves.length * 2];
+            System.arraycopy(moves, 0, grown, 0, moveCount);
+            moves = grown;
+        }
+        moves[moveCount++] = (byte) (player << 7 | square);
+    }
+
+    // rebuilds the state of a recovered game, whose journal is already
+    // written
+    private void restore(RecoveredGame recovered) {
+        for (int seat = 0; seat < 2; ++seat) {
+            FleetPlacementMessage fleet = recovered.getFleet(seat);
+            if (fleet == null) {
+                continue;
+            }
+            if (seat == 0) {
+                board1 = fleet.toBoard();
+                bitBoard1 = recovered.buildBoard(0);
+            } else {
+                board2 = fleet.toBoard();
+                bitBoard2 = recovered.buildBoard(1);
+            }
+        }
+        waitForResume(player1);
+        waitForResume(player2);
+        firstTurn = recovered.getFirstTurn();
+        for (int i = 0; i < recovered.getMoveCount(); ++i) {
+            addMove(recovered.getMovePlayer(i), recovered.getMoveSquare(i));
+        }
+        int turn = recovered.getTurn();
+        if (turn >= 0) {
+            gameStarted = true;
+            setTurn(turn == 0 ? player1 : player2);
+        } else {
+            placementTimeout = timeouts.schedule(new PlacementTimerTask(),
+                    PLACEMENT_TIMEOUT);
+        }
+    }
+
+    // keeps a player's seat for the resume window
+    private void waitForResume(Player player) {
+        TimeoutService.Timeout timeout = timeouts.schedule(
+                new ResumeTimerTask(player), resumeWindow);
+        if (player == player1) {
+            if (resumeTimeout1 != null) {
+                resumeTimeout1.cancel();
+            }
+            resumeTimeout1 = timeout;
+        } else {
+            if (resumeTimeout2 != null) {
+                resumeTimeout2.cancel();
+            }
+            resumeTimeout2 = timeout;
+        }
+    }
+
+    // seats a player who resumed the game in place of the player who lost
+    // their connection
+    private void takeSeat(String token, Player player) {
+        if (gameOver || player.getGame() != null
+                || !(token.equals(token1) || token.equals(token2))) {
+            EventLog.log(EventLog.INFO, EventLog.OUT, player.getId(),
+                    NotificationMessage.RESUME_FAILED);
+            player.writeNotification(NotificationMessage.RESUME_FAILED);
+            return;
+        }
+        Player old;
+        if (token.equals(token1)) {
+            old = player1;
+            player1 = player;
+            if (resumeTimeout1 != null) {
+                resumeTimeout1.cancel();
+            }
+        } else {
+            old = player2;
+            player2 = player;
+            if (resumeTimeout2 != null) {
+                resumeTimeout2.cancel();
+            }
+        }
+        if (turn == old) {
+            turn = player;
+        }
+        old.clearGame(this);
+        player.setGame(this);
+        player.adoptName(old.getPlayerName());
+
+        Player opponent = getOpponent(player);
+        BitBoard own = getBitBoard(player);
+        BitBoard target = getBitBoard(opponent);
+        Board ownBoard = getBoard(player);
+        EventLog.log(EventLog.INFO, EventLog.OUT, player.getId(),
+                NotificationMessage.RESUME_TOKEN, token);
+        player.writeObject(new GameSnapshotMessage(opponent.getPlayerName(),
+                ownBoard == null ? null : new FleetPlacementMessage(ownBoard),
+                own == null ? 0 : own.getGuessedLow(),
+                own == null ? 0 : own.getGuessedHigh(),
+                target == null ? 0 : target.getGuessedLow(),
+                target == null ? 0 : target.getGuessedHigh(),
+                target == null ? 0 : target.getHitsLow(),
+                target == null ? 0 : target.getHitsHigh(),
+                sunkShips(target), gameStarted, turn == player));
+        EventLog.log(EventLog.INFO, EventLog.OUT, opponent.getId(),
+                NotificationMessage.OPPONENT_RECONNECTED);
+        opponent.writeNotification(NotificationMessage.OPPONENT_RECONNECTED);
+    }
+
+    // what spectators can see of both boards
+    private SpectatorSnapshotMessage spectatorSnapshot() {
+        BitBoard[] boards = new BitBoard[] { bitBoard1, bitBoard2 };
+        long[] shotsLow = new long[2];
+        long[] shotsHigh = new long[2];
+        long[] hitsLow = new long[2];
+        long[] hitsHigh = new long[2];
+        FleetPlacementMessage[] sunk = new FleetPlacementMessage[2];
+        for (int i = 0; i < 2; ++i) {
+            if (boards[i] != null) {
+                shotsLow[i] = boards[i].getGuessedLow();
+                shotsHigh[i] = boards[i].getGuessedHigh();
+                hitsLow[i] = boards[i].getHitsLow();
+                hitsHigh[i] = boards[i].getHitsHigh();
+            }
+            sunk[i] = sunkShips(boards[i]);
+        }
+        return new SpectatorSnapshotMessage(new String[] {
+                player1.getPlayerName(), player2.getPlayerName() }, shotsLow,
+                shotsHigh, hitsLow, hitsHigh, sunk,
+                turn == null ? -1 : turn == player1 ? 0 : 1);
+    }
+
+    // the ships of a board which have been sunk
+    private static FleetPlacementMessage sunkShips(BitBoard board) {
+        Ship.Type[] types = Ship.Type.values();
+        int count = 0;
+        for (Ship.Type type : types) {
+            if (board != null && board.isSunk(type)) {
+                ++count;
+            }
+        }
+        int[] sunkTypes = new int[count];
+        int[] xs = new int[count];
+        int[] ys = new int[count];
+        boolean[] vertical = new boolean[count];
+        int i = 0;
+        for (Ship.Type type : types) {
+            if (board != null && board.isSunk(type)) {
+                sunkTypes[i] = type.ordinal();
+                xs[i] = board.getShipX(type);
+                ys[i] = board.getShipY(type);
+                vertical[i] = board.isShipVertical(type);
+                ++i;
+            }
+        }
+        return new FleetPlacementMessage(sunkTypes, xs, ys, vertical);
+    }
+
+    private boolean isSeated(Player player) {
+        return player == player1 || player == player2;
+    }
+
+    // takes the game off its shard's load, once
+    private void release() {
+        if (!released) {
+            released = true;
+            turnStarted = 0;
+            shard.gameEnded(this);
+            spectators.close(new NotificationMessage(
+                    NotificationMessage.SPECTATED_GAME_OVER));
+            ReplayWriter replays = shard.getReplays();
+            if (replays != null && gameStarted) {
+                replays.record(new Replay(id, System.currentTimeMillis(),
+                        outcome, winner, player1.getPlayerName(),
+                        player2.getPlayerName(),
+                        new FleetPlacementMessage(board1),
+                        new FleetPlacementMessage(board2), firstTurn, moves,
+                        moveCount));
+            }
+            if (journal != null) {
+                journal.gameEnded(id);
+            }
+        }
     }
 
     /**
@@ -80,26 +637,53 @@ public class Game {
      *
      * @param player the player who's turn it becomes
      */
-    public synchronized void setTurn(Player player) {
+    private void setTurn(Player player) {
         turn = player;
-        if (turnTimer != null) {
-            turnTimer.cancel();
+        ++turnNumber;
+        turnStarted = System.currentTimeMillis();
+        if (turnTimeout != null) {
+            turnTimeout.cancel();
         }
-        turnTimer = new Timer();
-        turnTimer.schedule(new TurnTimerTask(), TURN_TIMEOUT);
+        turnTimeout = timeouts.schedule(new TurnTimerTask(turnNumber),
+                TURN_TIMEOUT);
         turn.writeNotification(NotificationMessage.YOUR_TURN);
-        System.out.println(">> " + turn.socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.YOUR_TURN );
+        EventLog.log(EventLog.DEBUG, EventLog.OUT, turn.getId(),
+                NotificationMessage.YOUR_TURN);
         getOpponent(turn).writeNotification(NotificationMessage.OPPONENTS_TURN);
-        System.out.println(">> " + getOpponent(turn).socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.OPPONENTS_TURN );
+        EventLog.log(EventLog.DEBUG, EventLog.OUT, getOpponent(turn).getId(),
+                NotificationMessage.OPPONENTS_TURN);
+    }
+
+    // boards can be replaced until the game has started
+    private void setBoard(Player player, Board board) {
+        if (gameStarted || gameOver || !isSeated(player)) {
+            return;
+        }
+        if (player == player1) {
+            board1 = board;
+            bitBoard1 = new BitBoard(board);
+        } else {
+            board2 = board;
+            bitBoard2 = new BitBoard(board);
+        }
+        if (journal != null) {
+            journal.fleetPlaced(id, player == player1 ? 0 : 1, board);
+        }
+        EventLog.log(EventLog.DEBUG, EventLog.OUT, player.getId(),
+                NotificationMessage.BOARD_ACCEPTED);
+        player.writeNotification(NotificationMessage.BOARD_ACCEPTED);
+        checkBoards();
     }
 
     /**
      * Checks if both players have set valid boards. If they have, the game is
      * started.
      */
-    public void checkBoards() {
-        if (player1.getBoard() != null && player2.getBoard() != null) {
-            placementTimer.cancel();
+    private void checkBoards() {
+        if (board1 != null && board2 != null) {
+            if (placementTimeout != null) {
+                placementTimeout.cancel();
+            }
             startGame();
         }
     }
@@ -109,68 +693,87 @@ public class Game {
      */
     private void startGame() {
         gameStarted = true;
-        if (new Random().nextInt(2) == 0) {
+        int first = new Random().nextInt(2);
+        firstTurn = first;
+        if (journal != null) {
+            journal.gameStarted(id, first);
+        }
+        if (first == 0) {
             setTurn(player1);
         } else {
             setTurn(player2);
         }
     }
 
-    /**
-     * Applies a move a player has sent. Responds to the move with either
-     * a NotificationMessage stating an error, or a MoveResponseMessage.
-     *
-     * @see server.messages.NotificationMessage
-     * @see server.messages.MoveResponseMessage
-     * @param move the move sent by the player
-     * @param player the player who sent the move
-     */
-    public synchronized void applyMove(MoveMessage move, Player player) {
-        int x = move.getX();
-        int y = move.getY();
+    private void move(int x, int y, Player player) {
         int max = Board.BOARD_DIMENSION;
 
-        System.out.println("<< " + player.socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.SHOT  + " " + x + " " + y);
+        EventLog.log(EventLog.DEBUG, EventLog.IN, player.getId(),
+                NotificationMessage.SHOT, x, y);
 
         if (player != turn) {
-            System.out.println(">> " + player.socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.NOT_YOUR_TURN );
+            EventLog.log(EventLog.DEBUG, EventLog.OUT, player.getId(),
+                    NotificationMessage.NOT_YOUR_TURN);
             player.writeNotification(NotificationMessage.NOT_YOUR_TURN);
             return;
         }
 
         if (x < 0 || x >= max || y < 0 || y >= max) {
-            System.out.println(">> " + player.socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.INVALID_MOVE );
+            EventLog.log(EventLog.DEBUG, EventLog.OUT, player.getId(),
+                    NotificationMessage.INVALID_MOVE);
             player.writeNotification(NotificationMessage.INVALID_MOVE);
         } else {
             Player opponent = getOpponent(player);
-            Square square = opponent.getBoard().getSquare(x, y);
-            if (square.isGuessed()) {
-                System.out.println(">> " + player.socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.REPEATED_MOVE );
+            BitBoard board = getBitBoard(opponent);
+            if (board.isGuessed(x, y)) {
+                EventLog.log(EventLog.DEBUG, EventLog.OUT, player.getId(),
+                        NotificationMessage.REPEATED_MOVE);
                 player.writeNotification(NotificationMessage.REPEATED_MOVE);
                 return;
             }
 
-            boolean hit = square.guess();
-            Ship ship = square.getShip();
-            MoveResponseMessage response;
-            if (ship != null && ship.isSunk()) {
-                response = new MoveResponseMessage(x, y, ship, true, false);
-            } else {
-                response = new MoveResponseMessage(x, y, null, hit, false);
+            boolean hit = board.guess(x, y);
+            if (journal != null) {
+                journal.move(id, player == player1 ? 0 : 1, x, y);
             }
-            player.writeObject(response);
-            response.setOwnBoard(true);
-            opponent.writeObject(response);
+            addMove(player == player1 ? 0 : 1, y * max + x);
+            Ship.Type sunk = null;
+            int sunkX = 0;
+            int sunkY = 0;
+            boolean sunkVertical = false;
+            if (hit) {
+                Ship.Type type = board.getShipType(x, y);
+                if (board.isSunk(type)) {
+                    sunk = type;
+                    sunkX = board.getShipX(type);
+                    sunkY = board.getShipY(type);
+                    sunkVertical = board.isShipVertical(type);
+                }
+            }
+            // each player gets their own message, as messages may still be
+            // queued when the next one is created
+            player.writeObject(new MoveResponseMessage(x, y, sunk, sunkX,
+                    sunkY, sunkVertical, hit, false));
+            opponent.writeObject(new MoveResponseMessage(x, y, sunk, sunkX,
+                    sunkY, sunkVertical, hit, true));
+            spectators.publish(new SpectatorMoveMessage(
+                    opponent == player1 ? 0 : 1, new MoveResponseMessage(x, y,
+                            sunk, sunkX, sunkY, sunkVertical, hit, false)));
 
-            System.out.println(">> " + opponent.socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.SHOT  + " " + x + " " + y);
+            EventLog.log(EventLog.DEBUG, EventLog.OUT, opponent.getId(),
+                    NotificationMessage.SHOT, x, y);
 
-            if (opponent.getBoard().gameOver()) {
-                System.out.println(">> " + turn.socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.GAME_WIN );
+            if (board.gameOver()) {
+                EventLog.log(EventLog.INFO, EventLog.OUT, turn.getId(),
+                        NotificationMessage.GAME_WIN);
                 turn.writeNotification(NotificationMessage.GAME_WIN);
 
-                System.out.println(">> " + opponent.socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.GAME_LOSE  );
+                EventLog.log(EventLog.INFO, EventLog.OUT, opponent.getId(),
+                        NotificationMessage.GAME_LOSE);
                 opponent.writeNotification(NotificationMessage.GAME_LOSE);
-                turn = null;
+                Matchmaker.recordResult(turn, opponent);
+                setResult(turn, Replay.SUNK_ALL);
+                killGame();
             } else if (hit) {
                 setTurn(player); // player gets another go if hit
             } else {
@@ -179,26 +782,52 @@ public class Game {
         }
     }
 
-    private class PlacementTimerTask extends TimerTask {
+    /**
+     * Returns the board a player has placed their ships on. Must only be
+     * called from the game's events.
+     *
+     * @param player a player of the game
+     * @return the player's board, or null if they haven't placed their ships
+     */
+    Board getBoard(Player player) {
+        return player == player1 ? board1 : board2;
+    }
+
+    /**
+     * Returns the compact copy of a player's board that the game is played
+     * on. Must only be called from the game's events.
+     *
+     * @param player a player of the game
+     * @return the player's {@link BitBoard}, or null if they haven't placed
+     *         their ships
+     */
+    BitBoard getBitBoard(Player player) {
+        return player == player1 ? bitBoard1 : bitBoard2;
+    }
+
+    private class PlacementTimerTask implements Runnable {
 
         @Override
         public void run() {
-            if (player1.getBoard() == null & player2.getBoard() == null) {
-                NotificationMessage draw = new NotificationMessage(
-                        NotificationMessage.TIMEOUT_DRAW);
-                player1.writeObject(draw);
-                player2.writeObject(draw);
+            if (gameStarted || gameOver) {
+                return;
+            }
+            if (board1 == null & board2 == null) {
+                player1.writeNotification(NotificationMessage.TIMEOUT_DRAW);
+                player2.writeNotification(NotificationMessage.TIMEOUT_DRAW);
 
-                System.out.println(">> " + player1.socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.TIMEOUT_DRAW);
-                System.out.println(">> " + player2.socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.TIMEOUT_DRAW);
+                EventLog.log(EventLog.INFO, EventLog.OUT, player1.getId(),
+                        NotificationMessage.TIMEOUT_DRAW);
+                EventLog.log(EventLog.INFO, EventLog.OUT, player2.getId(),
+                        NotificationMessage.TIMEOUT_DRAW);
 
                 killGame();
-            } else if (player1.getBoard() == null) {
+            } else if (board1 == null) {
                 // Player1 failed to place ships in time
                 player1.writeNotification(NotificationMessage.TIMEOUT_LOSE);
                 player2.writeNotification(NotificationMessage.TIMEOUT_WIN);
                 killGame();
-            } else if (player2.getBoard() == null) {
+            } else if (board2 == null) {
                 // Player2 failed to place ships in time
                 player1.writeNotification(NotificationMessage.TIMEOUT_WIN);
                 player2.writeNotification(NotificationMessage.TIMEOUT_LOSE);
@@ -207,14 +836,45 @@ public class Game {
         }
     }
 
-    private class TurnTimerTask extends TimerTask {
+    private class ResumeTimerTask implements Runnable {
+
+        private Player player;
+
+        private ResumeTimerTask(Player player) {
+            this.player = player;
+        }
+
+        @Override
+        public void run() {
+            if (!gameOver && isSeated(player)) {
+                Player opponent = getOpponent(player);
+                EventLog.log(EventLog.INFO, EventLog.OUT, opponent.getId(),
+                        NotificationMessage.OPPONENT_DISCONNECTED);
+                opponent.writeNotification(
+                        NotificationMessage.OPPONENT_DISCONNECTED);
+                setResult(opponent, Replay.FORFEIT);
+                killGame();
+            }
+        }
+
+    }
+
+    private class TurnTimerTask implements Runnable {
+
+        private int turnNumber;
+
+        private TurnTimerTask(int turnNumber) {
+            this.turnNumber = turnNumber;
+        }
 
         @Override
         public void run() {
-            if (turn != null) {
+            if (turn != null && turnNumber == Game.this.turnNumber) {
                 turn.writeNotification(NotificationMessage.TIMEOUT_LOSE);
                 getOpponent(turn).writeNotification(
                         NotificationMessage.TIMEOUT_WIN);
+                Matchmaker.recordResult(getOpponent(turn), turn);
+                setResult(getOpponent(turn), Replay.TIMEOUT);
                 killGame();
             }
         }
@@ -0,0 +1,157 @@
+package server;
+
+import server.journal.GameJournal;
+import server.replay.ReplayWriter;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One thread which a share of the games run on. The events and the timeouts
+ * of a {@link Game} all run on the thread of the shard it was given, so the
+ * state of a game never moves between threads. The shard counts the games
+ * it is running, which is its load, and may keep a {@link GameJournal} of
+ * them, and a {@link ReplayWriter} saving them once they are finished. A
+ * second thread writes the events of its games to their {@link Spectators}.
+ */
+public class GameShard {
+
+    private int index;
+    private TimeoutService thread;
+    private TimeoutService fanout;
+    private AtomicInteger games;
+    private ConcurrentHashMap<Long, Game> running;
+    private AtomicLong gamesStarted;
+    private volatile GameJournal journal;
+    private volatile ReplayWriter replays;
+
+    /**
+     * Constructs a GameShard and starts its threads.
+     *
+     * @param index the number of the shard
+     */
+    public GameShard(int index) {
+        this.index = index;
+        this.thread = new TimeoutService("game-shard-" + index);
+        this.fanout = new TimeoutService("game-shard-" + index + "-fanout");
+        this.games = new AtomicInteger();
+        this.running = new ConcurrentHashMap<>();
+        this.gamesStarted = new AtomicLong();
+    }
+
+    /**
+     * Returns the number of the shard.
+     *
+     * @return the shard's number
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the thread of the shard, which runs the events and the
+     * timeouts of its games.
+     *
+     * @return the shard's thread
+     */
+    public TimeoutService getThread() {
+        return thread;
+    }
+
+    /**
+     * Returns the thread writing the events of the shard's games to their
+     * spectators.
+     *
+     * @return the shard's fan-out thread
+     */
+    public TimeoutService getFanout() {
+        return fanout;
+    }
+
+    /**
+     * Returns the journal of the shard's games, which must only be used from
+     * the shard's thread.
+     *
+     * @return the shard's journal, or null if games aren't journaled
+     */
+    public GameJournal getJournal() {
+        return journal;
+    }
+
+    void setJournal(GameJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Returns the writer of the replays of the shard's finished games, which
+     * must only be used from the shard's thread.
+     *
+     * @return the shard's replay writer, or null if replays aren't saved
+     */
+    public ReplayWriter getReplays() {
+        return replays;
+    }
+
+    void setReplays(ReplayWriter replays) {
+        this.replays = replays;
+    }
+
+    /**
+     * Returns the number of games running on the shard.
+     *
+     * @return the shard's load
+     */
+    public int getLoad() {
+        return games.get();
+    }
+
+    /**
+     * Returns the number of games that have been given to the shard since the
+     * server started.
+     *
+     * @return the number of games started on the shard
+     */
+    public long getGamesStarted() {
+        return gamesStarted.get();
+    }
+
+    /**
+     * Called when a game is given to the shard.
+     */
+    void gameStarted() {
+        games.incrementAndGet();
+        gamesStarted.incrementAndGet();
+    }
+
+    /**
+     * Returns the games running on the shard. The collection is a live view,
+     * which can be read from any thread without locks.
+     *
+     * @return the running games
+     */
+    public Collection<Game> getGames() {
+        return running.values();
+    }
+
+    /**
+     * Called by each game of the shard when it is created.
+     *
+     * @param game the game
+     */
+    void gameCreated(Game game) {
+        running.put(game.getId(), game);
+    }
+
+    /**
+     * Called once by each game of the shard when it is over.
+     *
+     * @param game the game
+     */
+    void gameEnded(Game game) {
+        running.remove(game.getId(), game);
+        games.decrementAndGet();
+    }
+
+}
@@ -0,0 +1,264 @@
+package server;
+
+import server.journal.GameJournal;
+import server.journal.RecoveredGame;
+import server.metrics.Gauge;
+import server.metrics.Metrics;
+import server.replay.ReplayWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A fixed number of {@link GameShard}s, normally one per processor. Each new
+ * game is given to the shard running the fewest games at the time, and stays
+ * on it until it is over.
+ */
+public class GameShards {
+
+    /**
+     * Time in milliseconds that a game recovered from the journal waits for
+     * its players before it is ended.
+     */
+    public static final int RECOVERY_WINDOW = Game.TURN_TIMEOUT;
+
+    private GameShard[] shards;
+    private ConcurrentHashMap<Long, RecoveredGame> recoveredGames;
+    private ConcurrentHashMap<String, RecoveredGame> recoveredTokens;
+
+    /**
+     * Constructs the given number of shards and starts their threads.
+     *
+     * @param count the number of shards
+     */
+    public GameShards(int count) {
+        this.shards = new GameShard[Math.max(1, count)];
+        for (int i = 0; i < shards.length; ++i) {
+            shards[i] = new GameShard(i);
+        }
+        this.recoveredGames = new ConcurrentHashMap<>();
+        this.recoveredTokens = new ConcurrentHashMap<>();
+        Metrics.gauge("games.active", new Gauge() {
+            @Override
+            public long get() {
+                return getTotalLoad();
+            }
+        });
+    }
+
+    /**
+     * Constructs the given number of shards, each keeping a journal of its
+     * games in the given directory. The games that were running when the
+     * server last stopped are first recovered from the journal files already
+     * in the directory, and written to the new journals, after which the old
+     * files are deleted.
+     *
+     * @param count the number of shards
+     * @param directory the directory of the journal files
+     * @param segmentSize the size of each journal file in bytes
+     * @param commitInterval most time in milliseconds before a record is
+     *            forced to the disk, or 0 to force every record
+     * @throws IOException if the journal can't be read or created
+     */
+    public GameShards(int count, File directory, int segmentSize,
+            long commitInterval) throws IOException {
+        this(count);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        File[] oldFiles = GameJournal.listFiles(directory);
+        LinkedHashMap<Long, RecoveredGame> recovered =
+                GameJournal.recover(oldFiles);
+        long sequence = 0;
+        for (File file : oldFiles) {
+            sequence = Math.max(sequence, GameJournal.sequenceOf(file) + 1);
+        }
+        for (GameShard shard : shards) {
+            shard.setJournal(new GameJournal(directory, shard.getIndex(),
+                    sequence, segmentSize, commitInterval, shard.getThread()));
+        }
+        long lastId = 0;
+        for (RecoveredGame game : recovered.values()) {
+            recover(game);
+            lastId = Math.max(lastId, game.getId());
+        }
+        Game.reserveIds(lastId);
+        for (GameShard shard : shards) {
+            shard.getJournal().commit();
+        }
+        for (File file : oldFiles) {
+            if (!file.delete()) {
+                System.out.println("Could not delete " + file);
+            }
+        }
+        if (!recovered.isEmpty()) {
+            System.out.println("Recovered " + recovered.size()
+                    + " games from the journal");
+        }
+    }
+
+    /**
+     * Saves a replay of every game that finishes from now on, each shard
+     * writing its own files in the given directory.
+     *
+     * @param directory the directory of the replay files
+     * @param segmentSize the size in bytes after which a shard starts a new
+     *            file
+     * @param batchSize the most replays a shard writes together
+     * @param flushInterval most time in milliseconds before a replay is
+     *            written
+     * @throws IOException if the directory can't be created
+     */
+    public void recordReplays(File directory, int segmentSize, int batchSize,
+            long flushInterval) throws IOException {
+        for (GameShard shard : shards) {
+            shard.setReplays(new ReplayWriter(directory, shard.getIndex(),
+                    segmentSize, batchSize, flushInterval, shard.getThread()));
+        }
+    }
+
+    // keeps a recovered game on the shard of its id, and ends it if nobody
+    // has taken it by the end of the recovery window
+    private void recover(final RecoveredGame game) {
+        final GameShard shard = getShardOf(game.getId());
+        shard.getJournal().rewrite(game);
+        recoveredGames.put(game.getId(), game);
+        recoveredTokens.put(game.getToken(0), game);
+        recoveredTokens.put(game.getToken(1), game);
+        shard.getThread().schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (remove(game)) {
+                    shard.getJournal().gameEnded(game.getId());
+                }
+            }
+        }, RECOVERY_WINDOW);
+    }
+
+    /**
+     * Takes the recovered game a resume token belongs to, so that it can be
+     * played again. The game then no longer ends at the end of the recovery
+     * window.
+     *
+     * @param token the resume token of one of the game's players
+     * @return the recovered game, or null if no recovered game waiting for
+     *         its players has the token
+     */
+    public RecoveredGame takeRecoveredGame(String token) {
+        RecoveredGame game = recoveredTokens.get(token);
+        if (game == null || !remove(game)) {
+            return null;
+        }
+        return game;
+    }
+
+    // removes a recovered game, true if it was still waiting
+    private boolean remove(RecoveredGame game) {
+        if (!recoveredGames.remove(game.getId(), game)) {
+            return false;
+        }
+        recoveredTokens.remove(game.getToken(0), game);
+        recoveredTokens.remove(game.getToken(1), game);
+        return true;
+    }
+
+    /**
+     * Counts a recovered game in the load of the shard it is kept on, which
+     * it must run on since its journal is there.
+     *
+     * @param id the id of the recovered game
+     * @return the game's shard
+     */
+    public GameShard assign(long id) {
+        GameShard shard = getShardOf(id);
+        shard.gameStarted();
+        return shard;
+    }
+
+    /**
+     * Returns the shard a recovered game is kept on.
+     *
+     * @param id the id of the game
+     * @return the game's shard
+     */
+    public GameShard getShardOf(long id) {
+        return shards[(int) Math.floorMod(id, (long) shards.length)];
+    }
+
+    /**
+     * Returns the games recovered from the journal which are still waiting
+     * for their players.
+     *
+     * @return the recovered games
+     */
+    public Collection<RecoveredGame> getRecoveredGames() {
+        return recoveredGames.values();
+    }
+
+    /**
+     * Chooses the least loaded shard for a new game and counts the game in
+     * its load. Games being created at the same time may see the same loads,
+     * so the shards are kept roughly, rather than exactly, even.
+     *
+     * @return the shard the new game is to run on
+     */
+    public GameShard assign() {
+        GameShard best = shards[0];
+        for (int i = 1; i < shards.length; ++i) {
+            if (shards[i].getLoad() < best.getLoad()) {
+                best = shards[i];
+            }
+        }
+        best.gameStarted();
+        return best;
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the number of shards
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns a shard by its number.
+     *
+     * @param index the number of the shard
+     * @return the shard
+     */
+    public GameShard getShard(int index) {
+        return shards[index];
+    }
+
+    /**
+     * Returns the number of games running on each shard.
+     *
+     * @return the load of each shard, by shard number
+     */
+    public int[] getLoads() {
+        int[] loads = new int[shards.length];
+        for (int i = 0; i < shards.length; ++i) {
+            loads[i] = shards[i].getLoad();
+        }
+        return loads;
+    }
+
+    /**
+     * Returns the number of games running on all shards.
+     *
+     * @return the total load
+     */
+    public int getTotalLoad() {
+        int total = 0;
+        for (GameShard shard : shards) {
+            total += shard.getLoad();
+        }
+        return total;
+    }
+
+}
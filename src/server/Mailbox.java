@@ -0,0 +1,94 @@
+package server;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A queue of events for a single actor, such as a {@link Game}. Events can be
+ * posted from any thread, and are run one at a time in the order they were
+ * posted on a shared {@link Executor}. As no two events of the same mailbox
+ * ever run at once, the actor's state needs no locks, while different actors
+ * run in parallel on the executor's threads.
+ */
+public class Mailbox implements Runnable {
+
+    // events run before giving the thread to other mailboxes
+    private static final int BATCH_SIZE = 64;
+
+    private Executor executor;
+    private ConcurrentLinkedQueue<Runnable> events;
+    private AtomicBoolean scheduled;
+
+    /**
+     * Constructs an empty Mailbox running its events on the given executor.
+     *
+     * @param executor the executor shared by many mailboxes
+     */
+    public Mailbox(Executor executor) {
+        this(executor, false);
+    }
+
+    /**
+     * Constructs an empty Mailbox which, if held, keeps the events posted to
+     * it until it is opened. An actor can then post its first event and
+     * make itself known to other threads before that event runs.
+     *
+     * @param executor the executor shared by many mailboxes
+     * @param held true if events don't run until {@link #open()}
+     */
+    public Mailbox(Executor executor, boolean held) {
+        this.executor = executor;
+        this.events = new ConcurrentLinkedQueue<>();
+        this.scheduled = new AtomicBoolean(held);
+    }
+
+    /**
+     * Starts running the events of a held mailbox, including the ones
+     * posted while it was held. Must be called once, by the thread which
+     * constructed it.
+     */
+    public void open() {
+        scheduled.set(false);
+        if (!events.isEmpty() && scheduled.compareAndSet(false, true)) {
+            executor.execute(this);
+        }
+    }
+
+    /**
+     * Adds an event to the mailbox, and schedules the mailbox on the executor
+     * if it isn't already.
+     *
+     * @param event the event to be run
+     */
+    public void post(Runnable event) {
+        events.offer(event);
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this);
+        }
+    }
+
+    /**
+     * Runs the waiting events, and schedules the mailbox again if more
+     * events are left or were posted meanwhile.
+     */
+    @Override
+    public void run() {
+        for (int i = 0; i < BATCH_SIZE; ++i) {
+            Runnable event = events.poll();
+            if (event == null) {
+                break;
+            }
+            try {
+                event.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        scheduled.set(false);
+        if (!events.isEmpty() && scheduled.compareAndSet(false, true)) {
+            executor.execute(this);
+        }
+    }
+
+}
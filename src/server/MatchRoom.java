@@ -1,26 +1,148 @@
 package server;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
 
+import server.journal.RecoveredGame;
+import server.messages.MatchRoomDeltaMessage;
 import server.messages.MatchRoomListMessage;
 import server.messages.NotificationMessage;
+import server.metrics.Gauge;
+import server.metrics.Histogram;
+import server.metrics.Metrics;
+import server.net.PreparedMessage;
 
+/**
+ * Keeps track of the connected players and of the players waiting for a
+ * game. Players are found by key and by name through concurrent maps, so
+ * most requests don't need a lock. Changes to the waiting player list are
+ * made under the lobby lock, which keeps them in the same order as the
+ * sequence numbers of the match room updates.
+ */
 public class MatchRoom {
 
+    // time to hand a match room update to every waiting player
+    private static final Histogram LOBBY_FANOUT =
+            Metrics.histogram("lobby.fanout");
+
     private final String ALPHABET = "abcdefghijklmnopqrstuvwxyz";
-    private HashMap<String, Player> waitingPlayerList;
-    private ArrayList<Player> connectedPlayers;
+    private ConcurrentHashMap<String, Player> waitingPlayerList;
+    private ConcurrentHashMap<String, Player> players;
+    private ConcurrentHashMap<Player, String> playerKeys;
+    private ConcurrentHashMap<String, Player> playerNames;
+    private TimeoutService timeouts;
+    private GameShards shards;
+    private Sessions sessions;
+    private long resumeWindow;
+    private Matchmaker matchmaker;
+    private long lobbySequence;
+    private long lobbyInterval;
+    private ArrayList<Integer> pendingChanges;
+    private ArrayList<String> pendingKeys;
+    private ArrayList<String> pendingNames;
+    private TimeoutService.Timeout lobbyUpdate;
+    private final ReentrantLock lobbyLock = new ReentrantLock();
+
+    /**
+     * Constructs MatchRoom with an empty waiting player list and an empty
+     * connected player list, sending match room changes at most every
+     * 100 milliseconds.
+     *
+     * @param timeouts the service running the match room updates
+     * @param shards the shards running the games
+     */
+    public MatchRoom(TimeoutService timeouts, GameShards shards) {
+        this(timeouts, 100, shards);
+    }
 
     /**
      * Constructs MatchRoom with an empty waiting player list and an empty
-     * connected player list.
+     * connected player list. Changes to the match room list are collected
+     * and sent to the waiting players together, at most once per interval.
+     *
+     * @param timeouts the service running the match room updates
+     * @param lobbyInterval least time between two match room updates in
+     *            milliseconds, or 0 to send every change straight away
+     * @param shards the shards running the games
      */
-    public MatchRoom() {
-        this.waitingPlayerList = new HashMap<String, Player>();
-        this.connectedPlayers = new ArrayList<>();
+    public MatchRoom(TimeoutService timeouts, long lobbyInterval,
+            GameShards shards) {
+        this(timeouts, lobbyInterval, shards, 250, 5000);
+    }
+
+    /**
+     * Constructs MatchRoom with an empty waiting player list, an empty
+     * connected player list and an empty quick match queue.
+     *
+     * @param timeouts the service running the match room updates and the
+     *            quick match queue
+     * @param lobbyInterval least time between two match room updates in
+     *            milliseconds, or 0 to send every change straight away
+     * @param shards the shards running the games
+     * @param matchInterval time between two rounds of pairing the players in
+     *            the quick match queue, in milliseconds
+     * @param widenInterval time in milliseconds after which a player in the
+     *            quick match queue accepts an opponent one more rating bucket
+     *            away
+     */
+    public MatchRoom(TimeoutService timeouts, long lobbyInterval,
+            GameShards shards, long matchInterval, long widenInterval) {
+        this(timeouts, lobbyInterval, shards, matchInterval, widenInterval,
+                30000);
+    }
+
+    /**
+     * Constructs MatchRoom with an empty waiting player list, an empty
+     * connected player list, an empty quick match queue and no running
+     * games.
+     *
+     * @param timeouts the service running the match room updates and the
+     *            quick match queue
+     * @param lobbyInterval least time between two match room updates in
+     *            milliseconds, or 0 to send every change straight away
+     * @param shards the shards running the games
+     * @param matchInterval time between two rounds of pairing the players in
+     *            the quick match queue, in milliseconds
+     * @param widenInterval time in milliseconds after which a player in the
+     *            quick match queue accepts an opponent one more rating bucket
+     *            away
+     * @param resumeWindow time in milliseconds a player who lost their
+     *            connection keeps their seat in a game for
+     */
+    public MatchRoom(TimeoutService timeouts, long lobbyInterval,
+            GameShards shards, long matchInterval, long widenInterval,
+            long resumeWindow) {
+        this.timeouts = timeouts;
+        this.shards = shards;
+        this.sessions = new Sessions();
+        this.resumeWindow = resumeWindow;
+        this.lobbyInterval = lobbyInterval;
+        this.waitingPlayerList = new ConcurrentHashMap<>();
+        this.players = new ConcurrentHashMap<>();
+        this.playerKeys = new ConcurrentHashMap<>();
+        this.playerNames = new ConcurrentHashMap<>();
+        this.pendingChanges = new ArrayList<>();
+        this.pendingKeys = new ArrayList<>();
+        this.pendingNames = new ArrayList<>();
+        this.matchmaker = new Matchmaker(this, timeouts, matchInterval,
+                widenInterval);
+        Metrics.gauge("connections.active", new Gauge() {
+            @Override
+            public long get() {
+                return players.size();
+            }
+        });
+        Metrics.gauge("lobby.waiting", new Gauge() {
+            @Override
+            public long get() {
+                return waitingPlayerList.size();
+            }
+        });
     }
 
     /**
@@ -39,29 +161,60 @@ public class MatchRoom {
             player.leaveGame();
             joinWaitingList(player);
             break;
+        case "refresh":
+            sendMatchRoomList(player);
+            break;
+        case "quick":
+            player.leaveGame();
+            if (matchmaker.enqueue(player)) {
+                EventLog.log(EventLog.INFO, EventLog.OUT, player.getId(),
+                        NotificationMessage.QUICK_MATCH_QUEUED);
+                player.writeNotification(NotificationMessage.QUICK_MATCH_QUEUED);
+            }
+            break;
+        case "watch":
+            if (args.length == 3) {
+                watch(player, args[2]);
+            }
+            break;
+        case "unwatch":
+            player.stopWatching();
+            break;
+        case "cancelquick":
+            if (matchmaker.cancel(player)) {
+                EventLog.log(EventLog.INFO, EventLog.OUT, player.getId(),
+                        NotificationMessage.QUICK_MATCH_CANCELLED);
+                player.writeNotification(
+                        NotificationMessage.QUICK_MATCH_CANCELLED);
+            }
+            break;
         case "join":
             player.leaveGame();
             if (args.length == 3) {
                 player.leaveGame();
-                System.out.println ("<< " + player.socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.NEW_JOIN_GAME_REQUEST  + " " + args[2]);
+                EventLog.log(EventLog.INFO, EventLog.IN, player.getId(),
+                        NotificationMessage.NEW_JOIN_GAME_REQUEST, args[2]);
                 joinRequest(player, args[2]);
             }
             break;
         case "accept":
             player.leaveGame();
             if (args.length == 3) {
-                System.out.println ("<< " + player.socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.JOIN_GAME_REQUEST_ACCEPTED + " " + args[2]);
+                EventLog.log(EventLog.INFO, EventLog.IN, player.getId(),
+                        NotificationMessage.JOIN_GAME_REQUEST_ACCEPTED, args[2]);
                 acceptRequest(player, args[2]);
             }
             break;
         case "reject":
             if (args.length == 3) {
-                System.out.println ("<< " + player.socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.JOIN_GAME_REQUEST_REJECTED + " " + args[2]);
+                EventLog.log(EventLog.INFO, EventLog.IN, player.getId(),
+                        NotificationMessage.JOIN_GAME_REQUEST_REJECTED, args[2]);
                 rejectRequest(player, args[2]);
             }
         case "cancel":
             if (args.length == 2) {
-                System.out.println ("<< " + player.socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.JOIN_GAME_REQUEST_CANCELLED );
+                EventLog.log(EventLog.INFO, EventLog.IN, player.getId(),
+                        NotificationMessage.JOIN_GAME_REQUEST_CANCELLED);
                 cancelRequest(player);
             }
         }
@@ -70,28 +223,57 @@ public class MatchRoom {
     /**
      * Puts a key and a player into a HashMap, the key is sent back to the
      * user. This key is used for other players to identify them and send
-     * requests to them.
+     * requests to them. The player is sent the current match room list, and
+     * the players already waiting are informed of the new player.
      * 
      * @param player player to join waiting list
      */
-    private synchronized void joinWaitingList(Player player) {
-        waitingPlayerList.put(player.getOwnKey(), player);
-        player.writeNotification(NotificationMessage.GAME_TOKEN,
-                player.getOwnKey());
-        sendMatchRoomList();
+    private void joinWaitingList(Player player) {
+        lobbyLock.lock();
+        try {
+            player.writeNotification(NotificationMessage.GAME_TOKEN,
+                    player.getOwnKey());
+            sendMatchRoomList(player);
+            if (waitingPlayerList.put(player.getOwnKey(), player) == null) {
+                publishChange(MatchRoomDeltaMessage.PLAYER_ADDED,
+                        player.getOwnKey(), player.getPlayerName());
+            }
+        } finally {
+            lobbyLock.unlock();
+        }
     }
 
-    public synchronized void assignKey(Player player) {
-        StringBuilder keyBuilder = new StringBuilder();
-        Random random = new Random();
+    /**
+     * Gives a player a random key that no other connected player has, and
+     * adds them to the key index.
+     *
+     * @param player the player to be given a key
+     */
+    public void assignKey(Player player) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
         int length = ALPHABET.length();
-        for (int i = 0; i < 10; ++i) {
-            keyBuilder.append(ALPHABET.charAt(random.nextInt(length)));
-        }
-        String key = keyBuilder.toString();
+        String key;
+        do {
+            StringBuilder keyBuilder = new StringBuilder();
+            for (int i = 0; i < 10; ++i) {
+                keyBuilder.append(ALPHABET.charAt(random.nextInt(length)));
+            }
+            key = keyBuilder.toString();
+        } while (players.putIfAbsent(key, player) != null);
+        playerKeys.put(player, key);
         player.setOwnKey(key);
     }
 
+    /**
+     * Returns the connected player with the given key.
+     *
+     * @param key the key of the player
+     * @return the player, or null if no connected player has the key
+     */
+    public Player getPlayer(String key) {
+        return players.get(key);
+    }
+
     /**
      * Sends a join request, coming from a player, to a player matching the
      * given key.
@@ -99,7 +281,7 @@ public class MatchRoom {
      * @param player player sending the request
      * @param key key of player being invited
      */
-    private synchronized void joinRequest(Player player, String key) {
+    private void joinRequest(Player player, String key) {
         Player opponent = waitingPlayerList.get(key);
         if (player == opponent) {
             player.writeNotification(NotificationMessage.CANNOT_PLAY_YOURSELF);
@@ -110,23 +292,211 @@ public class MatchRoom {
 
     /**
      * Called when a player accepts a game request from a player matching the
-     * given key.
+     * given key. Only the locks of the two players are held while the game is
+     * started, taken in the order of their keys so that two players accepting
+     * each other's requests can't deadlock.
      *
      * @param player player accepting the request
      * @param key key of player who sent the request
      */
-    private synchronized void acceptRequest(Player player, String key) {
+    private void acceptRequest(Player player, String key) {
         Player opponent = waitingPlayerList.get(key);
-        if (opponent != null &&
-                opponent.getRequestedGameKey().equals(player.getOwnKey())) {
-            waitingPlayerList.remove(key);
-            waitingPlayerList.values().remove(player);
+        if (opponent == null || opponent == player) {
+            return;
+        }
+        boolean playerFirst = player.getOwnKey().compareTo(key) < 0;
+        ReentrantLock first = playerFirst ? player.getLock() : opponent.getLock();
+        ReentrantLock second = playerFirst ? opponent.getLock() : player.getLock();
+        first.lock();
+        second.lock();
+        try {
+            if (waitingPlayerList.get(key) != opponent
+                    || !player.getOwnKey().equals(opponent.getRequestedGameKey())
+                    || player.getGame() != null || opponent.getGame() != null) {
+                return;
+            }
+            removeFromLobby(opponent, player);
             opponent.requestAccepted(player);
-            new Game(opponent, player);
-            sendMatchRoomList();
-            player.rejectAll();
-            opponent.rejectAll();
+            new Game(opponent, player, shards.assign(), sessions,
+                    resumeWindow);
+        } finally {
+            second.unlock();
+            first.unlock();
+        }
+        matchmaker.cancel(player);
+        matchmaker.cancel(opponent);
+        player.rejectAll();
+        opponent.rejectAll();
+    }
+
+    /**
+     * Starts a game between two players paired by the quick match queue,
+     * unless either of them is already in a game. The players are taken out
+     * of the match room, and any game requests to or from them are dropped.
+     *
+     * @param player1 a player
+     * @param player2 another player
+     * @return true if the game was started
+     */
+    boolean startGame(Player player1, Player player2) {
+        boolean player1First =
+                player1.getOwnKey().compareTo(player2.getOwnKey()) < 0;
+        ReentrantLock first = player1First ? player1.getLock()
+                : player2.getLock();
+        ReentrantLock second = player1First ? player2.getLock()
+                : player1.getLock();
+        first.lock();
+        second.lock();
+        try {
+            if (player1.getGame() != null || player2.getGame() != null) {
+                return false;
+            }
+            removeFromLobby(player1, player2);
+            new Game(player1, player2, shards.assign(), sessions,
+                    resumeWindow);
+        } finally {
+            second.unlock();
+            first.unlock();
+        }
+        cancelRequest(player1);
+        cancelRequest(player2);
+        player1.rejectAll();
+        player2.rejectAll();
+        return true;
+    }
+
+    // takes two players who are starting a game out of the waiting list
+    private void removeFromLobby(Player player1, Player player2) {
+        lobbyLock.lock();
+        try {
+            if (waitingPlayerList.remove(player1.getOwnKey(), player1)) {
+                publishChange(MatchRoomDeltaMessage.PLAYER_REMOVED,
+                        player1.getOwnKey(), null);
+            }
+            if (waitingPlayerList.remove(player2.getOwnKey(), player2)) {
+                publishChange(MatchRoomDeltaMessage.PLAYER_REMOVED,
+                        player2.getOwnKey(), null);
+            }
+        } finally {
+            lobbyLock.unlock();
+        }
+    }
+
+    /**
+     * Lets a player watch the game that the player with the given name is
+     * playing, as long as the player isn't in a game themselves.
+     *
+     * @param player the player who wants to watch
+     * @param name the name of a player in the game
+     */
+    private void watch(Player player, String name) {
+        Player target = playerNames.get(name);
+        Game game = target == null ? null : target.getGame();
+        if (game == null || player.getGame() != null) {
+            EventLog.log(EventLog.INFO, EventLog.OUT, player.getId(),
+                    NotificationMessage.GAME_NOT_FOUND, name);
+            player.writeNotification(NotificationMessage.GAME_NOT_FOUND);
+            return;
+        }
+        player.stopWatching();
+        game.addSpectator(player);
+    }
+
+    /**
+     * Gives a player the seat in a game that a resume token belongs to. The
+     * token is looked up among the running games first, then among the games
+     * recovered from the journal, which are started again on the shard their
+     * journal is on. The player leaves any game or queue they are in.
+     *
+     * @param player the player resuming the game
+     * @param token the resume token of the seat
+     */
+    public void resume(Player player, String token) {
+        player.leaveGame();
+        removeWaitingPlayer(player);
+        Game game = sessions.get(token);
+        if (game == null) {
+            RecoveredGame recovered = shards.takeRecoveredGame(token);
+            if (recovered != null) {
+                game = Game.recover(recovered,
+                        shards.assign(recovered.getId()), sessions,
+                        resumeWindow);
+            }
         }
+        if (game == null) {
+            EventLog.log(EventLog.INFO, EventLog.OUT, player.getId(),
+                    NotificationMessage.RESUME_FAILED);
+            player.writeNotification(NotificationMessage.RESUME_FAILED);
+        } else {
+            game.resume(token, player);
+        }
+    }
+
+    /**
+     * Returns the resume tokens of the running games.
+     *
+     * @return the sessions
+     */
+    public Sessions getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Returns the quick match queue.
+     *
+     * @return the matchmaker
+     */
+    public Matchmaker getMatchmaker() {
+        return matchmaker;
+    }
+
+    /**
+     * Returns the shards running the games.
+     *
+     * @return the shards
+     */
+    public GameShards getShards() {
+        return shards;
+    }
+
+    /**
+     * Returns the service running the match room updates and the quick match
+     * queue.
+     *
+     * @return the match room's timeouts
+     */
+    public TimeoutService getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Returns the connected players. The collection is a live view of the
+     * index, read without the lobby lock.
+     *
+     * @return the connected players
+     */
+    public Collection<Player> getPlayers() {
+        return players.values();
+    }
+
+    /**
+     * Returns the number of connected players, without taking the lobby
+     * lock.
+     *
+     * @return the number of connected players
+     */
+    public int getPlayerCount() {
+        return players.size();
+    }
+
+    /**
+     * Returns the number of players in the waiting player list, without
+     * taking the lobby lock.
+     *
+     * @return the number of waiting players
+     */
+    public int getWaitingCount() {
+        return waitingPlayerList.size();
     }
 
     /**
@@ -136,10 +506,10 @@ public class MatchRoom {
      * @param player player accepting the request
      * @param key key of player who sent the request
      */
-    private synchronized void rejectRequest(Player player, String key) {
+    private void rejectRequest(Player player, String key) {
         Player opponent = waitingPlayerList.get(key);
         if (opponent != null &&
-                opponent.getRequestedGameKey().equals(player.getOwnKey())) {
+                player.getOwnKey().equals(opponent.getRequestedGameKey())) {
             opponent.requestRejected(player);
         }
     }
@@ -149,14 +519,16 @@ public class MatchRoom {
      *
      * @param player the player who sent and cancelled the invite
      */
-    private synchronized void cancelRequest(Player player) {
-        Player opponent = waitingPlayerList.get(player.getRequestedGameKey());
+    private void cancelRequest(Player player) {
+        String key = player.getRequestedGameKey();
+        Player opponent = key == null ? null : waitingPlayerList.get(key);
         player.setRequestedGameKey(null);
         if (opponent != null) {
             opponent.writeNotification(
                     NotificationMessage.JOIN_GAME_REQUEST_CANCELLED,
                     player.getOwnKey());
-            System.out.println (">> " + opponent.socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.JOIN_GAME_REQUEST_CANCELLED );
+            EventLog.log(EventLog.INFO, EventLog.OUT, opponent.getId(),
+                    NotificationMessage.JOIN_GAME_REQUEST_CANCELLED);
         }
     }
 
@@ -165,9 +537,20 @@ public class MatchRoom {
      * 
      * @param player player to be removed
      */
-    public synchronized void removeWaitingPlayer(Player player) {
-        waitingPlayerList.values().remove(player);
-        sendMatchRoomList();
+    public void removeWaitingPlayer(Player player) {
+        matchmaker.cancel(player);
+        String key = playerKeys.get(player);
+        if (key == null) {
+            return;
+        }
+        lobbyLock.lock();
+        try {
+            if (waitingPlayerList.remove(key, player)) {
+                publishChange(MatchRoomDeltaMessage.PLAYER_REMOVED, key, null);
+            }
+        } finally {
+            lobbyLock.unlock();
+        }
     }
 
     /**
@@ -178,49 +561,159 @@ public class MatchRoom {
      * @return true if name taken
      */
     public boolean playerNameExists(String name) {
-        for (Player player : connectedPlayers) {
-            if (name.equals(player.getPlayerName())) {
-                return true;
+        return playerNames.containsKey(name);
+    }
+
+    /**
+     * Reserves a name for a player, unless another connected player already
+     * has it. The player's previous name is released, so that others can
+     * take it. Two players asking for the same name at once can't both get
+     * it.
+     *
+     * @param player the player asking for the name
+     * @param name desired name
+     * @return true if the name is now the player's
+     */
+    public boolean reserveName(Player player, String name) {
+        Player owner = playerNames.putIfAbsent(name, player);
+        if (owner != null && owner != player) {
+            return false;
+        }
+        String oldName = player.getPlayerName();
+        if (!name.equals(oldName)) {
+            playerNames.remove(oldName, player);
+        }
+        return true;
+    }
+
+    /**
+     * Informs the players in the match room that a player has changed their
+     * name, if that player is waiting in the match room.
+     *
+     * @param player the player who changed their name
+     */
+    public void playerRenamed(Player player) {
+        lobbyLock.lock();
+        try {
+            if (waitingPlayerList.get(player.getOwnKey()) == player) {
+                publishChange(MatchRoomDeltaMessage.NAME_CHANGED,
+                        player.getOwnKey(), player.getPlayerName());
             }
+        } finally {
+            lobbyLock.unlock();
         }
-        return false;
     }
 
     /**
-     * Sends the match room list to all players in the match room list.
+     * Sends the whole match room list to a player, along with the sequence
+     * number of the last change, so that they can apply later changes to it.
+     *
+     * @param player the player to send the list to
      */
-    public synchronized void sendMatchRoomList() {
-        HashMap<String, String> matchRoomList = new HashMap<String, String>();
-        for (Map.Entry<String, Player> entry : waitingPlayerList.entrySet()) {
-            String key = entry.getKey();
-            Player player = entry.getValue();
-            matchRoomList.put(key, player.getPlayerName());
+    public void sendMatchRoomList(Player player) {
+        lobbyLock.lock();
+        try {
+            HashMap<String, String> matchRoomList = new HashMap<String, String>();
+            for (Map.Entry<String, Player> entry : waitingPlayerList.entrySet()) {
+                String key = entry.getKey();
+                Player waitingPlayer = entry.getValue();
+                matchRoomList.put(key, waitingPlayer.getPlayerName());
+            }
+            player.writeObject(new MatchRoomListMessage(matchRoomList,
+                    lobbySequence));
+        } finally {
+            lobbyLock.unlock();
         }
-        MatchRoomListMessage message = new MatchRoomListMessage(matchRoomList);
-        for (Map.Entry<String, Player> entry : waitingPlayerList.entrySet()) {
-            Player player = entry.getValue();
-            player.writeObject(message);
+    }
+
+    // gives a change to the match room list the next sequence number and
+    // schedules an update if there isn't one pending, must be called holding
+    // the lobby lock
+    private void publishChange(int change, String key, String name) {
+        ++lobbySequence;
+        pendingChanges.add(change);
+        pendingKeys.add(key);
+        pendingNames.add(name);
+        if (lobbyInterval <= 0) {
+            sendPendingChanges();
+        } else if (lobbyUpdate == null) {
+            lobbyUpdate = timeouts.schedule(new LobbyUpdateTask(),
+                    lobbyInterval);
+        }
+    }
+
+    /**
+     * Sends every change made since the last update to the waiting players,
+     * in a single message which is encoded once for all of them. The
+     * message is written after releasing the lock, so the match room isn't
+     * held while it is being encoded.
+     */
+    private void sendPendingChanges() {
+        MatchRoomDeltaMessage message;
+        ArrayList<Player> recipients;
+        lobbyLock.lock();
+        try {
+            lobbyUpdate = null;
+            int count = pendingChanges.size();
+            if (count == 0) {
+                return;
+            }
+            int[] changes = new int[count];
+            for (int i = 0; i < count; ++i) {
+                changes[i] = pendingChanges.get(i);
+            }
+            message = new MatchRoomDeltaMessage(lobbySequence, changes,
+                    pendingKeys.toArray(new String[count]),
+                    pendingNames.toArray(new String[count]));
+            pendingChanges.clear();
+            pendingKeys.clear();
+            pendingNames.clear();
+            recipients = new ArrayList<>(waitingPlayerList.values());
+        } finally {
+            lobbyLock.unlock();
+        }
+        long start = System.nanoTime();
+        PreparedMessage prepared = new PreparedMessage(message);
+        for (Player player : recipients) {
+            player.writeObject(prepared);
         }
+        LOBBY_FANOUT.recordSince(start);
     }
 
     /**
-     * Adds player to the list of all connected players.
+     * Adds player to the index of all connected players.
      *
      * @param player player to be added
      */
     public void addPlayer(Player player) {
-        if (!connectedPlayers.contains(player)) {
-            connectedPlayers.add(player);
-        }
+        players.putIfAbsent(player.getOwnKey(), player);
+        playerKeys.putIfAbsent(player, player.getOwnKey());
     }
 
     /**
-     * Removes player from the list of all connected players.
+     * Removes player from the index of all connected players, and releases
+     * their name.
      *
      * @param player player to be removed
      */
     public void removePlayer(Player player) {
-        connectedPlayers.remove(player);
+        String key = playerKeys.remove(player);
+        if (key != null) {
+            players.remove(key, player);
+        }
+        playerNames.remove(player.getPlayerName(), player);
+    }
+
+    /**
+     * Sends the changes collected since the last match room update.
+     */
+    private class LobbyUpdateTask implements Runnable {
+
+        @Override
+        public void run() {
+            sendPendingChanges();
+        }
+
     }
 
 }
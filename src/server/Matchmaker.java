@@ -0,0 +1,297 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The quick match queue. Players asking for a quick match are added to a
+ * concurrent queue, and a matcher running on the {@link TimeoutService}
+ * pairs them in batches, so joining the queue never waits on other players.
+ * Players are grouped into buckets by rating, and two players can be paired
+ * if their buckets are close enough; the distance allowed grows the longer
+ * a player has been waiting, so nobody waits forever for an equal opponent.
+ */
+public class Matchmaker {
+
+    /**
+     * The rating every player starts with.
+     */
+    public static final int INITIAL_RATING = 1000;
+
+    private static final int BUCKET_WIDTH = 100;
+    private static final int ELO_FACTOR = 32;
+
+    private MatchRoom matchRoom;
+    private TimeoutService timeouts;
+    private long interval;
+    private long widenInterval;
+    private ConcurrentLinkedQueue<Entry> incoming;
+    private ConcurrentHashMap<Player, Entry> entries;
+    // only used by the matcher
+    private ArrayList<Entry> waiting;
+
+    private AtomicLong matchesMade;
+    private AtomicLong totalWait;
+    private AtomicLong maxWait;
+    private volatile long startTime;
+
+    /**
+     * Constructs a Matchmaker and schedules its first batch.
+     *
+     * @param matchRoom the match room which starts the games
+     * @param timeouts the service the matcher runs on
+     * @param interval time between two batches in milliseconds
+     * @param widenInterval time in milliseconds after which a waiting player
+     *            accepts an opponent one more rating bucket away
+     */
+    public Matchmaker(MatchRoom matchRoom, TimeoutService timeouts,
+            long interval, long widenInterval) {
+        this.matchRoom = matchRoom;
+        this.timeouts = timeouts;
+        this.interval = Math.max(1, interval);
+        this.widenInterval = Math.max(1, widenInterval);
+        this.incoming = new ConcurrentLinkedQueue<>();
+        this.entries = new ConcurrentHashMap<>();
+        this.waiting = new ArrayList<>();
+        this.matchesMade = new AtomicLong();
+        this.totalWait = new AtomicLong();
+        this.maxWait = new AtomicLong();
+        this.startTime = System.nanoTime();
+        timeouts.schedule(new MatchTask(), this.interval);
+    }
+
+    /**
+     * Adds a player to the quick match queue, unless they are already in it.
+     *
+     * @param player the player looking for a game
+     * @return true if the player was added
+     */
+    public boolean enqueue(Player player) {
+        Entry entry = new Entry(player);
+        if (entries.putIfAbsent(player, entry) != null) {
+            return false;
+        }
+        incoming.offer(entry);
+        return true;
+    }
+
+    /**
+     * Removes a player from the quick match queue. A player being paired
+     * right now isn't in the queue, but isn't put back in it if their game
+     * can't be started.
+     *
+     * @param player the player leaving the queue
+     * @return true if the player was in the queue
+     */
+    public boolean cancel(Player player) {
+        player.cancelQuickMatch();
+        Entry entry = entries.remove(player);
+        if (entry == null) {
+            return false;
+        }
+        entry.cancelled = true;
+        return true;
+    }
+
+    /**
+     * Returns the number of players in the quick match queue.
+     *
+     * @return the number of queued players
+     */
+    public int getQueuedCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of games started by the quick match queue.
+     *
+     * @return the number of matches
+     */
+    public long getMatchesMade() {
+        return matchesMade.get();
+    }
+
+    /**
+     * Returns the number of matches made per second since the matchmaker
+     * started.
+     *
+     * @return the matches per second
+     */
+    public double getMatchesPerSecond() {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        return seconds > 0 ? matchesMade.get() / seconds : 0;
+    }
+
+    /**
+     * Returns the average time matched players waited in the queue.
+     *
+     * @return the average time to match in milliseconds
+     */
+    public long getAverageTimeToMatchMillis() {
+        long matched = matchesMade.get() * 2;
+        return matched == 0 ? 0
+                : TimeUnit.NANOSECONDS.toMillis(totalWait.get() / matched);
+    }
+
+    /**
+     * Returns the longest time a matched player waited in the queue.
+     *
+     * @return the longest time to match in milliseconds
+     */
+    public long getMaxTimeToMatchMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWait.get());
+    }
+
+    /**
+     * Updates the ratings of two players after a game, using the Elo rating
+     * system.
+     *
+     * @param winner the player who won
+     * @param loser the player who lost
+     */
+    public static void recordResult(Player winner, Player loser) {
+        double expected = 1 / (1 + Math.pow(10,
+                (loser.getRating() - winner.getRating()) / 400.0));
+        int change = (int) Math.round(ELO_FACTOR * (1 - expected));
+        winner.setRating(winner.getRating() + change);
+        loser.setRating(loser.getRating() - change);
+    }
+
+    /**
+     * Pairs the waiting players. Players are sorted by rating, and each
+     * player is paired with the next one if both of them accept the distance
+     * between their buckets.
+     */
+    private void match() {
+        Entry entry;
+        while ((entry = incoming.poll()) != null) {
+            waiting.add(entry);
+        }
+        long now = System.nanoTime();
+        ArrayList<Entry> left = new ArrayList<>();
+        for (Entry e : waiting) {
+            if (!e.cancelled) {
+                left.add(e);
+            }
+        }
+        Collections.sort(left, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return Integer.compare(a.rating, b.rating);
+            }
+        });
+        waiting.clear();
+        int i = 0;
+        while (i < left.size()) {
+            Entry first = left.get(i);
+            if (i + 1 < left.size()) {
+                Entry second = left.get(i + 1);
+                int distance = Math.abs(first.rating / BUCKET_WIDTH
+                        - second.rating / BUCKET_WIDTH);
+                if (distance <= first.range(now)
+                        && distance <= second.range(now)) {
+                    start(first, second, now);
+                    i += 2;
+                    continue;
+                }
+            }
+            waiting.add(first);
+            ++i;
+        }
+    }
+
+    // starts a game between two queued players, unless one of them has left
+    // the queue or found a game meanwhile
+    private void start(Entry first, Entry second, long now) {
+        if (!entries.remove(first.player, first)) {
+            if (entries.get(second.player) == second) {
+                waiting.add(second);
+            }
+            return;
+        }
+        if (!entries.remove(second.player, second)) {
+            requeue(first);
+            return;
+        }
+        if (matchRoom.startGame(first.player, second.player)) {
+            matchesMade.incrementAndGet();
+            recordWait(now - first.queued);
+            recordWait(now - second.queued);
+        } else {
+            requeue(first);
+            requeue(second);
+        }
+    }
+
+    // puts a player back in the queue if they didn't join another game, and
+    // haven't left the queue or disconnected since they were taken out of it
+    private void requeue(Entry entry) {
+        if (entry.player.getGame() != null || entry.cancelled
+                || entry.cancels != entry.player.getQuickMatchCancels()
+                || entries.putIfAbsent(entry.player, entry) != null) {
+            return;
+        }
+        // a cancel which didn't see the entry in the queue has counted
+        // itself by now
+        if (entry.cancels != entry.player.getQuickMatchCancels()) {
+            entries.remove(entry.player, entry);
+            return;
+        }
+        waiting.add(entry);
+    }
+
+    private void recordWait(long wait) {
+        totalWait.addAndGet(wait);
+        long max;
+        while (wait > (max = maxWait.get())) {
+            if (maxWait.compareAndSet(max, wait)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * A player in the queue, with their rating when they joined it.
+     */
+    private class Entry {
+
+        private Player player;
+        private int rating;
+        private long queued;
+        // cancels of the player before they joined the queue
+        private int cancels;
+        private volatile boolean cancelled;
+
+        private Entry(Player player) {
+            this.player = player;
+            this.rating = player.getRating();
+            this.cancels = player.getQuickMatchCancels();
+            this.queued = System.nanoTime();
+        }
+
+        // number of buckets away the player accepts an opponent from
+        private long range(long now) {
+            return TimeUnit.NANOSECONDS.toMillis(now - queued) / widenInterval;
+        }
+
+    }
+
+    private class MatchTask implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                match();
+            } finally {
+                timeouts.schedule(this, interval);
+            }
+        }
+
+    }
+
+}
@@ -2,46 +2,144 @@ package server;
 
 import model.Board;
 import server.messages.ChatMessage;
+import server.messages.FleetPlacementMessage;
 import server.messages.MoveMessage;
 import server.messages.NotificationMessage;
+import server.metrics.Counter;
+import server.metrics.Histogram;
+import server.metrics.Metrics;
+import server.net.Codec;
+import server.net.Connection;
+import server.net.ConnectionSettings;
+import server.net.FramedObjectInputStream;
+import server.net.FramedObjectOutputStream;
+import server.net.Frames;
+import server.net.NotificationCache;
+import server.net.PreparedMessage;
+import server.net.StreamConnection;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
-public class Player extends Thread {
+public class Player implements Runnable {
 
+    private static final AtomicInteger nextId = new AtomicInteger();
+    private static final Counter CONNECTIONS_OPENED =
+            Metrics.counter("connections.opened");
+    private static final Histogram RECEIVE_NAME =
+            Metrics.histogram("receive.name");
+    private static final Histogram RECEIVE_JOIN =
+            Metrics.histogram("receive.join");
+    private static final Histogram RECEIVE_RESUME =
+            Metrics.histogram("receive.resume");
+    private static final Histogram RECEIVE_FLEET =
+            Metrics.histogram("receive.fleet");
+    private static final Histogram RECEIVE_BOARD =
+            Metrics.histogram("receive.board");
+    private static final Histogram RECEIVE_CHAT =
+            Metrics.histogram("receive.chat");
+    private static final Histogram RECEIVE_OTHER =
+            Metrics.histogram("receive.other");
+
+    private final int id;
     public Socket socket;
     private MatchRoom matchRoom;
-    private String name = "";
-    private ObjectOutputStream out;
-    private Game game;
-    private Board board;
-    private HashMap<String, Player> requestList;
+    private volatile String name = "";
+    private volatile Connection connection;
+    private ConnectionSettings settings;
+    private volatile Game game;
+    private volatile Game watching;
+    private ConcurrentHashMap<String, Player> requestList;
     private String ownKey;
     private String requestedGameKey;
+    private volatile int rating = Matchmaker.INITIAL_RATING;
+    // times the player has left the quick match queue
+    private final AtomicInteger quickMatchCancels = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
 
     /**
      * Constructs a player with a socket to connect through, and a reference
-     * to the match room.
+     * to the match room. The streams to the client are opened when the player
+     * is run. If the settings offer codecs, the framed protocol is used.
+     *
+     * @see server.net.Frames
+     * @param socket the socket connecting to the player
+     * @param matchRoom the match room the player will be placed in
+     * @param settings the connection settings of the server
+     */
+    public Player(Socket socket, MatchRoom matchRoom,
+            ConnectionSettings settings) {
+        this(socket, matchRoom, (Connection) null);
+        this.settings = settings;
+    }
+
+    /**
+     * Constructs a player with a socket to connect through, a reference to
+     * the match room, and the connection that messages are sent through. Used
+     * when the player doesn't have its own thread reading from the socket.
      *
      * @param socket the socket connecting to the player
      * @param matchRoom the match room the player will be placed in
+     * @param connection the connection to send messages through
      */
-    public Player(Socket socket, MatchRoom matchRoom) {
-        System.out.println("<< " + socket.getRemoteSocketAddress().toString());
+    public Player(Socket socket, MatchRoom matchRoom, Connection connection) {
+        this.id = nextId.incrementAndGet();
         this.socket = socket;
         this.matchRoom = matchRoom;
+        this.connection = connection;
         matchRoom.assignKey(this);
         matchRoom.addPlayer(this);
-        this.requestList = new HashMap<>();
-        System.out.println(">> " + socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.PLAYER_CONNECTED + " " + "connected");
+        this.requestList = new ConcurrentHashMap<>();
+        CONNECTIONS_OPENED.increment();
+        if (EventLog.isEnabled(EventLog.INFO)) {
+            EventLog.log(EventLog.INFO, EventLog.IN, id,
+                    NotificationMessage.PLAYER_CONNECTED,
+                    socket.getRemoteSocketAddress());
+        }
+    }
+
+    // a player who has lost their connection, kept in the seat of a game
+    // recovered from the journal until they resume it
+    private Player(String name) {
+        this.id = nextId.incrementAndGet();
+        this.name = name;
+        this.requestList = new ConcurrentHashMap<>();
+        this.connection = new Connection() {
+            @Override
+            public void send(Object message) {
+            }
+
+            @Override
+            public int getQueueDepth() {
+                return 0;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Returns a player who isn't connected, holding a seat of a game
+     * recovered from the journal until the player resumes it. Messages sent
+     * to them are dropped.
+     *
+     * @param name the name of the player
+     * @return the player
+     */
+    static Player absent(String name) {
+        return new Player(name);
     }
 
     /**
@@ -49,91 +147,194 @@ public class Player extends Thread {
      */
     @Override
     public void run() {
-        super.run();
         try {
-            out = new ObjectOutputStream(new BufferedOutputStream(
-                    socket.getOutputStream()));
-            out.flush();
-            ObjectInputStream in = new ObjectInputStream(
+            InputStream socketIn = new BufferedInputStream(
                     socket.getInputStream());
+            OutputStream socketOut = new BufferedOutputStream(
+                    socket.getOutputStream());
+            ObjectOutputStream out;
+            ObjectInputStream in;
+            int codecs = settings.getCodecs();
+            if (codecs != 0) {
+                socketOut.write(Frames.greeting(codecs));
+                socketOut.flush();
+                Codec codec = Frames.chosenCodec(socketIn.read(), codecs);
+                out = new FramedObjectOutputStream(socketOut, codec);
+                in = new FramedObjectInputStream(socketIn, codec);
+            } else {
+                out = new ObjectOutputStream(socketOut);
+                out.flush();
+                in = new ObjectInputStream(socketIn);
+            }
+            connection = new StreamConnection(id, socket, out, settings);
 
             Object input;
 
             while ((input = in.readObject()) != null) {
-                if (input instanceof String[]) {
-                    String[] array = (String[]) input;
-                    int length = array.length;
-
-                    if (length > 0) {
-                        String message = array[0];
-
-                        switch (message) {
-                        case "join":
-                            matchRoom.parse(this, array);
-                            break;
-                        case "name":
-
-                            System.out.println("<< " + socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.NAME_REQUEST + " " + array[1]);
-
-                            if (length != 2 || array[1] == null ||
-                                    array[1].equals("")) {
-                                System.out.println(">> " + socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.INVALID_NAME + " " );
-                                writeNotification(NotificationMessage.INVALID_NAME);
-                            } else if (matchRoom.playerNameExists(array[1])) {
-                                System.out.println (">> " + socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.NAME_TAKEN + " " + array[1]);
-                                writeNotification(NotificationMessage.NAME_TAKEN);
-                            } else {
-                                name = array[1];
-                                System.out.println (">> " + socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.NAME_ACCEPTED  + " " + name);
-                                writeNotification(NotificationMessage.NAME_ACCEPTED);
-                                matchRoom.sendMatchRoomList();
-                            }
-                            break;
-                        }
+                parseInput(input);
+            }
+        } catch (IOException e) {
+            disconnect();
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Parses a message received from the client and executes instructions
+     * based on it. The time taken is recorded in the receive histogram of the
+     * message's type, except for moves, which the game records once it has
+     * applied them.
+     *
+     * @param input the message from the client
+     */
+    public void parseInput(Object input) {
+        long start = System.nanoTime();
+        handleInput(input);
+        Histogram histogram = receiveHistogram(input);
+        if (histogram != null) {
+            histogram.recordSince(start);
+        }
+    }
+
+    // the histogram of the time taken to handle a type of message
+    private static Histogram receiveHistogram(Object input) {
+        if (input instanceof String[]) {
+            String[] array = (String[]) input;
+            String command = array.length > 0 ? array[0] : null;
+            if ("name".equals(command)) {
+                return RECEIVE_NAME;
+            } else if ("join".equals(command)) {
+                return RECEIVE_JOIN;
+            } else if ("resume".equals(command)) {
+                return RECEIVE_RESUME;
+            }
+        } else if (input instanceof FleetPlacementMessage) {
+            return RECEIVE_FLEET;
+        } else if (input instanceof Board) {
+            return RECEIVE_BOARD;
+        } else if (input instanceof MoveMessage) {
+            return null;
+        } else if (input instanceof ChatMessage) {
+            return RECEIVE_CHAT;
+        }
+        return RECEIVE_OTHER;
+    }
+
+    private void handleInput(Object input) {
+        if (input instanceof String[]) {
+            String[] array = (String[]) input;
+            int length = array.length;
+
+            if (length > 0) {
+                String message = array[0];
+
+                switch (message) {
+                case "join":
+                    matchRoom.parse(this, array);
+                    break;
+                case "resume":
+                    if (length == 2 && array[1] != null) {
+                        EventLog.log(EventLog.INFO, EventLog.IN, id,
+                                NotificationMessage.RESUME_TOKEN);
+                        matchRoom.resume(this, array[1]);
                     }
-                } else if (input instanceof Board) {
-                    Board board = (Board) input;
-
-                    // Print Board nhân được từ Client
-                    System.out.println ("<< " + socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.SEND_BOARD  );
-                    board.printBoard(true);
-
-                    if (Board.isValid(board) && game != null) {
-                        System.out.println (">> " + socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.BOARD_ACCEPTED  );
-                        writeNotification(NotificationMessage.BOARD_ACCEPTED);
-                        this.board = board;
-                        game.checkBoards();
-                    } else if (game == null) {
-                        System.out.println (">> " + socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.NOT_IN_GAME );
-                        writeNotification(NotificationMessage.NOT_IN_GAME);
+                    break;
+                case "name":
+
+                    EventLog.log(EventLog.INFO, EventLog.IN, id,
+                            NotificationMessage.NAME_REQUEST, array[1]);
+
+                    if (length != 2 || array[1] == null ||
+                            array[1].equals("")) {
+                        EventLog.log(EventLog.INFO, EventLog.OUT, id,
+                                NotificationMessage.INVALID_NAME);
+                        writeNotification(NotificationMessage.INVALID_NAME);
+                    } else if (!matchRoom.reserveName(this, array[1])) {
+                        EventLog.log(EventLog.INFO, EventLog.OUT, id,
+                                NotificationMessage.NAME_TAKEN, array[1]);
+                        writeNotification(NotificationMessage.NAME_TAKEN);
                     } else {
-                        System.out.println (">> " + socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.INVALID_BOARD);
-                        writeNotification(NotificationMessage.INVALID_BOARD);
-                    }
-                } else if (input instanceof MoveMessage) {
-                    if (game != null) {
-                        game.applyMove((MoveMessage) input, this);
-                    }
-                } else if (input instanceof ChatMessage) {
-                    if (game != null) {
-                        Player opponent = game.getOpponent(this);
-                        if (opponent != null) {
-                            opponent.writeObject(input);
-                        }
+                        name = array[1];
+                        EventLog.log(EventLog.INFO, EventLog.OUT, id,
+                                NotificationMessage.NAME_ACCEPTED, name);
+                        writeNotification(NotificationMessage.NAME_ACCEPTED);
+                        matchRoom.playerRenamed(this);
                     }
+                    break;
                 }
             }
-        } catch (IOException e) {
-            if (game != null) {
-                leaveGame();
+        } else if (input instanceof FleetPlacementMessage) {
+            FleetPlacementMessage fleet = (FleetPlacementMessage) input;
+            EventLog.log(EventLog.DEBUG, EventLog.IN, id,
+                    NotificationMessage.SEND_BOARD);
+            if (fleet.isValid()) {
+                setBoard(fleet.toBoard());
             } else {
-                matchRoom.removeWaitingPlayer(this);
+                setBoard(null);
             }
-            matchRoom.removePlayer(this);
-            System.out.println(">> " + socket.getRemoteSocketAddress().toString() + " connected");
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
+        } else if (input instanceof Board) {
+            Board board = (Board) input;
+
+            // Print Board nhân được từ Client
+            EventLog.log(EventLog.DEBUG, EventLog.IN, id,
+                    NotificationMessage.SEND_BOARD);
+            if (EventLog.isEnabled(EventLog.DEBUG)) {
+                board.printBoard(true);
+            }
+
+            setBoard(Board.isValid(board) ? board : null);
+        } else if (input instanceof MoveMessage) {
+            Game current = game;
+            if (current != null) {
+                current.applyMove((MoveMessage) input, this);
+            }
+        } else if (input instanceof ChatMessage) {
+            Game current = game;
+            if (current != null) {
+                Player opponent = current.getOpponent(this);
+                if (opponent != null) {
+                    opponent.writeObject(input);
+                }
+            }
+        }
+    }
+
+    // passes a board from the client to the game if the player is in one, or
+    // tells them why it was refused, null if the board was invalid
+    private void setBoard(Board board) {
+        Game current = game;
+        if (board != null && current != null) {
+            current.placeBoard(this, board);
+        } else if (current == null) {
+            EventLog.log(EventLog.INFO, EventLog.OUT, id,
+                    NotificationMessage.NOT_IN_GAME);
+            writeNotification(NotificationMessage.NOT_IN_GAME);
+        } else {
+            EventLog.log(EventLog.INFO, EventLog.OUT, id,
+                    NotificationMessage.INVALID_BOARD);
+            writeNotification(NotificationMessage.INVALID_BOARD);
+        }
+    }
+
+    /**
+     * Called when the connection to the client is lost. The player's seat in
+     * any game they are in is kept for them to resume it, and they are
+     * removed from the match room.
+     */
+    public void disconnect() {
+        stopWatching();
+        Game current = game;
+        if (current != null) {
+            current.connectionLost(this);
+        } else {
+            matchRoom.removeWaitingPlayer(this);
         }
+        matchRoom.removePlayer(this);
+        if (connection != null) {
+            connection.close();
+        }
+        EventLog.log(EventLog.INFO, EventLog.OUT, id, EventLog.DISCONNECTED);
     }
 
     /**
@@ -142,9 +343,153 @@ public class Player extends Thread {
      * @param game the game the player is in
      */
     public void setGame(Game game) {
+        if (game != null) {
+            stopWatching();
+        }
         this.game = game;
     }
 
+    /**
+     * Stops watching the game the player is a spectator of, if any.
+     */
+    public void stopWatching() {
+        Game current = watching;
+        if (current != null) {
+            watching = null;
+            current.removeSpectator(this);
+        }
+    }
+
+    /**
+     * Sets the game the player is watching.
+     *
+     * @param game the game being watched
+     */
+    void setWatching(Game game) {
+        this.watching = game;
+    }
+
+    /**
+     * Forgets the game the player was watching, if it is still that game.
+     * Called when the game is over.
+     *
+     * @param expected the game that is over
+     */
+    void clearWatching(Game expected) {
+        lock.lock();
+        try {
+            if (watching == expected) {
+                watching = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of messages waiting to be written to the client.
+     *
+     * @return the outbound queue depth
+     */
+    public int getQueueDepth() {
+        return connection == null ? 0 : connection.getQueueDepth();
+    }
+
+    /**
+     * Removes the player from a game, if it is still the game they are in.
+     * Called by a game when it ends, which may be after the player has
+     * already left it for another.
+     *
+     * @param expected the game the player is to be removed from
+     */
+    public void clearGame(Game expected) {
+        lock.lock();
+        try {
+            if (game == expected) {
+                game = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the name of the player whose seat in a game this player has
+     * resumed, unless another connected player has taken it since.
+     *
+     * @param name the name of the player who lost their connection
+     */
+    void adoptName(String name) {
+        if (!name.equals(this.name) && matchRoom.reserveName(this, name)) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Gets the id of the player's connection, which identifies them in the
+     * event log.
+     *
+     * @return the connection id
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the game the player is in.
+     *
+     * @return the game, or null if the player isn't in a game
+     */
+    public Game getGame() {
+        return game;
+    }
+
+    /**
+     * Gets the rating of the player, used to pair them with players of a
+     * similar level in the quick match queue.
+     *
+     * @return the player's rating
+     */
+    public int getRating() {
+        return rating;
+    }
+
+    /**
+     * Sets the rating of the player.
+     *
+     * @param rating the player's new rating
+     */
+    public void setRating(int rating) {
+        this.rating = rating;
+    }
+
+    /**
+     * Counts the player leaving the quick match queue, whether or not the
+     * queue still held them, so that the queue can tell the player left
+     * while it was pairing them.
+     */
+    void cancelQuickMatch() {
+        quickMatchCancels.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of times the player has left the quick match queue.
+     *
+     * @return the number of cancels
+     */
+    int getQuickMatchCancels() {
+        return quickMatchCancels.get();
+    }
+
+    /**
+     * Gets the lock held while the player's requests are changed.
+     *
+     * @return the player's lock
+     */
+    ReentrantLock getLock() {
+        return lock;
+    }
+
     /**
      * Gets the name that the player has chosen to assign to themselves.
      *
@@ -160,12 +505,7 @@ public class Player extends Thread {
      * @param message the message to be sent
      */
     public void writeMessage(String message) {
-        try {
-            out.writeObject(message);
-            out.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        connection.send(message);
     }
 
     /**
@@ -174,54 +514,46 @@ public class Player extends Thread {
      * @param object the Object to be sent
      */
     public void writeObject(Object object) {
-        try {
-            out.writeObject(object);
-            out.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        connection.send(object);
     }
 
     /**
      * Writes a notification to the player, with an optional String array, and
-     * flushes it.
+     * flushes it. Notifications without text are sent from the
+     * {@link NotificationCache}, already encoded.
      *
      * @see server.messages.NotificationMessage
      * @param notificationMessage the notification message constant to send
      * @param text additional information to be sent as a String array
      */
     public void writeNotification(int notificationMessage, String... text) {
-        try {
-            NotificationMessage nm = new NotificationMessage(
-                    notificationMessage, text);
-            out.writeObject(nm);
-            out.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
+        PreparedMessage cached = NotificationCache.get(notificationMessage,
+                text);
+        if (cached != null) {
+            connection.send(cached);
+        } else {
+            connection.send(new NotificationMessage(notificationMessage, text));
         }
     }
 
-    /**
-     * Gets the board that the player has uploaded to the server.
-     *
-     * @return the player's board
-     */
-    public Board getBoard() {
-        return this.board;
-    }
-
     /**
      * Sends a game request to the player, and updates the request list and the
      * requested game key of the opponent.
      *
      * @param requester the player who sent the request
      */
-    public synchronized void sendRequest(Player requester) {
-        requestList.put(requester.getOwnKey(), requester);
-        requester.requestedGameKey = this.ownKey;
-        System.out.println (">> " + socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.NEW_JOIN_GAME_REQUEST + " " + requester.ownKey);
-        writeNotification(NotificationMessage.NEW_JOIN_GAME_REQUEST,
-                requester.getOwnKey(), requester.getPlayerName());
+    public void sendRequest(Player requester) {
+        lock.lock();
+        try {
+            requestList.put(requester.getOwnKey(), requester);
+            requester.requestedGameKey = this.ownKey;
+            EventLog.log(EventLog.INFO, EventLog.OUT, id,
+                    NotificationMessage.NEW_JOIN_GAME_REQUEST, requester.ownKey);
+            writeNotification(NotificationMessage.NEW_JOIN_GAME_REQUEST,
+                    requester.getOwnKey(), requester.getPlayerName());
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -230,11 +562,17 @@ public class Player extends Thread {
      *
      * @param opponent the player who accepted the request
      */
-    public synchronized void requestAccepted(Player opponent) {
-        opponent.requestList.remove(ownKey);
-        requestedGameKey = null;
-        System.out.println (">> " + socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.JOIN_GAME_REQUEST_ACCEPTED + " " + this.ownKey);
-        writeNotification(NotificationMessage.JOIN_GAME_REQUEST_ACCEPTED);
+    public void requestAccepted(Player opponent) {
+        lock.lock();
+        try {
+            opponent.requestList.remove(ownKey);
+            requestedGameKey = null;
+            EventLog.log(EventLog.INFO, EventLog.OUT, id,
+                    NotificationMessage.JOIN_GAME_REQUEST_ACCEPTED, this.ownKey);
+            writeNotification(NotificationMessage.JOIN_GAME_REQUEST_ACCEPTED);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -242,11 +580,17 @@ public class Player extends Thread {
      * have done so.
      * @param opponent the player who rejected the request
      */
-    public synchronized void requestRejected(Player opponent) {
-        opponent.requestList.remove(ownKey);
-        requestedGameKey = null;
-        System.out.println (">> " + socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.JOIN_GAME_REQUEST_REJECTED + " " + this.ownKey);
-        writeNotification(NotificationMessage.JOIN_GAME_REQUEST_REJECTED);
+    public void requestRejected(Player opponent) {
+        lock.lock();
+        try {
+            opponent.requestList.remove(ownKey);
+            requestedGameKey = null;
+            EventLog.log(EventLog.INFO, EventLog.OUT, id,
+                    NotificationMessage.JOIN_GAME_REQUEST_REJECTED, this.ownKey);
+            writeNotification(NotificationMessage.JOIN_GAME_REQUEST_REJECTED);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -300,11 +644,12 @@ public class Player extends Thread {
      * Ends a game and notifies the opponent the player has left.
      */
     public void leaveGame() {
-        if (game != null) {
-            Player opponent = game.getOpponent(this);
-            System.out.println (">> " + socket.getRemoteSocketAddress().toString() + " " + NotificationMessage.OPPONENT_DISCONNECTED + " ");
-            opponent.writeNotification(NotificationMessage.OPPONENT_DISCONNECTED);
-            game.killGame();
+        Game current = game;
+        if (current != null) {
+            // the player is out of the game straight away, the game ends
+            // itself when it gets to the event
+            clearGame(current);
+            current.playerLeft(this);
         }
     }
 
@@ -1,35 +1,182 @@
 package server;
 
+import server.admin.AdminServer;
+import server.admin.ServerStatus;
+import server.metrics.Metrics;
+import server.net.ConnectionSettings;
+import server.net.Frames;
+import server.net.NioServer;
+
+import java.io.File;
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.util.concurrent.ThreadFactory;
+
+import javax.management.JMException;
 
 public class Server {
 
     /**
-     * Constructs a server that listens on a port.
+     * Constructs a server that listens on a port. Depending on the
+     * server.mode setting, each player either gets their own platform or
+     * virtual thread, or all players are served by a small pool of event
+     * loops.
      *
      * @param port the port to listen on
+     * @param config the server settings
      */
-    public Server(int port) {
+    public Server(int port, ServerConfig config) {
+        EventLog.configure(config.getString("server.log.level", "debug"),
+                config.getInt("server.log.sample", 1));
         try {
-            ServerSocket serverSocket = new ServerSocket(port);
+            int shardCount = config.getInt("server.shards",
+                    Runtime.getRuntime().availableProcessors());
+            String journal = config.getString("server.journal.dir", "");
+            GameShards shards;
+            if (journal.equals("")) {
+                shards = new GameShards(shardCount);
+            } else {
+                shards = new GameShards(shardCount, new File(journal),
+                        config.getInt("server.journal.segmentSize", 4194304),
+                        config.getInt("server.journal.commitInterval", 10));
+            }
+            String replays = config.getString("server.replay.dir", "");
+            if (!replays.equals("")) {
+                shards.recordReplays(new File(replays),
+                        config.getInt("server.replay.segmentSize", 16777216),
+                        config.getInt("server.replay.batch", 64),
+                        config.getInt("server.replay.flushInterval", 1000));
+            }
+            System.out.println("Running games on " + shards.getShardCount()
+                    + " shards");
+            MatchRoom matchRoom = new MatchRoom(new TimeoutService(),
+                    config.getInt("server.lobbyInterval", 100), shards,
+                    config.getInt("server.quickMatch.interval", 250),
+                    config.getInt("server.quickMatch.widen", 5000),
+                    config.getInt("server.resumeWindow", 30000));
 
-            MatchRoom matchRoom = new MatchRoom();
+            int metricsInterval = config.getInt("server.metrics.interval", 0);
+            if (metricsInterval > 0) {
+                Metrics.startReporting(new TimeoutService("metrics"),
+                        metricsInterval);
+            }
+            ServerStatus status = new ServerStatus(matchRoom);
+            try {
+                AdminServer.registerMBeans(status);
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+            int adminPort = config.getInt("server.admin.port", 0);
+            if (adminPort > 0) {
+                AdminServer admin = new AdminServer(status,
+                        config.getString("server.admin.host", "127.0.0.1"),
+                        adminPort);
+                admin.start();
+                System.out.println("Admin endpoint on port "
+                        + admin.getPort());
+            }
 
-            while (true) {
-                new Player(serverSocket.accept(), matchRoom).start();
+            String mode = config.getString("server.mode", "thread");
+            int codecs = Frames.parseCodecs(config.getString("server.codecs",
+                    "binary,serialized"));
+            int outboundLimit = config.getInt("server.outboundLimit", 1024);
+            ConnectionSettings.OverflowPolicy overflowPolicy =
+                    overflowPolicy(config);
+            if (mode.equals("nio")) {
+                int eventLoops = config.getInt("server.eventLoops",
+                        Runtime.getRuntime().availableProcessors());
+                System.out.println("Serving with " + eventLoops
+                        + " event loops");
+                ConnectionSettings settings = new ConnectionSettings(codecs,
+                        outboundLimit, overflowPolicy, null);
+                new NioServer(port, matchRoom, eventLoops, settings).run();
+            } else {
+                ThreadFactory threadFactory = platformThreadFactory();
+                if (mode.equals("virtual")) {
+                    ThreadFactory virtualThreadFactory = virtualThreadFactory();
+                    if (virtualThreadFactory != null) {
+                        threadFactory = virtualThreadFactory;
+                    } else {
+                        System.out.println("Virtual threads are not "
+                                + "available, using platform threads");
+                    }
+                }
+                if (!config.getString("server.protocol", "stream")
+                        .equals("framed")) {
+                    codecs = 0;
+                }
+                ConnectionSettings settings = new ConnectionSettings(codecs,
+                        outboundLimit, overflowPolicy, threadFactory);
+                ServerSocket serverSocket = new ServerSocket(port);
+
+                while (true) {
+                    threadFactory.newThread(new Player(serverSocket.accept(),
+                            matchRoom, settings)).start();
+                }
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Returns what a connection does when its outgoing queue is full, from
+     * the server.outboundOverflow setting, or DISCONNECT if it isn't set or
+     * isn't a policy.
+     *
+     * @param config the server's settings
+     * @return the overflow policy
+     */
+    private static ConnectionSettings.OverflowPolicy overflowPolicy(
+            ServerConfig config) {
+        String value = config.getString("server.outboundOverflow",
+                "disconnect");
+        try {
+            return ConnectionSettings.OverflowPolicy.valueOf(
+                    value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid value for server.outboundOverflow: "
+                    + value);
+            return ConnectionSettings.OverflowPolicy.DISCONNECT;
+        }
+    }
+
+    private static ThreadFactory platformThreadFactory() {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable);
+            }
+        };
+    }
+
+    /**
+     * Returns a factory creating virtual threads, or null if the JVM doesn't
+     * support them. Looked up reflectively so that the server still compiles
+     * and runs on JVMs without virtual threads.
+     *
+     * @return a virtual thread factory, or null
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, "player-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory")
+                    .invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
     public static void main(String[] args) {
-        int port = 8900;
+        ServerConfig config = ServerConfig.load("config.properties");
+        int port = config.getInt("port", 8900);
         if (args.length == 1) {
             port = Integer.parseInt(args[0]);
         }
-        new Server(port);
+        new Server(port, config);
     }
 
 }
@@ -0,0 +1,78 @@
+package server;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Server settings loaded from config.properties. Every setting has a default,
+ * so the server still starts if the file or a key is missing.
+ */
+public class ServerConfig {
+
+    private Properties properties;
+
+    /**
+     * Constructs a ServerConfig backed by the given properties.
+     *
+     * @param properties the loaded properties
+     */
+    public ServerConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Loads the config file at the given path. If the file can't be read,
+     * an empty config is returned and the defaults are used.
+     *
+     * @param path path of the config file
+     * @return the loaded config
+     */
+    public static ServerConfig load(String path) {
+        Properties properties = new Properties();
+        try (InputStream inputStream = new FileInputStream(path)) {
+            properties.load(inputStream);
+        } catch (IOException e) {
+            System.out.println("Could not read " + path + ", using defaults");
+        }
+        return new ServerConfig(properties);
+    }
+
+    /**
+     * Returns the value of a setting, or the default if it isn't set.
+     *
+     * @param key name of the setting
+     * @param defaultValue value used if the setting is missing
+     * @return the value of the setting
+     */
+    public String getString(String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        return value.trim();
+    }
+
+    /**
+     * Returns the value of an integer setting, or the default if it isn't set
+     * or isn't a number.
+     *
+     * @param key name of the setting
+     * @param defaultValue value used if the setting is missing
+     * @return the value of the setting
+     */
+    public int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid value for " + key + ": " + value);
+            return defaultValue;
+        }
+    }
+
+}
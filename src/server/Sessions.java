@@ -0,0 +1,88 @@
+package server;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The resume tokens of the running games. Each player in a game is given a
+ * random token, which lets them take their seat back from a new connection
+ * if their connection is lost.
+ */
+public class Sessions {
+
+    private static final String ALPHABET =
+            "abcdefghijklmnopqrstuvwxyz0123456789";
+    private static final int TOKEN_LENGTH = 24;
+
+    private SecureRandom random;
+    private ConcurrentHashMap<String, Game> games;
+
+    /**
+     * Constructs an empty set of sessions.
+     */
+    public Sessions() {
+        this.random = new SecureRandom();
+        this.games = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Creates a new token for a seat of a game.
+     *
+     * @param game the game
+     * @return the token
+     */
+    public String newToken(Game game) {
+        String token;
+        do {
+            StringBuilder builder = new StringBuilder(TOKEN_LENGTH);
+            for (int i = 0; i < TOKEN_LENGTH; ++i) {
+                builder.append(ALPHABET.charAt(random.nextInt(
+                        ALPHABET.length())));
+            }
+            token = builder.toString();
+        } while (games.putIfAbsent(token, game) != null);
+        return token;
+    }
+
+    /**
+     * Registers the token of a seat of a game recovered from the journal.
+     *
+     * @param token the token
+     * @param game the game
+     */
+    public void register(String token, Game game) {
+        games.put(token, game);
+    }
+
+    /**
+     * Returns the game a token belongs to.
+     *
+     * @param token the token
+     * @return the game, or null if the token isn't in use
+     */
+    public Game get(String token) {
+        return games.get(token);
+    }
+
+    /**
+     * Removes the token of a game which has ended.
+     *
+     * @param token the token
+     * @param game the game the token belongs to
+     */
+    public void remove(String token, Game game) {
+        if (token != null) {
+            games.remove(token, game);
+        }
+    }
+
+    /**
+     * Returns the number of tokens in use.
+     *
+     * @return the number of tokens
+     */
+    public int size() {
+        return games.size();
+    }
+
+}
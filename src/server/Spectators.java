@@ -0,0 +1,207 @@
+package server;
+
+import server.metrics.Histogram;
+import server.metrics.Metrics;
+import server.net.PreparedMessage;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The players watching a game. Each event of the game is encoded once, and
+ * the same frame is written to every spectator from the fan-out thread of
+ * the game's shard, so the players of the game never wait for its
+ * spectators. A spectator whose outbound queue is backed up skips events
+ * until it has drained, and is then sent a new snapshot of the game in place
+ * of the events it missed.
+ * <p>
+ * The list of spectators is only used from the fan-out thread, which keeps
+ * the events, snapshots and the end of the game in the order the game sent
+ * them.
+ */
+public class Spectators {
+
+    /**
+     * Number of messages queued for a spectator above which they skip
+     * events.
+     */
+    public static final int SKIP_DEPTH = 32;
+
+    private static final AtomicLong skippedCount = new AtomicLong();
+    // time to hand an event to every spectator of a game
+    private static final Histogram FANOUT_TIME =
+            Metrics.histogram("spectators.fanout");
+
+    private Game game;
+    private Executor fanout;
+    private LinkedHashMap<Player, Spectator> spectators;
+    private AtomicInteger count;
+
+    /**
+     * Constructs an empty list of spectators.
+     *
+     * @param game the game being watched
+     * @param fanout the thread writing the game's events to its spectators
+     */
+    public Spectators(Game game, Executor fanout) {
+        this.game = game;
+        this.fanout = fanout;
+        this.spectators = new LinkedHashMap<>();
+        this.count = new AtomicInteger();
+    }
+
+    /**
+     * Adds a spectator, who is first sent a snapshot of the game. A player
+     * already watching the game is only sent the snapshot again.
+     *
+     * @param player the player watching the game
+     * @param snapshot the snapshot of the game
+     */
+    public void add(final Player player, final Object snapshot) {
+        // counted straight away, so that an event published after the
+        // snapshot was taken is queued behind the spectator being added
+        // rather than dropped
+        count.incrementAndGet();
+        fanout.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!spectators.containsKey(player)) {
+                    spectators.put(player, new Spectator(player));
+                } else {
+                    count.decrementAndGet();
+                }
+                player.writeObject(snapshot);
+            }
+        });
+    }
+
+    /**
+     * Removes a spectator.
+     *
+     * @param player the player who stopped watching
+     */
+    public void remove(final Player player) {
+        fanout.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (spectators.remove(player) != null) {
+                    count.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * Sends an event of the game to every spectator who is keeping up. The
+     * event is only encoded if somebody is watching.
+     *
+     * @param message the event
+     */
+    public void publish(Object message) {
+        if (count.get() == 0) {
+            return;
+        }
+        final PreparedMessage prepared = new PreparedMessage(message);
+        fanout.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                for (Spectator spectator : spectators.values()) {
+                    send(spectator, prepared);
+                }
+                FANOUT_TIME.recordSince(start);
+            }
+        });
+    }
+
+    /**
+     * Sends a new snapshot to a spectator who skipped events, who then
+     * receives events again.
+     *
+     * @param player the spectator
+     * @param snapshot the snapshot of the game
+     */
+    public void resynced(final Player player, final Object snapshot) {
+        fanout.execute(new Runnable() {
+            @Override
+            public void run() {
+                Spectator spectator = spectators.get(player);
+                if (spectator != null) {
+                    spectator.skipping = false;
+                    spectator.resyncing = false;
+                    player.writeObject(snapshot);
+                }
+            }
+        });
+    }
+
+    /**
+     * Sends a last message to every spectator when the game is over, and
+     * removes them all.
+     *
+     * @param message the message telling the spectators the game is over
+     */
+    public void close(Object message) {
+        final PreparedMessage prepared = new PreparedMessage(message);
+        fanout.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Spectator spectator : spectators.values()) {
+                    spectator.player.writeObject(prepared);
+                    spectator.player.clearWatching(game);
+                }
+                spectators.clear();
+                count.set(0);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of spectators.
+     *
+     * @return the number of spectators
+     */
+    public int getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the number of events skipped by slow spectators of all games
+     * since the server started.
+     *
+     * @return the number of skipped events
+     */
+    public static long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    // writes an event to a spectator, unless they are behind
+    private void send(Spectator spectator, PreparedMessage prepared) {
+        int depth = spectator.player.getQueueDepth();
+        if (!spectator.skipping && depth < SKIP_DEPTH) {
+            spectator.player.writeObject(prepared);
+            return;
+        }
+        spectator.skipping = true;
+        skippedCount.incrementAndGet();
+        if (!spectator.resyncing && depth < SKIP_DEPTH / 2) {
+            spectator.resyncing = true;
+            game.resyncSpectator(spectator.player);
+        }
+    }
+
+    private static class Spectator {
+
+        private Player player;
+        private boolean skipping;
+        private boolean resyncing;
+
+        private Spectator(Player player) {
+            this.player = player;
+        }
+
+    }
+
+}
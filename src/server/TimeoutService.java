@@ -0,0 +1,163 @@
+package server;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A single timer thread shared by many {@link Game}s, used for the placement
+ * and turn timeouts instead of starting a new {@link java.util.Timer} thread
+ * for each. Keeps count of the pending timeouts, and of how late they run.
+ * Tasks can also be run on the thread straight away, which lets a
+ * {@link GameShard} run its games and their timeouts on the same thread.
+ */
+public class TimeoutService implements Executor {
+
+    private ScheduledThreadPoolExecutor executor;
+    private AtomicInteger pendingCount;
+    private AtomicLong lastLag;
+    private AtomicLong maxLag;
+
+    /**
+     * Constructs a TimeoutService and starts its timer thread.
+     */
+    public TimeoutService() {
+        this("timeouts");
+    }
+
+    /**
+     * Constructs a TimeoutService and starts its timer thread with the given
+     * name.
+     *
+     * @param threadName the name of the timer thread
+     */
+    public TimeoutService(final String threadName) {
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.pendingCount = new AtomicInteger();
+        this.lastLag = new AtomicLong();
+        this.maxLag = new AtomicLong();
+    }
+
+    /**
+     * Runs a task once the given delay has passed, unless it is cancelled
+     * first. The task runs on the shared timer thread, so it must not block.
+     *
+     * @param task the task to run
+     * @param delay the delay in milliseconds
+     * @return a handle which can cancel the timeout
+     */
+    public Timeout schedule(Runnable task, long delay) {
+        Timeout timeout = new Timeout(task, System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(delay));
+        pendingCount.incrementAndGet();
+        timeout.future = executor.schedule(timeout, delay,
+                TimeUnit.MILLISECONDS);
+        return timeout;
+    }
+
+    /**
+     * Runs a task on the timer thread as soon as it is free.
+     *
+     * @param task the task to run
+     */
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Returns the number of timeouts that are waiting to run.
+     *
+     * @return the number of pending timeouts
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Returns how late the most recent timeout ran.
+     *
+     * @return the lag in milliseconds
+     */
+    public long getLastLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastLag.get());
+    }
+
+    /**
+     * Returns the greatest lag of any timeout so far.
+     *
+     * @return the greatest lag in milliseconds
+     */
+    public long getMaxLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLag.get());
+    }
+
+    /**
+     * A scheduled task, which can be cancelled until it has run.
+     */
+    public class Timeout implements Runnable {
+
+        private Runnable task;
+        private long deadline;
+        private AtomicBoolean done;
+        private volatile ScheduledFuture<?> future;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+            this.done = new AtomicBoolean();
+        }
+
+        /**
+         * Cancels the timeout, if it hasn't run yet.
+         *
+         * @return true if the timeout was cancelled before running
+         */
+        public boolean cancel() {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            pendingCount.decrementAndGet();
+            if (future != null) {
+                future.cancel(false);
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            pendingCount.decrementAndGet();
+            long lag = Math.max(0, System.nanoTime() - deadline);
+            lastLag.set(lag);
+            long max;
+            while (lag > (max = maxLag.get())) {
+                if (maxLag.compareAndSet(max, lag)) {
+                    break;
+                }
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+package server.admin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A small HTTP server for operators, serving the {@link ServerStatus} as
+ * JSON at /status and in the Prometheus text format at /metrics. Requests
+ * are answered one at a time on the server's own thread, and only read the
+ * state the way {@link ServerStatus} does, so scraping never holds up the
+ * lobby or the games. It is meant to be bound to a local address.
+ */
+public class AdminServer {
+
+    private HttpServer server;
+
+    /**
+     * Constructs an AdminServer listening on the given address, which is
+     * started with {@link #start()}.
+     *
+     * @param status the state to serve
+     * @param host the address to listen on
+     * @param port the port to listen on
+     * @throws IOException if the port can't be bound
+     */
+    public AdminServer(final ServerStatus status, String host, int port)
+            throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        server.createContext("/status", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, "application/json", status.toJson());
+            }
+        });
+        server.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange, "text/plain; version=0.0.4",
+                        status.toPrometheus());
+            }
+        });
+    }
+
+    /**
+     * Starts answering requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops answering requests and closes the port.
+     */
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Registers the state of the server as battleship:type=Server, and the
+     * metrics as battleship:type=Metrics, with the platform MBean server.
+     *
+     * @param status the state of the server
+     * @throws JMException if the beans can't be registered
+     */
+    public static void registerMBeans(ServerStatus status)
+            throws JMException {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        mBeanServer.registerMBean(status,
+                new ObjectName("battleship:type=Server"));
+        mBeanServer.registerMBean(new MetricsBean(),
+                new ObjectName("battleship:type=Metrics"));
+    }
+
+    private static void respond(HttpExchange exchange, String contentType,
+            String body) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type",
+                    contentType + "; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(bytes);
+            out.close();
+        } finally {
+            exchange.close();
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+package server.admin;
+
+import server.metrics.Counter;
+import server.metrics.Gauge;
+import server.metrics.Histogram;
+import server.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Shows the {@link Metrics} registry over JMX, one read-only attribute per
+ * gauge and counter, and a count, 50th, 99th percentile and largest value
+ * in microseconds per histogram, as name.count, name.p50, name.p99 and
+ * name.max. Metrics are found when the attributes are listed, so ones
+ * registered after the bean show up too.
+ */
+public class MetricsBean implements DynamicMBean {
+
+    @Override
+    public Object getAttribute(String attribute)
+            throws AttributeNotFoundException {
+        Gauge gauge = Metrics.getGauges().get(attribute);
+        if (gauge != null) {
+            return gauge.get();
+        }
+        Counter counter = Metrics.getCounters().get(attribute);
+        if (counter != null) {
+            return counter.get();
+        }
+        int dot = attribute.lastIndexOf('.');
+        if (dot > 0) {
+            Histogram histogram = Metrics.getHistograms().get(
+                    attribute.substring(0, dot));
+            if (histogram != null) {
+                String part = attribute.substring(dot + 1);
+                if (part.equals("count")) {
+                    return histogram.getCount();
+                } else if (part.equals("p50")) {
+                    return histogram.getPercentile(50) / 1000;
+                } else if (part.equals("p99")) {
+                    return histogram.getPercentile(99) / 1000;
+                } else if (part.equals("max")) {
+                    return histogram.getMax() / 1000;
+                }
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // left out of the list, as the interface asks
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute)
+            throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName()
+                + " is read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params,
+            String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        ArrayList<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (String name : Metrics.getGauges().keySet()) {
+            attributes.add(attribute(name, "Gauge " + name));
+        }
+        for (String name : Metrics.getCounters().keySet()) {
+            attributes.add(attribute(name, "Counter " + name));
+        }
+        for (Map.Entry<String, Histogram> entry
+                : Metrics.getHistograms().entrySet()) {
+            String name = entry.getKey();
+            attributes.add(attribute(name + ".count",
+                    "Values recorded in " + name));
+            attributes.add(attribute(name + ".p50",
+                    "50th percentile of " + name + " in microseconds"));
+            attributes.add(attribute(name + ".p99",
+                    "99th percentile of " + name + " in microseconds"));
+            attributes.add(attribute(name + ".max",
+                    "Largest value of " + name + " in microseconds"));
+        }
+        return new MBeanInfo(getClass().getName(), "The server's metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null,
+                new MBeanOperationInfo[0], null);
+    }
+
+    private static MBeanAttributeInfo attribute(String name,
+            String description) {
+        return new MBeanAttributeInfo(name, "long", description, true, false,
+                false);
+    }
+
+}
@@ -0,0 +1,437 @@
+package server.admin;
+
+import server.Game;
+import server.GameShard;
+import server.GameShards;
+import server.MatchRoom;
+import server.Player;
+import server.Spectators;
+import server.TimeoutService;
+import server.metrics.Counter;
+import server.metrics.Gauge;
+import server.metrics.Histogram;
+import server.metrics.Metrics;
+import server.net.OutboundQueue;
+
+import java.util.Map;
+
+/**
+ * Reads the live state of the server for {@link AdminServer} and JMX. The
+ * players, the waiting player list and the running games are all kept in
+ * concurrent maps, and the counts in atomic counters, so the state is read
+ * without the lobby lock and without posting anything to the shards. The
+ * values are each correct as they are read, but not all from the same
+ * moment.
+ */
+public class ServerStatus implements ServerStatusMBean {
+
+    private static final Counter CONNECTIONS_OPENED =
+            Metrics.counter("connections.opened");
+
+    private MatchRoom matchRoom;
+    private GameShards shards;
+
+    /**
+     * Constructs a ServerStatus reading the state of a match room and its
+     * shards.
+     *
+     * @param matchRoom the match room
+     */
+    public ServerStatus(MatchRoom matchRoom) {
+        this.matchRoom = matchRoom;
+        this.shards = matchRoom.getShards();
+    }
+
+    @Override
+    public int getConnectionCount() {
+        return matchRoom.getPlayerCount();
+    }
+
+    @Override
+    public long getConnectionsOpened() {
+        return CONNECTIONS_OPENED.get();
+    }
+
+    @Override
+    public int getWaitingCount() {
+        return matchRoom.getWaitingCount();
+    }
+
+    @Override
+    public int getQuickMatchQueued() {
+        return matchRoom.getMatchmaker().getQueuedCount();
+    }
+
+    @Override
+    public int getGameCount() {
+        return shards.getTotalLoad();
+    }
+
+    @Override
+    public int[] getShardLoads() {
+        return shards.getLoads();
+    }
+
+    @Override
+    public int getSpectatorCount() {
+        int count = 0;
+        for (int i = 0; i < shards.getShardCount(); ++i) {
+            for (Game game : shards.getShard(i).getGames()) {
+                count += game.getSpectatorCount();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int getSessionCount() {
+        return matchRoom.getSessions().size();
+    }
+
+    @Override
+    public int getRecoveredGameCount() {
+        return shards.getRecoveredGames().size();
+    }
+
+    @Override
+    public long getOldestTurnAgeMillis() {
+        long oldest = -1;
+        for (int i = 0; i < shards.getShardCount(); ++i) {
+            for (Game game : shards.getShard(i).getGames()) {
+                oldest = Math.max(oldest, game.getTurnAgeMillis());
+            }
+        }
+        return oldest;
+    }
+
+    @Override
+    public String[] getGames() {
+        StringBuilder games = new StringBuilder();
+        for (int i = 0; i < shards.getShardCount(); ++i) {
+            for (Game game : shards.getShard(i).getGames()) {
+                String[] names = game.getPlayerNames();
+                games.append(game.getId()).append(": ").append(names[0])
+                        .append(" vs ").append(names[1]).append(", shard ")
+                        .append(i).append(", turn age ")
+                        .append(game.getTurnAgeMillis()).append(" ms\n");
+            }
+        }
+        return games.length() == 0 ? new String[0]
+                : games.toString().split("\n");
+    }
+
+    @Override
+    public int getTimerBacklog() {
+        int backlog = matchRoom.getTimeouts().getPendingCount();
+        for (int i = 0; i < shards.getShardCount(); ++i) {
+            GameShard shard = shards.getShard(i);
+            backlog += shard.getThread().getPendingCount()
+                    + shard.getFanout().getPendingCount();
+        }
+        return backlog;
+    }
+
+    @Override
+    public long getTimerLagMillis() {
+        long lag = matchRoom.getTimeouts().getLastLagMillis();
+        for (int i = 0; i < shards.getShardCount(); ++i) {
+            GameShard shard = shards.getShard(i);
+            lag = Math.max(lag, Math.max(shard.getThread().getLastLagMillis(),
+                    shard.getFanout().getLastLagMillis()));
+        }
+        return lag;
+    }
+
+    @Override
+    public long getMaxTimerLagMillis() {
+        long lag = matchRoom.getTimeouts().getMaxLagMillis();
+        for (int i = 0; i < shards.getShardCount(); ++i) {
+            GameShard shard = shards.getShard(i);
+            lag = Math.max(lag, Math.max(shard.getThread().getMaxLagMillis(),
+                    shard.getFanout().getMaxLagMillis()));
+        }
+        return lag;
+    }
+
+    @Override
+    public long getOutboundQueueDepth() {
+        return OutboundQueue.getTotalDepth();
+    }
+
+    @Override
+    public int getDeepestOutboundQueue() {
+        int deepest = 0;
+        for (Player player : matchRoom.getPlayers()) {
+            deepest = Math.max(deepest, player.getQueueDepth());
+        }
+        return deepest;
+    }
+
+    @Override
+    public int getHighestOutboundQueueDepth() {
+        return OutboundQueue.getHighestDepth();
+    }
+
+    @Override
+    public long getOutboundOverflowCount() {
+        return OutboundQueue.getOverflowCount();
+    }
+
+    /**
+     * Describes the state of the server and every metric as a JSON object.
+     *
+     * @return the JSON text
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"connections\":").append(getConnectionCount());
+        json.append(",\"connectionsOpened\":").append(getConnectionsOpened());
+        json.append(",\"waiting\":").append(getWaitingCount());
+        json.append(",\"quickMatchQueued\":").append(getQuickMatchQueued());
+        json.append(",\"sessions\":").append(getSessionCount());
+        json.append(",\"recoveredGames\":").append(getRecoveredGameCount());
+        json.append(",\"spectatorsSkipped\":")
+                .append(Spectators.getSkippedCount());
+        json.append(",\"outboundQueues\":{\"depth\":")
+                .append(getOutboundQueueDepth());
+        json.append(",\"deepest\":").append(getDeepestOutboundQueue());
+        json.append(",\"highest\":").append(getHighestOutboundQueueDepth());
+        json.append(",\"overflows\":").append(getOutboundOverflowCount());
+        json.append("},\"timers\":[");
+        appendTimer(json, "lobby", matchRoom.getTimeouts());
+        for (int i = 0; i < shards.getShardCount(); ++i) {
+            GameShard shard = shards.getShard(i);
+            json.append(',');
+            appendTimer(json, "shard-" + i, shard.getThread());
+            json.append(',');
+            appendTimer(json, "shard-" + i + "-fanout", shard.getFanout());
+        }
+        json.append("],\"shards\":[");
+        for (int i = 0; i < shards.getShardCount(); ++i) {
+            GameShard shard = shards.getShard(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"load\":").append(shard.getLoad())
+                    .append(",\"gamesStarted\":")
+                    .append(shard.getGamesStarted()).append('}');
+        }
+        json.append("],\"games\":[");
+        boolean first = true;
+        for (int i = 0; i < shards.getShardCount(); ++i) {
+            for (Game game : shards.getShard(i).getGames()) {
+                String[] names = game.getPlayerNames();
+                json.append(first ? "" : ",").append("{\"id\":")
+                        .append(game.getId()).append(",\"shard\":").append(i)
+                        .append(",\"players\":[");
+                appendString(json, names[0]);
+                json.append(',');
+                appendString(json, names[1]);
+                json.append("],\"turnAgeMillis\":")
+                        .append(game.getTurnAgeMillis())
+                        .append(",\"spectators\":")
+                        .append(game.getSpectatorCount()).append('}');
+                first = false;
+            }
+        }
+        json.append("],\"metrics\":{");
+        first = true;
+        for (Map.Entry<String, Gauge> entry
+                : Metrics.getGauges().entrySet()) {
+            json.append(first ? "" : ",");
+            appendString(json, entry.getKey());
+            json.append(':').append(entry.getValue().get());
+            first = false;
+        }
+        for (Map.Entry<String, Counter> entry
+                : Metrics.getCounters().entrySet()) {
+            json.append(first ? "" : ",");
+            appendString(json, entry.getKey());
+            json.append(':').append(entry.getValue().get());
+            first = false;
+        }
+        for (Map.Entry<String, Histogram> entry
+                : Metrics.getHistograms().entrySet()) {
+            Histogram histogram = entry.getValue();
+            long[] percentiles = histogram.getPercentiles(50, 90, 99, 99.9);
+            json.append(first ? "" : ",");
+            appendString(json, entry.getKey());
+            json.append(":{\"count\":").append(histogram.getCount())
+                    .append(",\"p50\":").append(percentiles[0] / 1000)
+                    .append(",\"p90\":").append(percentiles[1] / 1000)
+                    .append(",\"p99\":").append(percentiles[2] / 1000)
+                    .append(",\"p999\":").append(percentiles[3] / 1000)
+                    .append(",\"max\":").append(histogram.getMax() / 1000)
+                    .append('}');
+            first = false;
+        }
+        json.append("}}\n");
+        return json.toString();
+    }
+
+    /**
+     * Describes the state of the server and every metric in the Prometheus
+     * text format. Metric names are prefixed with battleship_ and have their
+     * dots replaced with underscores. Histograms are given as summaries in
+     * seconds.
+     *
+     * @return the text
+     */
+    public String toPrometheus() {
+        StringBuilder text = new StringBuilder();
+        type(text, "battleship_quick_match_queued", "gauge");
+        sample(text, "battleship_quick_match_queued", "",
+                getQuickMatchQueued());
+        type(text, "battleship_sessions", "gauge");
+        sample(text, "battleship_sessions", "", getSessionCount());
+        type(text, "battleship_recovered_games", "gauge");
+        sample(text, "battleship_recovered_games", "",
+                getRecoveredGameCount());
+        type(text, "battleship_spectators_skipped_total", "counter");
+        sample(text, "battleship_spectators_skipped_total", "",
+                Spectators.getSkippedCount());
+        type(text, "battleship_outbound_queue_depth", "gauge");
+        sample(text, "battleship_outbound_queue_depth", "",
+                getOutboundQueueDepth());
+        type(text, "battleship_outbound_queue_deepest", "gauge");
+        sample(text, "battleship_outbound_queue_deepest", "",
+                getDeepestOutboundQueue());
+        type(text, "battleship_outbound_queue_highest", "gauge");
+        sample(text, "battleship_outbound_queue_highest", "",
+                getHighestOutboundQueueDepth());
+        type(text, "battleship_outbound_overflows_total", "counter");
+        sample(text, "battleship_outbound_overflows_total", "",
+                getOutboundOverflowCount());
+
+        type(text, "battleship_timer_pending", "gauge");
+        sample(text, "battleship_timer_pending", "thread=\"lobby\"",
+                matchRoom.getTimeouts().getPendingCount());
+        for (int i = 0; i < shards.getShardCount(); ++i) {
+            GameShard shard = shards.getShard(i);
+            sample(text, "battleship_timer_pending",
+                    "thread=\"shard-" + i + "\"",
+                    shard.getThread().getPendingCount());
+            sample(text, "battleship_timer_pending",
+                    "thread=\"shard-" + i + "-fanout\"",
+                    shard.getFanout().getPendingCount());
+        }
+        type(text, "battleship_timer_lag_seconds", "gauge");
+        sample(text, "battleship_timer_lag_seconds", "thread=\"lobby\"",
+                matchRoom.getTimeouts().getLastLagMillis() / 1e3);
+        for (int i = 0; i < shards.getShardCount(); ++i) {
+            GameShard shard = shards.getShard(i);
+            sample(text, "battleship_timer_lag_seconds",
+                    "thread=\"shard-" + i + "\"",
+                    shard.getThread().getLastLagMillis() / 1e3);
+            sample(text, "battleship_timer_lag_seconds",
+                    "thread=\"shard-" + i + "-fanout\"",
+                    shard.getFanout().getLastLagMillis() / 1e3);
+        }
+
+        type(text, "battleship_shard_games", "gauge");
+        for (int i = 0; i < shards.getShardCount(); ++i) {
+            sample(text, "battleship_shard_games", "shard=\"" + i + "\"",
+                    shards.getShard(i).getLoad());
+        }
+        type(text, "battleship_shard_games_started_total", "counter");
+        for (int i = 0; i < shards.getShardCount(); ++i) {
+            sample(text, "battleship_shard_games_started_total",
+                    "shard=\"" + i + "\"",
+                    shards.getShard(i).getGamesStarted());
+        }
+        type(text, "battleship_game_turn_age_seconds", "gauge");
+        for (int i = 0; i < shards.getShardCount(); ++i) {
+            for (Game game : shards.getShard(i).getGames()) {
+                long age = game.getTurnAgeMillis();
+                if (age >= 0) {
+                    sample(text, "battleship_game_turn_age_seconds",
+                            "game=\"" + game.getId() + "\"", age / 1e3);
+                }
+            }
+        }
+
+        for (Map.Entry<String, Gauge> entry
+                : Metrics.getGauges().entrySet()) {
+            String name = name(entry.getKey());
+            type(text, name, "gauge");
+            sample(text, name, "", entry.getValue().get());
+        }
+        for (Map.Entry<String, Counter> entry
+                : Metrics.getCounters().entrySet()) {
+            String name = name(entry.getKey()) + "_total";
+            type(text, name, "counter");
+            sample(text, name, "", entry.getValue().get());
+        }
+        for (Map.Entry<String, Histogram> entry
+                : Metrics.getHistograms().entrySet()) {
+            Histogram histogram = entry.getValue();
+            String name = name(entry.getKey()) + "_seconds";
+            long[] percentiles = histogram.getPercentiles(50, 90, 99, 99.9);
+            type(text, name, "summary");
+            sample(text, name, "quantile=\"0.5\"", percentiles[0] / 1e9);
+            sample(text, name, "quantile=\"0.9\"", percentiles[1] / 1e9);
+            sample(text, name, "quantile=\"0.99\"", percentiles[2] / 1e9);
+            sample(text, name, "quantile=\"0.999\"", percentiles[3] / 1e9);
+            sample(text, name + "_sum", "", histogram.getSum() / 1e9);
+            sample(text, name + "_count", "", histogram.getCount());
+        }
+        return text.toString();
+    }
+
+    private static void appendTimer(StringBuilder json, String name,
+            TimeoutService timeouts) {
+        json.append("{\"thread\":\"").append(name)
+                .append("\",\"pending\":").append(timeouts.getPendingCount())
+                .append(",\"lagMillis\":").append(timeouts.getLastLagMillis())
+                .append(",\"maxLagMillis\":")
+                .append(timeouts.getMaxLagMillis()).append('}');
+    }
+
+    // player names are chosen by the players, so anything is escaped
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static String name(String metric) {
+        return "battleship_" + metric.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+
+    private static void type(StringBuilder text, String name, String type) {
+        text.append("# TYPE ").append(name).append(' ').append(type)
+                .append('\n');
+    }
+
+    private static void sample(StringBuilder text, String name,
+            String labels, long value) {
+        text.append(name);
+        if (!labels.isEmpty()) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ').append(value).append('\n');
+    }
+
+    private static void sample(StringBuilder text, String name,
+            String labels, double value) {
+        text.append(name);
+        if (!labels.isEmpty()) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ').append(value).append('\n');
+    }
+
+}
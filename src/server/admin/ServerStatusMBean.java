@@ -0,0 +1,141 @@
+package server.admin;
+
+/**
+ * The live state of the server, as seen over JMX. Every attribute is read
+ * from concurrent maps and atomic counters, so reading one never waits for
+ * the lobby lock or a game's shard.
+ */
+public interface ServerStatusMBean {
+
+    /**
+     * Returns the number of connected players.
+     *
+     * @return the number of connections
+     */
+    int getConnectionCount();
+
+    /**
+     * Returns the number of connections accepted since the server started.
+     *
+     * @return the number of connections opened
+     */
+    long getConnectionsOpened();
+
+    /**
+     * Returns the number of players in the waiting player list.
+     *
+     * @return the number of waiting players
+     */
+    int getWaitingCount();
+
+    /**
+     * Returns the number of players in the quick match queue.
+     *
+     * @return the number of queued players
+     */
+    int getQuickMatchQueued();
+
+    /**
+     * Returns the number of running games.
+     *
+     * @return the number of games
+     */
+    int getGameCount();
+
+    /**
+     * Returns the number of running games on each shard.
+     *
+     * @return the load of each shard, by shard number
+     */
+    int[] getShardLoads();
+
+    /**
+     * Returns the number of players watching games.
+     *
+     * @return the number of spectators
+     */
+    int getSpectatorCount();
+
+    /**
+     * Returns the number of resume tokens in use.
+     *
+     * @return the number of sessions
+     */
+    int getSessionCount();
+
+    /**
+     * Returns the number of games recovered from the journal which are still
+     * waiting for their players.
+     *
+     * @return the number of recovered games
+     */
+    int getRecoveredGameCount();
+
+    /**
+     * Returns how long the longest running turn of any game has been going.
+     *
+     * @return the age of the oldest turn in milliseconds, or -1 if no game
+     *         has a turn running
+     */
+    long getOldestTurnAgeMillis();
+
+    /**
+     * Describes the running games, one per line, as their id, players and
+     * turn age.
+     *
+     * @return the running games
+     */
+    String[] getGames();
+
+    /**
+     * Returns the number of timeouts waiting to run on the match room's and
+     * the shards' timer threads.
+     *
+     * @return the timer backlog
+     */
+    int getTimerBacklog();
+
+    /**
+     * Returns how late the most recent timeout ran on the timer thread which
+     * is furthest behind.
+     *
+     * @return the lag in milliseconds
+     */
+    long getTimerLagMillis();
+
+    /**
+     * Returns the greatest lag of any timeout so far.
+     *
+     * @return the greatest lag in milliseconds
+     */
+    long getMaxTimerLagMillis();
+
+    /**
+     * Returns the number of messages queued for all clients.
+     *
+     * @return the total queue depth
+     */
+    long getOutboundQueueDepth();
+
+    /**
+     * Returns the number of messages queued for the client furthest behind.
+     *
+     * @return the deepest queue's depth
+     */
+    int getDeepestOutboundQueue();
+
+    /**
+     * Returns the deepest any single queue has been.
+     *
+     * @return the highest queue depth
+     */
+    int getHighestOutboundQueueDepth();
+
+    /**
+     * Returns the number of messages that didn't fit in a full queue.
+     *
+     * @return the number of overflows
+     */
+    long getOutboundOverflowCount();
+
+}
@@ -0,0 +1,445 @@
+package server.journal;
+
+import model.Board;
+import server.TimeoutService;
+import server.messages.FleetPlacementMessage;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.TreeMap;
+
+/**
+ * The append-only journal of the games of one shard, kept in memory-mapped
+ * {@link JournalSegment} files named shard-&lt;shard&gt;-&lt;sequence&gt;.journal.
+ * Records the creation of each game with its players' resume tokens, the
+ * fleets accepted, who had the first
+ * turn, every move applied and the end of the game, in a few bytes each, so
+ * the games that were running can be rebuilt if the server dies.
+ * <p>
+ * Writing a record only copies it into the mapped file, which survives the
+ * process dying. Records are forced to the disk in groups, once per commit
+ * interval, rather than one at a time. When a segment is full a new one is
+ * started, and the oldest segments are deleted once every game they hold
+ * has ended.
+ * <p>
+ * A journal is only used from the thread of its shard, so it has no locks.
+ */
+public class GameJournal {
+
+    private static final byte CREATE = 1;
+    private static final byte FLEET = 2;
+    private static final byte START = 3;
+    private static final byte MOVE = 4;
+    private static final byte END = 5;
+
+    // type and game id
+    private static final int BODY_HEADER = 9;
+
+    private File directory;
+    private int shard;
+    private int segmentSize;
+    private long commitInterval;
+    private TimeoutService thread;
+    private ArrayList<JournalSegment> segments;
+    private JournalSegment current;
+    // game id to the segment the game was created in, and the number of
+    // running games created in each segment
+    private HashMap<Long, Long> gameSegments;
+    private TreeMap<Long, Integer> liveGames;
+    private int recordStart;
+    private boolean commitPending;
+
+    /**
+     * Constructs a GameJournal and creates its first segment.
+     *
+     * @param directory the directory of the journal files
+     * @param shard the number of the shard
+     * @param sequence the sequence number of the first segment, which must be
+     *            greater than that of any segment already in the directory
+     * @param segmentSize the size of each segment in bytes
+     * @param commitInterval most time in milliseconds before a record is
+     *            forced to the disk, or 0 to force every record
+     * @param thread the shard's thread, which runs the group commits
+     * @throws IOException if the first segment can't be created
+     */
+    public GameJournal(File directory, int shard, long sequence,
+            int segmentSize, long commitInterval, TimeoutService thread)
+            throws IOException {
+        this.directory = directory;
+        this.shard = shard;
+        this.segmentSize = segmentSize;
+        this.commitInterval = commitInterval;
+        this.thread = thread;
+        this.segments = new ArrayList<>();
+        this.gameSegments = new HashMap<>();
+        this.liveGames = new TreeMap<>();
+        this.current = openSegment(sequence);
+    }
+
+    /**
+     * Records the creation of a game, with the names of its players and
+     * their resume tokens.
+     *
+     * @param id the id of the game
+     * @param name1 the name of the first player
+     * @param name2 the name of the second player
+     * @param token1 the resume token of the first player
+     * @param token2 the resume token of the second player
+     */
+    public void gameCreated(long id, String name1, String name2,
+            String token1, String token2) {
+        byte[][] strings = new byte[][] {
+                name1.getBytes(StandardCharsets.UTF_8),
+                name2.getBytes(StandardCharsets.UTF_8),
+                token1.getBytes(StandardCharsets.UTF_8),
+                token2.getBytes(StandardCharsets.UTF_8) };
+        int size = 0;
+        for (byte[] bytes : strings) {
+            size += 2 + bytes.length;
+        }
+        MappedByteBuffer buffer = start(CREATE, id, size);
+        if (buffer == null) {
+            return;
+        }
+        for (byte[] bytes : strings) {
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+        end();
+        if (!gameSegments.containsKey(id)) {
+            long sequence = current.getSequence();
+            gameSegments.put(id, sequence);
+            Integer count = liveGames.get(sequence);
+            liveGames.put(sequence, count == null ? 1 : count + 1);
+        }
+    }
+
+    /**
+     * Records the fleet a player placed, which has been accepted.
+     *
+     * @param id the id of the game
+     * @param player 0 for the first player, 1 for the second
+     * @param board the player's board
+     */
+    public void fleetPlaced(long id, int player, Board board) {
+        fleetPlaced(id, player, new FleetPlacementMessage(board));
+    }
+
+    /**
+     * Records the fleet a player placed, which has been accepted. Each ship
+     * takes two bytes: its type, and its top-left square with the highest bit
+     * set if it is vertical.
+     *
+     * @param id the id of the game
+     * @param player 0 for the first player, 1 for the second
+     * @param fleet the player's fleet
+     */
+    public void fleetPlaced(long id, int player, FleetPlacementMessage fleet) {
+        int count = fleet.getShipCount();
+        MappedByteBuffer buffer = start(FLEET, id, 2 + count * 2);
+        if (buffer == null) {
+            return;
+        }
+        buffer.put((byte) player);
+        buffer.put((byte) count);
+        for (int i = 0; i < count; ++i) {
+            buffer.put((byte) fleet.getType(i).ordinal());
+            int square = fleet.getY(i) * Board.BOARD_DIMENSION + fleet.getX(i);
+            buffer.put((byte) (fleet.isVertical(i) ? square | 0x80 : square));
+        }
+        end();
+    }
+
+    /**
+     * Records the start of a game.
+     *
+     * @param id the id of the game
+     * @param firstTurn the player who has the first turn, 0 or 1
+     */
+    public void gameStarted(long id, int firstTurn) {
+        MappedByteBuffer buffer = start(START, id, 1);
+        if (buffer == null) {
+            return;
+        }
+        buffer.put((byte) firstTurn);
+        end();
+    }
+
+    /**
+     * Records a move that has been applied, as a single byte: the square
+     * shot at, with the highest bit set if the second player made the move.
+     *
+     * @param id the id of the game
+     * @param player the player who made the move, 0 or 1
+     * @param x the x coordinate of the square
+     * @param y the y coordinate of the square
+     */
+    public void move(long id, int player, int x, int y) {
+        MappedByteBuffer buffer = start(MOVE, id, 1);
+        if (buffer == null) {
+            return;
+        }
+        buffer.put((byte) (player << 7 | (y * Board.BOARD_DIMENSION + x)));
+        end();
+    }
+
+    /**
+     * Records the end of a game. Segments which only hold games that have
+     * ended are deleted.
+     *
+     * @param id the id of the game
+     */
+    public void gameEnded(long id) {
+        MappedByteBuffer buffer = start(END, id, 0);
+        if (buffer != null) {
+            end();
+        }
+        Long sequence = gameSegments.remove(id);
+        if (sequence != null) {
+            int count = liveGames.get(sequence) - 1;
+            if (count == 0) {
+                liveGames.remove(sequence);
+                trim();
+            } else {
+                liveGames.put(sequence, count);
+            }
+        }
+    }
+
+    /**
+     * Writes a recovered game back to the journal, so that it isn't lost if
+     * the server stops again before the game ends.
+     *
+     * @param game the recovered game
+     */
+    public void rewrite(RecoveredGame game) {
+        long id = game.getId();
+        gameCreated(id, game.getName(0), game.getName(1), game.getToken(0),
+                game.getToken(1));
+        for (int player = 0; player < 2; ++player) {
+            if (game.getFleet(player) != null) {
+                fleetPlaced(id, player, game.getFleet(player));
+            }
+        }
+        if (game.getFirstTurn() >= 0) {
+            gameStarted(id, game.getFirstTurn());
+        }
+        for (int i = 0; i < game.getMoveCount(); ++i) {
+            int square = game.getMoveSquare(i);
+            move(id, game.getMovePlayer(i), square % Board.BOARD_DIMENSION,
+                    square / Board.BOARD_DIMENSION);
+        }
+    }
+
+    /**
+     * Forces every record written so far to the disk.
+     */
+    public void commit() {
+        commitPending = false;
+        if (current != null) {
+            current.force();
+        }
+    }
+
+    // starts a record, moving to a new segment if it doesn't fit, returns
+    // null if the journal has failed
+    private MappedByteBuffer start(byte type, long id, int payloadSize) {
+        if (current == null) {
+            return null;
+        }
+        int size = BODY_HEADER + payloadSize;
+        if (!current.fits(size)) {
+            current.force();
+            try {
+                current = openSegment(current.getSequence() + 1);
+            } catch (IOException e) {
+                e.printStackTrace();
+                System.out.println("Journal of shard " + shard
+                        + " stopped, games are no longer recorded");
+                current = null;
+                return null;
+            }
+            trim();
+        }
+        recordStart = current.startRecord();
+        MappedByteBuffer buffer = current.buffer();
+        buffer.put(type);
+        buffer.putLong(id);
+        return buffer;
+    }
+
+    // completes a record and makes sure it will be committed
+    private void end() {
+        current.endRecord(recordStart);
+        if (commitInterval <= 0) {
+            current.force();
+        } else if (!commitPending) {
+            commitPending = true;
+            thread.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    commit();
+                }
+            }, commitInterval);
+        }
+    }
+
+    private JournalSegment openSegment(long sequence) throws IOException {
+        JournalSegment segment = new JournalSegment(new File(directory,
+                fileName(shard, sequence)), sequence, segmentSize);
+        segments.add(segment);
+        return segment;
+    }
+
+    // deletes the segments older than the oldest running game
+    private void trim() {
+        if (current == null) {
+            return;
+        }
+        long oldest = liveGames.isEmpty() ? current.getSequence()
+                : Math.min(liveGames.firstKey(), current.getSequence());
+        Iterator<JournalSegment> it = segments.iterator();
+        while (it.hasNext()) {
+            JournalSegment segment = it.next();
+            if (segment.getSequence() < oldest) {
+                segment.delete();
+                it.remove();
+            }
+        }
+    }
+
+    private static String fileName(int shard, long sequence) {
+        return "shard-" + shard + "-" + sequence + ".journal";
+    }
+
+    /**
+     * Returns the journal files in a directory, oldest first.
+     *
+     * @param directory the directory of the journal
+     * @return the journal files
+     */
+    public static File[] listFiles(File directory) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.matches("shard-\\d+-\\d+\\.journal");
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                int bySequence = Long.compare(sequenceOf(a), sequenceOf(b));
+                return bySequence != 0 ? bySequence
+                        : Integer.compare(shardOf(a), shardOf(b));
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Returns the sequence number of a journal file.
+     *
+     * @param file a journal file
+     * @return its sequence number
+     */
+    public static long sequenceOf(File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(name.lastIndexOf('-') + 1,
+                name.indexOf('.')));
+    }
+
+    private static int shardOf(File file) {
+        String[] parts = file.getName().split("[-.]");
+        return Integer.parseInt(parts[1]);
+    }
+
+    /**
+     * Reads journal files, oldest first, and rebuilds the games that hadn't
+     * ended. A game only ever runs on one shard, so reading the files in
+     * order of sequence number keeps the records of each game in order.
+     *
+     * @param files the journal files, as returned by listFiles
+     * @return the games that were running, by id in order of creation
+     * @throws IOException if a file can't be read
+     */
+    public static LinkedHashMap<Long, RecoveredGame> recover(File[] files)
+            throws IOException {
+        LinkedHashMap<Long, RecoveredGame> games = new LinkedHashMap<>();
+        for (File file : files) {
+            JournalSegment segment = new JournalSegment(file, sequenceOf(file),
+                    0);
+            segment.rewind();
+            ByteBuffer record;
+            while ((record = segment.next()) != null) {
+                apply(games, record);
+            }
+        }
+        return games;
+    }
+
+    private static void apply(LinkedHashMap<Long, RecoveredGame> games,
+            ByteBuffer record) {
+        byte type = record.get();
+        long id = record.getLong();
+        if (type == CREATE) {
+            games.put(id, new RecoveredGame(id, readString(record),
+                    readString(record), readString(record),
+                    readString(record)));
+            return;
+        }
+        RecoveredGame game = games.get(id);
+        if (game == null) {
+            return;
+        }
+        switch (type) {
+        case FLEET:
+            int player = record.get();
+            int count = record.get();
+            int[] types = new int[count];
+            int[] xs = new int[count];
+            int[] ys = new int[count];
+            boolean[] vertical = new boolean[count];
+            for (int i = 0; i < count; ++i) {
+                types[i] = record.get();
+                int square = record.get() & 0xFF;
+                vertical[i] = (square & 0x80) != 0;
+                square &= 0x7F;
+                xs[i] = square % Board.BOARD_DIMENSION;
+                ys[i] = square / Board.BOARD_DIMENSION;
+            }
+            game.setFleet(player, new FleetPlacementMessage(types, xs, ys,
+                    vertical));
+            break;
+        case START:
+            game.setFirstTurn(record.get());
+            break;
+        case MOVE:
+            int move = record.get() & 0xFF;
+            game.addMove(move >> 7, move & 0x7F);
+            break;
+        case END:
+            games.remove(id);
+            break;
+        }
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getShort()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,170 @@
+package server.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * One file of a {@link GameJournal}, mapped into memory. Records are
+ * appended one after another, each as its length, a CRC32 of its body and
+ * the body itself. The file is created full of zeroes, so a length of 0
+ * marks the end of the records, and a record whose checksum doesn't match
+ * was torn by a crash and ends the segment too.
+ */
+public class JournalSegment {
+
+    private static final int HEADER_SIZE = 8;
+
+    private File file;
+    private long sequence;
+    private MappedByteBuffer buffer;
+    private CRC32 crc;
+
+    /**
+     * Maps a segment file into memory, creating it with the given size if it
+     * doesn't exist. The position is set after the last whole record.
+     *
+     * @param file the segment file
+     * @param sequence the number of the segment, which orders the segments
+     * @param size the size of a new segment in bytes
+     * @throws IOException if the file can't be mapped
+     */
+    public JournalSegment(File file, long sequence, int size)
+            throws IOException {
+        this.file = file;
+        this.sequence = sequence;
+        this.crc = new CRC32();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (raf.length() == 0) {
+                raf.setLength(size);
+            }
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    raf.length());
+        } finally {
+            raf.close();
+        }
+        while (next() != null) {
+            // skips to the end of the records
+        }
+    }
+
+    /**
+     * Returns the number of the segment.
+     *
+     * @return the segment's sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns whether a record with a body of the given size still fits.
+     *
+     * @param bodySize the size of the record's body in bytes
+     * @return true if the record fits
+     */
+    public boolean fits(int bodySize) {
+        return buffer.remaining() >= HEADER_SIZE + bodySize;
+    }
+
+    /**
+     * Starts a record, whose body must have been checked to fit with
+     * {@link #fits(int)}. The body is then written with {@link #buffer()} and
+     * completed with {@link #endRecord(int)}.
+     *
+     * @return the position of the record, to be passed to endRecord
+     */
+    public int startRecord() {
+        int start = buffer.position();
+        buffer.position(start + HEADER_SIZE);
+        return start;
+    }
+
+    /**
+     * Returns the mapped buffer, positioned where the body of the current
+     * record is to be written.
+     *
+     * @return the segment's buffer
+     */
+    public MappedByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Completes a record by writing its checksum and, last of all, its
+     * length, so that a reader never sees a length before the body.
+     *
+     * @param start the position returned by startRecord
+     */
+    public void endRecord(int start) {
+        int end = buffer.position();
+        int length = end - start - HEADER_SIZE;
+        crc.reset();
+        for (int i = start + HEADER_SIZE; i < end; ++i) {
+            crc.update(buffer.get(i));
+        }
+        buffer.putInt(start + 4, (int) crc.getValue());
+        buffer.putInt(start, length);
+    }
+
+    /**
+     * Reads the next whole record, leaving the buffer positioned after it.
+     * Used when the segment is opened, and when the journal is recovered.
+     *
+     * @return a buffer holding the body of the record, or null at the end of
+     *         the records
+     */
+    public ByteBuffer next() {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int length = buffer.getInt(start);
+        if (length <= 0 || length > buffer.remaining() - HEADER_SIZE) {
+            return null;
+        }
+        crc.reset();
+        for (int i = start + HEADER_SIZE; i < start + HEADER_SIZE + length;
+                ++i) {
+            crc.update(buffer.get(i));
+        }
+        if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+            return null;
+        }
+        ByteBuffer body = buffer.duplicate();
+        body.position(start + HEADER_SIZE);
+        body.limit(start + HEADER_SIZE + length);
+        buffer.position(start + HEADER_SIZE + length);
+        return body;
+    }
+
+    /**
+     * Rewinds the segment so its records can be read again from the start.
+     */
+    public void rewind() {
+        buffer.position(0);
+    }
+
+    /**
+     * Writes the records appended so far to the disk.
+     */
+    public void force() {
+        buffer.force();
+    }
+
+    /**
+     * Deletes the segment's file. The segment must not be used afterwards.
+     */
+    public void delete() {
+        buffer = null;
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+}
@@ -0,0 +1,190 @@
+package server.journal;
+
+import model.BitBoard;
+import server.messages.FleetPlacementMessage;
+
+/**
+ * A game rebuilt from the journal when the server starts: the names and
+ * resume tokens of its players, their fleets, who had the first turn and the
+ * moves applied since.
+ * Player 0 is the player who was sent the game's first notifications.
+ */
+public class RecoveredGame {
+
+    private long id;
+    private String[] names;
+    private String[] tokens;
+    private FleetPlacementMessage[] fleets;
+    private int firstTurn = -1;
+    private byte[] moves;
+    private int moveCount;
+
+    /**
+     * Constructs a RecoveredGame without fleets or moves.
+     *
+     * @param id the id of the game
+     * @param name1 the name of player 0
+     * @param name2 the name of player 1
+     * @param token1 the resume token of player 0
+     * @param token2 the resume token of player 1
+     */
+    public RecoveredGame(long id, String name1, String name2, String token1,
+            String token2) {
+        this.id = id;
+        this.names = new String[] { name1, name2 };
+        this.tokens = new String[] { token1, token2 };
+        this.fleets = new FleetPlacementMessage[2];
+        this.moves = new byte[32];
+    }
+
+    /**
+     * Returns the id of the game.
+     *
+     * @return the game's id
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the name of a player.
+     *
+     * @param player 0 or 1
+     * @return the player's name
+     */
+    public String getName(int player) {
+        return names[player];
+    }
+
+    /**
+     * Returns the resume token of a player.
+     *
+     * @param player 0 or 1
+     * @return the player's token
+     */
+    public String getToken(int player) {
+        return tokens[player];
+    }
+
+    /**
+     * Returns the fleet a player placed.
+     *
+     * @param player 0 or 1
+     * @return the player's fleet, or null if they hadn't placed it
+     */
+    public FleetPlacementMessage getFleet(int player) {
+        return fleets[player];
+    }
+
+    /**
+     * Returns the player who had the first turn.
+     *
+     * @return 0 or 1, or -1 if the game hadn't started
+     */
+    public int getFirstTurn() {
+        return firstTurn;
+    }
+
+    /**
+     * Works out whose turn it is by replaying the moves: a player who hits a
+     * ship has another go.
+     *
+     * @return 0 or 1, or -1 if the game hadn't started
+     */
+    public int getTurn() {
+        if (firstTurn < 0) {
+            return -1;
+        }
+        BitBoard[] boards = new BitBoard[] { buildBoard(0, 0),
+                buildBoard(1, 0) };
+        int turn = firstTurn;
+        for (int i = 0; i < moveCount; ++i) {
+            int square = getMoveSquare(i);
+            int opponent = 1 - getMovePlayer(i);
+            if (!boards[opponent].isShip(square % 10, square / 10)) {
+                turn = opponent;
+            } else {
+                turn = getMovePlayer(i);
+            }
+        }
+        return turn;
+    }
+
+    /**
+     * Returns the number of moves applied.
+     *
+     * @return the number of moves
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Returns the player who made a move.
+     *
+     * @param i the index of the move
+     * @return 0 or 1
+     */
+    public int getMovePlayer(int i) {
+        return (moves[i] >> 7) & 1;
+    }
+
+    /**
+     * Returns the square a move was made on, as y * 10 + x.
+     *
+     * @param i the index of the move
+     * @return the index of the square
+     */
+    public int getMoveSquare(int i) {
+        return moves[i] & 0x7F;
+    }
+
+    /**
+     * Builds the board a player's fleet is played on, with the moves of their
+     * opponent applied.
+     *
+     * @param player 0 or 1
+     * @return the player's board, or null if they hadn't placed their fleet
+     */
+    public BitBoard buildBoard(int player) {
+        return buildBoard(player, moveCount);
+    }
+
+    // builds a player's board with the first moves applied
+    private BitBoard buildBoard(int player, int moves) {
+        FleetPlacementMessage fleet = fleets[player];
+        if (fleet == null) {
+            return null;
+        }
+        BitBoard board = new BitBoard();
+        for (int i = 0; i < fleet.getShipCount(); ++i) {
+            board.placeShip(fleet.getType(i), fleet.getX(i), fleet.getY(i),
+                    fleet.isVertical(i));
+        }
+        for (int i = 0; i < moves; ++i) {
+            if (getMovePlayer(i) != player) {
+                int square = getMoveSquare(i);
+                board.guess(square % 10, square / 10);
+            }
+        }
+        return board;
+    }
+
+    void setFleet(int player, FleetPlacementMessage fleet) {
+        fleets[player] = fleet;
+    }
+
+    void setFirstTurn(int player) {
+        firstTurn = player;
+    }
+
+    void addMove(int player, int square) {
+        if (moveCount == moves.length) {
+            byte[] grown = new byte[moves.length * 2];
+            System.arraycopy(moves, 0, grown, 0, moveCount);
+            moves = grown;
+        }
+        moves[moveCount++] = (byte) (player << 7 | square);
+    }
+
+}
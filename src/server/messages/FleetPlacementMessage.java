@@ -0,0 +1,147 @@
+package server.messages;
+
+import model.Board;
+import model.FleetValidator;
+import model.Ship;
+
+import java.io.Serializable;
+
+/**
+ * An object sent from a player containing the positions of their ships: the
+ * type of each {@link model.Ship}, the coordinates of its top-left
+ * {@link model.Square} and whether it is vertical. The server builds the
+ * player's {@link model.Board} from it, rather than receiving the whole
+ * board.
+ */
+public class FleetPlacementMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private int[] types;
+    private int[] xs;
+    private int[] ys;
+    private boolean[] vertical;
+
+    /**
+     * Constructs a FleetPlacementMessage from the positions of the ships, one
+     * entry per ship in each array.
+     *
+     * @param types ordinal of the {@link model.Ship.Type} of each ship
+     * @param xs x coordinate of the top-left square of each ship
+     * @param ys y coordinate of the top-left square of each ship
+     * @param vertical true for each ship that is vertical
+     */
+    public FleetPlacementMessage(int[] types, int[] xs, int[] ys,
+            boolean[] vertical) {
+        this.types = types;
+        this.xs = xs;
+        this.ys = ys;
+        this.vertical = vertical;
+    }
+
+    /**
+     * Constructs a FleetPlacementMessage with the positions of the ships
+     * placed on a {@link model.Board}.
+     *
+     * @param board the board with the player's ships
+     */
+    public FleetPlacementMessage(Board board) {
+        int count = 0;
+        for (Ship ship : board.getShips()) {
+            if (ship.getSquares().size() > 0) {
+                ++count;
+            }
+        }
+        this.types = new int[count];
+        this.xs = new int[count];
+        this.ys = new int[count];
+        this.vertical = new boolean[count];
+        int i = 0;
+        for (Ship ship : board.getShips()) {
+            if (ship.getSquares().size() > 0) {
+                int[] topLeft = ship.getTopLeft();
+                types[i] = ship.getType().ordinal();
+                xs[i] = topLeft[0];
+                ys[i] = topLeft[1];
+                vertical[i] = ship.isVertical();
+                ++i;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of ships in the message.
+     *
+     * @return the number of ships
+     */
+    public int getShipCount() {
+        return types.length;
+    }
+
+    /**
+     * Returns the type of a ship.
+     *
+     * @param i index of the ship
+     * @return the type of the ship
+     */
+    public Ship.Type getType(int i) {
+        return Ship.Type.values()[types[i]];
+    }
+
+    /**
+     * Returns the x coordinate of the top-left square of a ship.
+     *
+     * @param i index of the ship
+     * @return x coordinate of the ship
+     */
+    public int getX(int i) {
+        return xs[i];
+    }
+
+    /**
+     * Returns the y coordinate of the top-left square of a ship.
+     *
+     * @param i index of the ship
+     * @return y coordinate of the ship
+     */
+    public int getY(int i) {
+        return ys[i];
+    }
+
+    /**
+     * Returns whether a ship is vertical.
+     *
+     * @param i index of the ship
+     * @return true if the ship is vertical
+     */
+    public boolean isVertical(int i) {
+        return vertical[i];
+    }
+
+    /**
+     * Checks that the message contains exactly one ship of every type, all
+     * within the board and not overlapping.
+     *
+     * @return true if the fleet is valid
+     */
+    public boolean isValid() {
+        return types != null && xs != null && ys != null && vertical != null
+                && FleetValidator.isFleet(types, xs, ys, vertical);
+    }
+
+    /**
+     * Builds a {@link model.Board} with the ships in the positions of the
+     * message. The message should be checked with {@link #isValid()} first.
+     *
+     * @return the board
+     */
+    public Board toBoard() {
+        Board board = new Board(true);
+        for (int i = 0; i < types.length; ++i) {
+            Ship ship = board.findShipByType(getType(i));
+            ship.setVertical(vertical[i]);
+            board.placeShip(ship, xs[i], ys[i]);
+        }
+        return board;
+    }
+}
@@ -0,0 +1,152 @@
+package server.messages;
+
+import java.io.Serializable;
+
+/**
+ * An object sent to a player who resumes a game after reconnecting, with
+ * everything they need to redraw it. Squares are given as 100-bit masks in
+ * two longs, bit y * 10 + x of the low long for the first 64 squares and of
+ * the high long for the rest, the same layout as {@link model.BitBoard}.
+ */
+public class GameSnapshotMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String opponentName;
+    private FleetPlacementMessage fleet;
+    private long opponentShotsLow;
+    private long opponentShotsHigh;
+    private long shotsLow;
+    private long shotsHigh;
+    private long hitsLow;
+    private long hitsHigh;
+    private FleetPlacementMessage sunkShips;
+    private boolean started;
+    private boolean yourTurn;
+
+    /**
+     * Constructs a GameSnapshotMessage.
+     *
+     * @param opponentName the name of the opponent
+     * @param fleet the player's own ships, or null if they haven't placed
+     *            them
+     * @param opponentShotsLow squares of the player's board the opponent
+     *            has shot at, first 64
+     * @param opponentShotsHigh squares of the player's board the opponent
+     *            has shot at, last 36
+     * @param shotsLow squares of the opponent's board the player has shot
+     *            at, first 64
+     * @param shotsHigh squares of the opponent's board the player has shot
+     *            at, last 36
+     * @param hitsLow the player's shots which hit a ship, first 64
+     * @param hitsHigh the player's shots which hit a ship, last 36
+     * @param sunkShips the opponent's ships the player has sunk
+     * @param started true if both fleets have been placed
+     * @param yourTurn true if it is the player's turn
+     */
+    public GameSnapshotMessage(String opponentName,
+            FleetPlacementMessage fleet, long opponentShotsLow,
+            long opponentShotsHigh, long shotsLow, long shotsHigh,
+            long hitsLow, long hitsHigh, FleetPlacementMessage sunkShips,
+            boolean started, boolean yourTurn) {
+        this.opponentName = opponentName;
+        this.fleet = fleet;
+        this.opponentShotsLow = opponentShotsLow;
+        this.opponentShotsHigh = opponentShotsHigh;
+        this.shotsLow = shotsLow;
+        this.shotsHigh = shotsHigh;
+        this.hitsLow = hitsLow;
+        this.hitsHigh = hitsHigh;
+        this.sunkShips = sunkShips;
+        this.started = started;
+        this.yourTurn = yourTurn;
+    }
+
+    /**
+     * Returns the name of the opponent.
+     *
+     * @return the opponent's name
+     */
+    public String getOpponentName() {
+        return opponentName;
+    }
+
+    /**
+     * Returns the player's own ships.
+     *
+     * @return the player's fleet, or null if they haven't placed it
+     */
+    public FleetPlacementMessage getFleet() {
+        return fleet;
+    }
+
+    /**
+     * Returns whether the opponent has shot at a square of the player's
+     * board.
+     *
+     * @param x x coordinate of the square
+     * @param y y coordinate of the square
+     * @return true if the square has been shot at
+     */
+    public boolean isOpponentShot(int x, int y) {
+        return isSet(opponentShotsLow, opponentShotsHigh, x, y);
+    }
+
+    /**
+     * Returns whether the player has shot at a square of the opponent's
+     * board.
+     *
+     * @param x x coordinate of the square
+     * @param y y coordinate of the square
+     * @return true if the square has been shot at
+     */
+    public boolean isShot(int x, int y) {
+        return isSet(shotsLow, shotsHigh, x, y);
+    }
+
+    /**
+     * Returns whether the player's shot at a square of the opponent's board
+     * hit a ship.
+     *
+     * @param x x coordinate of the square
+     * @param y y coordinate of the square
+     * @return true if the square was hit
+     */
+    public boolean isHit(int x, int y) {
+        return isSet(hitsLow, hitsHigh, x, y);
+    }
+
+    /**
+     * Returns the opponent's ships which the player has sunk.
+     *
+     * @return the sunk ships
+     */
+    public FleetPlacementMessage getSunkShips() {
+        return sunkShips;
+    }
+
+    /**
+     * Returns whether the game has started, meaning both fleets are placed.
+     *
+     * @return true if the game has started
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Returns whether it is the player's turn.
+     *
+     * @return true if it is the player's turn
+     */
+    public boolean isYourTurn() {
+        return yourTurn;
+    }
+
+    private static boolean isSet(long low, long high, int x, int y) {
+        int index = y * 10 + x;
+        return index < 64 ? (low & (1L << index)) != 0
+                : (high & (1L << (index - 64))) != 0;
+    }
+
+}
@@ -0,0 +1,100 @@
+package server.messages;
+
+import java.io.Serializable;
+
+/**
+ * An Object sent to the clients in the {@link server.MatchRoom} containing
+ * changes to the match room list since the last update. Every change has a
+ * sequence number, one higher than the change before it, so that a client
+ * can tell if it has missed any and needs a new {@link MatchRoomListMessage}.
+ */
+public class MatchRoomDeltaMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public final static int PLAYER_ADDED = 1;
+    public final static int PLAYER_REMOVED = 2;
+    public final static int NAME_CHANGED = 3;
+
+    private long sequence;
+    private int[] changes;
+    private String[] keys;
+    private String[] names;
+
+    /**
+     * Constructs a MatchRoomDeltaMessage containing consecutive changes, the
+     * last of which has the given sequence number. The changes, keys and
+     * names are given as arrays of the same length.
+     *
+     * @param sequence sequence number of the last change
+     * @param changes the constant of each change
+     * @param keys key of the player each change applies to
+     * @param names name of the player, null for removed players
+     */
+    public MatchRoomDeltaMessage(long sequence, int[] changes, String[] keys,
+            String[] names) {
+        this.sequence = sequence;
+        this.changes = changes;
+        this.keys = keys;
+        this.names = names;
+    }
+
+    /**
+     * Returns the sequence number of the last change in the message.
+     *
+     * @return sequence number of the last change
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the sequence number of the first change in the message.
+     *
+     * @return sequence number of the first change
+     */
+    public long getFirstSequence() {
+        return sequence - changes.length + 1;
+    }
+
+    /**
+     * Returns the number of changes in the message.
+     *
+     * @return the number of changes
+     */
+    public int getChangeCount() {
+        return changes.length;
+    }
+
+    /**
+     * Returns the constant of the change at the given index.
+     *
+     * @param index index of the change
+     * @return the constant of the change
+     */
+    public int getChange(int index) {
+        return changes[index];
+    }
+
+    /**
+     * Returns the key of the player the change at the given index applies to.
+     *
+     * @param index index of the change
+     * @return key of the player
+     */
+    public String getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Returns the name of the player the change at the given index applies
+     * to, or null if the player was removed.
+     *
+     * @param index index of the change
+     * @return name of the player
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+}
@@ -5,11 +5,14 @@ import java.util.HashMap;
 
 /**
  * An Object sent to the clients containing a list of all players in the
- * {@link server.MatchRoom}.
+ * {@link server.MatchRoom}. Later changes to the list are sent as
+ * {@link MatchRoomDeltaMessage}s, starting after the sequence number of the
+ * list.
  */
 public class MatchRoomListMessage implements Serializable {
 
     private HashMap<String, String> matchRoomList;
+    private long sequence;
 
     /**
      * Constructs a MatchRoomListMessage, storing the given match room list in
@@ -18,7 +21,20 @@ public class MatchRoomListMessage implements Serializable {
      * @param matchRoomList list of clients in {@link server.MatchRoom}
      */
     public MatchRoomListMessage(HashMap<String, String> matchRoomList) {
+        this(matchRoomList, 0);
+    }
+
+    /**
+     * Constructs a MatchRoomListMessage, storing the given match room list
+     * and the sequence number of the last change included in it.
+     *
+     * @param matchRoomList list of clients in {@link server.MatchRoom}
+     * @param sequence sequence number of the last change in the list
+     */
+    public MatchRoomListMessage(HashMap<String, String> matchRoomList,
+            long sequence) {
         this.matchRoomList = matchRoomList;
+        this.sequence = sequence;
     }
 
     /**
@@ -29,5 +45,14 @@ public class MatchRoomListMessage implements Serializable {
     public HashMap<String, String> getMatchRoomList() {
         return this.matchRoomList;
     }
+
+    /**
+     * Returns the sequence number of the last change included in the list.
+     *
+     * @return the sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
     
 }
@@ -7,13 +7,18 @@ import java.io.Serializable;
 /**
  * An object that is sent to both clients in response to a valid move,
  * containing information about the {@link model.Square} the move was applied
- * to, if it hit a ship, and contains the {@link model.Ship} it sank, if any.
+ * to, if it hit a ship, and the position of the {@link model.Ship} it sank, if
+ * any. The sunk ship is described by its type, top-left square and
+ * orientation, so the message has the same size whether or not a ship sank.
  */
 public class MoveResponseMessage implements Serializable {
 
     private int x;
     private int y;
-    private Ship shipSunk;
+    private int sunkType = -1;
+    private int sunkX;
+    private int sunkY;
+    private boolean sunkVertical;
     private boolean hit;
     private boolean ownBoard;
 
@@ -21,7 +26,10 @@ public class MoveResponseMessage implements Serializable {
      * Initialise a move response message where no ship was sunk.
      */
     public MoveResponseMessage(int x, int y, boolean hit, boolean ownBoard) {
-        this(x, y, null, hit, ownBoard);
+        this.x = x;
+        this.y = y;
+        this.hit = hit;
+        this.ownBoard = ownBoard;
     }
 
     /**
@@ -40,11 +48,39 @@ public class MoveResponseMessage implements Serializable {
      */
     public MoveResponseMessage(int x, int y, Ship shipSunk, boolean hit,
             boolean ownBoard) {
-        this.x = x;
-        this.y = y;
-        this.shipSunk = shipSunk;
-        this.hit = hit;
-        this.ownBoard = ownBoard;
+        this(x, y, hit, ownBoard);
+        if (shipSunk != null) {
+            int[] topLeft = shipSunk.getTopLeft();
+            this.sunkType = shipSunk.getType().ordinal();
+            this.sunkX = topLeft[0];
+            this.sunkY = topLeft[1];
+            this.sunkVertical = shipSunk.isVertical();
+        }
+    }
+
+    /**
+     * Constructs a MoveResponseMessage with coordinates of the
+     * {@link model.Square} the move was applied to, and the position of the
+     * {@link model.Ship} that was sunk as a result of the move, if any.
+     *
+     * @param x x coordinate of the {@link model.Square}
+     * @param y y coordinate of the {@link model.Square}
+     * @param sunkType type of the ship that was sunk, or null if none was
+     * @param sunkX x coordinate of the top-left square of the sunk ship
+     * @param sunkY y coordinate of the top-left square of the sunk ship
+     * @param sunkVertical true if the sunk ship is vertical
+     * @param hit true if the move hit a ship
+     * @param ownBoard true if receiving player's own board
+     */
+    public MoveResponseMessage(int x, int y, Ship.Type sunkType, int sunkX,
+            int sunkY, boolean sunkVertical, boolean hit, boolean ownBoard) {
+        this(x, y, hit, ownBoard);
+        if (sunkType != null) {
+            this.sunkType = sunkType.ordinal();
+            this.sunkX = sunkX;
+            this.sunkY = sunkY;
+            this.sunkVertical = sunkVertical;
+        }
     }
 
     /**
@@ -68,12 +104,44 @@ public class MoveResponseMessage implements Serializable {
     }
 
     /**
-     * Returns the {@link model.Ship} that was sunk in the move. Returns null
-     * if the move did not result in a ship sinking.
-     * @return the ship that was sunk, if any
+     * Returns true if the move sank a {@link model.Ship}.
+     * @return true if a ship was sunk
+     */
+    public boolean isShipSunk() {
+        return sunkType >= 0;
+    }
+
+    /**
+     * Returns the type of the {@link model.Ship} that was sunk in the move.
+     * Returns null if the move did not result in a ship sinking.
+     * @return the type of the ship that was sunk, if any
+     */
+    public Ship.Type getSunkShipType() {
+        return sunkType >= 0 ? Ship.Type.values()[sunkType] : null;
+    }
+
+    /**
+     * Returns the x coordinate of the top-left square of the sunk ship.
+     * @return x coordinate of the sunk ship
+     */
+    public int getSunkShipX() {
+        return sunkX;
+    }
+
+    /**
+     * Returns the y coordinate of the top-left square of the sunk ship.
+     * @return y coordinate of the sunk ship
+     */
+    public int getSunkShipY() {
+        return sunkY;
+    }
+
+    /**
+     * Returns true if the sunk ship is vertical.
+     * @return true if the sunk ship is vertical
      */
-    public Ship shipSank() {
-        return this.shipSunk;
+    public boolean isSunkShipVertical() {
+        return sunkVertical;
     }
 
     /**
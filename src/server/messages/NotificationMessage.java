@@ -21,6 +21,9 @@ public class NotificationMessage implements Serializable {
     public final static int TIMEOUT_DRAW = 205;
     public final static int OPPONENT_DISCONNECTED = 206;
     public final static int PLAYER_CONNECTED = 207;
+    public final static int OPPONENT_CONNECTION_LOST = 208;
+    public final static int OPPONENT_RECONNECTED = 209;
+    public final static int SPECTATED_GAME_OVER = 210;
 
     public final static int OPPONENTS_NAME = 301;
     public final static int INVALID_NAME = 302;
@@ -31,6 +34,8 @@ public class NotificationMessage implements Serializable {
     public final static int GAME_TOKEN = 401;
     public final static int GAME_NOT_FOUND = 402;
     public final static int CANNOT_PLAY_YOURSELF = 403;
+    public final static int RESUME_TOKEN = 404;
+    public final static int RESUME_FAILED = 405;
 
     public final static int REPEATED_MOVE = 501;
     public final static int NOT_YOUR_TURN = 502;
@@ -45,6 +50,8 @@ public class NotificationMessage implements Serializable {
     public final static int JOIN_GAME_REQUEST_REJECTED = 702;
     public final static int JOIN_GAME_REQUEST_ACCEPTED = 703;
     public final static int JOIN_GAME_REQUEST_CANCELLED = 704;
+    public final static int QUICK_MATCH_QUEUED = 705;
+    public final static int QUICK_MATCH_CANCELLED = 706;
 
     private int code;
     private String[] text;
@@ -0,0 +1,46 @@
+package server.messages;
+
+import java.io.Serializable;
+
+/**
+ * An object sent to the spectators of a game when a shot is made, with the
+ * board that was shot at and the result of the shot.
+ */
+public class SpectatorMoveMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private int board;
+    private MoveResponseMessage move;
+
+    /**
+     * Constructs a SpectatorMoveMessage.
+     *
+     * @param board the board shot at, 0 for the first player's fleet and 1
+     *            for the second's
+     * @param move the result of the shot
+     */
+    public SpectatorMoveMessage(int board, MoveResponseMessage move) {
+        this.board = board;
+        this.move = move;
+    }
+
+    /**
+     * Returns the board that was shot at.
+     *
+     * @return 0 or 1
+     */
+    public int getBoard() {
+        return board;
+    }
+
+    /**
+     * Returns the result of the shot.
+     *
+     * @return the result of the shot
+     */
+    public MoveResponseMessage getMove() {
+        return move;
+    }
+
+}
@@ -0,0 +1,109 @@
+package server.messages;
+
+import java.io.Serializable;
+
+/**
+ * An object sent to a player who starts watching a game, with what can be
+ * seen of both boards: the squares shot at, which of them hit a ship and the
+ * ships that have been sunk. Ships which are still afloat are not shown.
+ * Board 0 holds the fleet of the first player and board 1 that of the
+ * second. Squares are given as 100-bit masks in two longs, in the same layout
+ * as {@link GameSnapshotMessage}.
+ */
+public class SpectatorSnapshotMessage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String[] names;
+    private long[] shotsLow;
+    private long[] shotsHigh;
+    private long[] hitsLow;
+    private long[] hitsHigh;
+    private FleetPlacementMessage[] sunkShips;
+    private int turn;
+
+    /**
+     * Constructs a SpectatorSnapshotMessage. Each array holds the value for
+     * board 0 followed by the value for board 1.
+     *
+     * @param names the names of the players
+     * @param shotsLow squares shot at, first 64
+     * @param shotsHigh squares shot at, last 36
+     * @param hitsLow shots which hit a ship, first 64
+     * @param hitsHigh shots which hit a ship, last 36
+     * @param sunkShips the ships which have been sunk
+     * @param turn the player whose turn it is, or -1 if the game hasn't
+     *            started
+     */
+    public SpectatorSnapshotMessage(String[] names, long[] shotsLow,
+            long[] shotsHigh, long[] hitsLow, long[] hitsHigh,
+            FleetPlacementMessage[] sunkShips, int turn) {
+        this.names = names;
+        this.shotsLow = shotsLow;
+        this.shotsHigh = shotsHigh;
+        this.hitsLow = hitsLow;
+        this.hitsHigh = hitsHigh;
+        this.sunkShips = sunkShips;
+        this.turn = turn;
+    }
+
+    /**
+     * Returns the name of a player.
+     *
+     * @param player 0 or 1
+     * @return the player's name
+     */
+    public String getName(int player) {
+        return names[player];
+    }
+
+    /**
+     * Returns whether a square of a board has been shot at.
+     *
+     * @param board 0 or 1
+     * @param x x coordinate of the square
+     * @param y y coordinate of the square
+     * @return true if the square has been shot at
+     */
+    public boolean isShot(int board, int x, int y) {
+        return isSet(shotsLow[board], shotsHigh[board], x, y);
+    }
+
+    /**
+     * Returns whether a shot at a square of a board hit a ship.
+     *
+     * @param board 0 or 1
+     * @param x x coordinate of the square
+     * @param y y coordinate of the square
+     * @return true if the square was hit
+     */
+    public boolean isHit(int board, int x, int y) {
+        return isSet(hitsLow[board], hitsHigh[board], x, y);
+    }
+
+    /**
+     * Returns the ships of a board which have been sunk.
+     *
+     * @param board 0 or 1
+     * @return the sunk ships
+     */
+    public FleetPlacementMessage getSunkShips(int board) {
+        return sunkShips[board];
+    }
+
+    /**
+     * Returns the player whose turn it is.
+     *
+     * @return 0 or 1, or -1 if the game hasn't started
+     */
+    public int getTurn() {
+        return turn;
+    }
+
+    private static boolean isSet(long low, long high, int x, int y) {
+        int index = y * 10 + x;
+        return index < 64 ? (low & (1L << index)) != 0
+                : (high & (1L << (index - 64))) != 0;
+    }
+
+}
@@ -0,0 +1,53 @@
+package server.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count kept in a {@link LongAdder}, so that threads counting at the same
+ * time update different cells instead of fighting over one value. Reading
+ * the count adds the cells up.
+ */
+public class Counter {
+
+    private LongAdder value;
+
+    /**
+     * Constructs a Counter at zero.
+     */
+    public Counter() {
+        this.value = new LongAdder();
+    }
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment() {
+        value.increment();
+    }
+
+    /**
+     * Takes one from the count, for counts of things that come and go.
+     */
+    public void decrement() {
+        value.decrement();
+    }
+
+    /**
+     * Adds to the count.
+     *
+     * @param amount the amount to add
+     */
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    /**
+     * Returns the count.
+     *
+     * @return the sum of the cells
+     */
+    public long get() {
+        return value.sum();
+    }
+
+}
@@ -0,0 +1,18 @@
+package server.metrics;
+
+/**
+ * A value that is read from the server's state when the metrics are read,
+ * such as the number of running games, rather than counted as it changes.
+ * Reading a gauge must not take locks that the game or match room threads
+ * hold.
+ */
+public interface Gauge {
+
+    /**
+     * Returns the current value.
+     *
+     * @return the value
+     */
+    long get();
+
+}
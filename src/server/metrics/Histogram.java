@@ -0,0 +1,160 @@
+package server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A distribution of durations in nanoseconds, kept in a fixed number of
+ * log-linear buckets. Values below 16 get a bucket each. Above that each
+ * power of two is split into 16 buckets of equal width, so any value is
+ * within 1/16 of the bucket it is counted in, from nanoseconds up to the
+ * largest value kept, about 18 minutes. Larger values are counted in the
+ * last bucket.
+ * <p>
+ * Recording a value is a few atomic increments with no locks or
+ * allocation. Reading the percentiles copies the 592 buckets once and scans
+ * the copy, so it is cheap while values are still being recorded, though a
+ * read taken during recording may be off by the values being recorded.
+ */
+public class Histogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = SUB_COUNT
+            + (MAX_EXPONENT - SUB_BITS) * SUB_COUNT;
+    private static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+
+    private AtomicLongArray buckets;
+    private LongAdder count;
+    private LongAdder sum;
+    private AtomicLong max;
+
+    /**
+     * Constructs an empty Histogram.
+     */
+    public Histogram() {
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param nanos the value in nanoseconds, negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketOf(Math.min(value, MAX_VALUE)));
+        count.increment();
+        sum.add(value);
+        long highest;
+        while (value > (highest = max.get())) {
+            if (max.compareAndSet(highest, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Records the time since a start time taken from
+     * {@link System#nanoTime()}.
+     *
+     * @param start the start time
+     */
+    public void recordSince(long start) {
+        record(System.nanoTime() - start);
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the sum of the values recorded.
+     *
+     * @return the sum in nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Returns the largest value recorded.
+     *
+     * @return the largest value in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns several percentiles with a single scan of the buckets. Each
+     * percentile is given as the upper bound of the bucket it falls in.
+     *
+     * @param percentiles the percentiles, each between 0 and 100, in
+     *            ascending order
+     * @return the values at the percentiles in nanoseconds, 0 if nothing has
+     *         been recorded
+     */
+    public long[] getPercentiles(double... percentiles) {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            copy[i] = buckets.get(i);
+            total += copy[i];
+        }
+        long[] values = new long[percentiles.length];
+        if (total == 0) {
+            return values;
+        }
+        int bucket = 0;
+        long seen = copy[0];
+        for (int p = 0; p < percentiles.length; ++p) {
+            long rank = Math.max(1, (long) Math.ceil(
+                    percentiles[p] / 100.0 * total));
+            while (seen < rank && bucket < BUCKETS - 1) {
+                seen += copy[++bucket];
+            }
+            values[p] = Math.min(upperBound(bucket), max.get());
+        }
+        return values;
+    }
+
+    /**
+     * Returns a percentile.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the value at the percentile in nanoseconds
+     */
+    public long getPercentile(double percentile) {
+        return getPercentiles(percentile)[0];
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) - SUB_COUNT;
+        return SUB_COUNT + (exponent - SUB_BITS) * SUB_COUNT + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_COUNT) / SUB_COUNT;
+        int sub = (bucket - SUB_COUNT) % SUB_COUNT;
+        return ((long) (SUB_COUNT + sub + 1) << shift) - 1;
+    }
+
+}
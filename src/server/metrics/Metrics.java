@@ -0,0 +1,150 @@
+package server.metrics;
+
+import server.TimeoutService;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The server's metrics, found by name. Code on a hot path looks its
+ * {@link Counter} or {@link Histogram} up once, into a static field, and
+ * then only touches that object, so recording never goes through the
+ * registry. Reading takes no locks, and a reader only sees the values as
+ * they are at that moment.
+ * <p>
+ * Histograms record nanoseconds. Names are dotted, starting with the part
+ * of the server they measure, such as receive.move or lobby.fanout.
+ */
+public class Metrics {
+
+    private static final ConcurrentHashMap<String, Counter> counters =
+            new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Histogram> histograms =
+            new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Gauge> gauges =
+            new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Returns the counter with the given name, creating it if there isn't
+     * one.
+     *
+     * @param name the name of the counter
+     * @return the counter
+     */
+    public static Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            counters.putIfAbsent(name, new Counter());
+            counter = counters.get(name);
+        }
+        return counter;
+    }
+
+    /**
+     * Returns the histogram with the given name, creating it if there isn't
+     * one.
+     *
+     * @param name the name of the histogram
+     * @return the histogram
+     */
+    public static Histogram histogram(String name) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histograms.putIfAbsent(name, new Histogram());
+            histogram = histograms.get(name);
+        }
+        return histogram;
+    }
+
+    /**
+     * Registers a gauge, replacing any gauge with the same name.
+     *
+     * @param name the name of the gauge
+     * @param gauge the gauge
+     */
+    public static void gauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Returns every counter, sorted by name.
+     *
+     * @return the counters
+     */
+    public static Map<String, Counter> getCounters() {
+        return new TreeMap<>(counters);
+    }
+
+    /**
+     * Returns every histogram, sorted by name.
+     *
+     * @return the histograms
+     */
+    public static Map<String, Histogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    /**
+     * Returns every gauge, sorted by name.
+     *
+     * @return the gauges
+     */
+    public static Map<String, Gauge> getGauges() {
+        return new TreeMap<>(gauges);
+    }
+
+    /**
+     * Describes every metric, one per line. Histograms are given as their
+     * count, then the 50th, 90th, 99th and 99.9th percentiles and the
+     * largest value in microseconds.
+     *
+     * @return the report
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, Gauge> entry : getGauges().entrySet()) {
+            report.append(entry.getKey()).append(' ')
+                    .append(entry.getValue().get()).append('\n');
+        }
+        for (Map.Entry<String, Counter> entry : getCounters().entrySet()) {
+            report.append(entry.getKey()).append(' ')
+                    .append(entry.getValue().get()).append('\n');
+        }
+        for (Map.Entry<String, Histogram> entry
+                : getHistograms().entrySet()) {
+            Histogram histogram = entry.getValue();
+            long[] percentiles = histogram.getPercentiles(50, 90, 99, 99.9);
+            report.append(entry.getKey()).append(" count=")
+                    .append(histogram.getCount());
+            report.append(" p50=").append(percentiles[0] / 1000);
+            report.append(" p90=").append(percentiles[1] / 1000);
+            report.append(" p99=").append(percentiles[2] / 1000);
+            report.append(" p999=").append(percentiles[3] / 1000);
+            report.append(" max=").append(histogram.getMax() / 1000)
+                    .append("us\n");
+        }
+        return report.toString();
+    }
+
+    /**
+     * Prints the report to the console at a fixed interval.
+     *
+     * @param timeouts the service running the reports
+     * @param interval time between two reports in milliseconds
+     */
+    public static void startReporting(final TimeoutService timeouts,
+            final long interval) {
+        timeouts.schedule(new Runnable() {
+            @Override
+            public void run() {
+                System.out.print(report());
+                timeouts.schedule(this, interval);
+            }
+        }, interval);
+    }
+
+}
@@ -0,0 +1,392 @@
+package server.net;
+
+import model.Ship;
+import server.messages.ChatMessage;
+import server.messages.FleetPlacementMessage;
+import server.messages.MatchRoomDeltaMessage;
+import server.messages.MatchRoomListMessage;
+import server.messages.MoveMessage;
+import server.messages.MoveResponseMessage;
+import server.messages.NotificationMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link Codec} with a compact binary layout for the messages sent during
+ * a game. Every payload starts with a one byte opcode followed by the fields
+ * of the message, so a shot only takes 3 bytes. Lengths and counts are
+ * written as unsigned varints, and Strings as UTF-8. Messages without an
+ * opcode of their own are sent using Java serialization.
+ */
+public class BinaryCodec implements Codec {
+
+    public static final int ID = 1;
+
+    public static final int COMMAND = 0x01;
+    public static final int MOVE = 0x02;
+    public static final int MOVE_RESPONSE = 0x03;
+    public static final int NOTIFICATION = 0x04;
+    public static final int CHAT = 0x05;
+    public static final int MATCH_ROOM_LIST = 0x06;
+    public static final int STRING = 0x07;
+    public static final int MATCH_ROOM_DELTA = 0x08;
+    public static final int FLEET_PLACEMENT = 0x09;
+    public static final int SERIALIZED = 0x7F;
+
+    private static final int HIT = 1;
+    private static final int OWN_BOARD = 1 << 1;
+    private static final int SHIP_SUNK = 1 << 2;
+    private static final int VERTICAL = 1 << 3;
+
+    private SerializationCodec serializationCodec = new SerializationCodec();
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "binary";
+    }
+
+    @Override
+    public byte[] encode(Object message) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+        if (message instanceof MoveMessage && fitsInBytes(
+                ((MoveMessage) message).getX(),
+                ((MoveMessage) message).getY())) {
+            MoveMessage move = (MoveMessage) message;
+            out.write(MOVE);
+            out.write(move.getX());
+            out.write(move.getY());
+        } else if (message instanceof MoveResponseMessage && fitsInBytes(
+                ((MoveResponseMessage) message).getX(),
+                ((MoveResponseMessage) message).getY())) {
+            writeMoveResponse(out, (MoveResponseMessage) message);
+        } else if (message instanceof FleetPlacementMessage
+                && ((FleetPlacementMessage) message).isValid()) {
+            writeFleetPlacement(out, (FleetPlacementMessage) message);
+        } else if (message instanceof NotificationMessage) {
+            NotificationMessage notification = (NotificationMessage) message;
+            out.write(NOTIFICATION);
+            writeVarint(out, notification.getCode());
+            writeStrings(out, notification.getText());
+        } else if (message instanceof String[]) {
+            out.write(COMMAND);
+            writeStrings(out, (String[]) message);
+        } else if (message instanceof ChatMessage) {
+            out.write(CHAT);
+            writeString(out, ((ChatMessage) message).getMessage());
+        } else if (message instanceof MatchRoomListMessage) {
+            HashMap<String, String> matchRoomList =
+                    ((MatchRoomListMessage) message).getMatchRoomList();
+            out.write(MATCH_ROOM_LIST);
+            writeVarlong(out, ((MatchRoomListMessage) message).getSequence());
+            writeVarint(out, matchRoomList.size());
+            for (Map.Entry<String, String> entry : matchRoomList.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+        } else if (message instanceof MatchRoomDeltaMessage) {
+            MatchRoomDeltaMessage delta = (MatchRoomDeltaMessage) message;
+            out.write(MATCH_ROOM_DELTA);
+            writeVarlong(out, delta.getSequence());
+            writeVarint(out, delta.getChangeCount());
+            for (int i = 0; i < delta.getChangeCount(); ++i) {
+                out.write(delta.getChange(i));
+                writeString(out, delta.getKey(i));
+                writeString(out, delta.getName(i));
+            }
+        } else if (message instanceof String) {
+            out.write(STRING);
+            writeString(out, (String) message);
+        } else {
+            out.write(SERIALIZED);
+            out.write(serializationCodec.encode(message));
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] payload, int offset, int length)
+            throws IOException, ClassNotFoundException {
+        Input in = new Input(payload, offset, length);
+        int opcode = in.readByte();
+        switch (opcode) {
+        case MOVE:
+            return new MoveMessage((byte) in.readByte(), (byte) in.readByte());
+        case MOVE_RESPONSE:
+            return readMoveResponse(in);
+        case FLEET_PLACEMENT:
+            return readFleetPlacement(in);
+        case NOTIFICATION:
+            int code = in.readVarint();
+            String[] text = in.readStrings();
+            return text == null ? new NotificationMessage(code)
+                    : new NotificationMessage(code, text);
+        case COMMAND:
+            return in.readStrings();
+        case CHAT:
+            return new ChatMessage(in.readString());
+        case MATCH_ROOM_LIST:
+            long sequence = in.readVarlong();
+            int size = in.readVarint();
+            HashMap<String, String> matchRoomList = new HashMap<>();
+            for (int i = 0; i < size; ++i) {
+                matchRoomList.put(in.readString(), in.readString());
+            }
+            return new MatchRoomListMessage(matchRoomList, sequence);
+        case MATCH_ROOM_DELTA:
+            return readMatchRoomDelta(in);
+        case STRING:
+            return in.readString();
+        case SERIALIZED:
+            return serializationCodec.decode(payload, offset + 1, length - 1);
+        default:
+            throw new StreamCorruptedException("Unknown opcode " + opcode);
+        }
+    }
+
+    // each ship is two bytes, its type and orientation then its coordinates
+    private void writeFleetPlacement(ByteArrayOutputStream out,
+            FleetPlacementMessage fleet) {
+        out.write(FLEET_PLACEMENT);
+        out.write(fleet.getShipCount());
+        for (int i = 0; i < fleet.getShipCount(); ++i) {
+            out.write(fleet.getType(i).ordinal()
+                    | (fleet.isVertical(i) ? VERTICAL : 0));
+            out.write(fleet.getX(i) << 4 | fleet.getY(i));
+        }
+    }
+
+    private FleetPlacementMessage readFleetPlacement(Input in)
+            throws IOException {
+        int count = in.readByte();
+        int[] types = new int[count];
+        int[] xs = new int[count];
+        int[] ys = new int[count];
+        boolean[] vertical = new boolean[count];
+        for (int i = 0; i < count; ++i) {
+            int type = in.readByte();
+            int position = in.readByte();
+            types[i] = type & ~VERTICAL;
+            vertical[i] = (type & VERTICAL) != 0;
+            xs[i] = position >> 4;
+            ys[i] = position & 0x0F;
+        }
+        return new FleetPlacementMessage(types, xs, ys, vertical);
+    }
+
+    private void writeMoveResponse(ByteArrayOutputStream out,
+            MoveResponseMessage response) {
+        int flags = 0;
+        if (response.isHit()) {
+            flags |= HIT;
+        }
+        if (response.isOwnBoard()) {
+            flags |= OWN_BOARD;
+        }
+        if (response.isShipSunk()) {
+            flags |= SHIP_SUNK;
+            if (response.isSunkShipVertical()) {
+                flags |= VERTICAL;
+            }
+        }
+        out.write(MOVE_RESPONSE);
+        out.write(response.getX());
+        out.write(response.getY());
+        out.write(flags);
+        if (response.isShipSunk()) {
+            out.write(response.getSunkShipType().ordinal());
+            out.write(response.getSunkShipX());
+            out.write(response.getSunkShipY());
+        }
+    }
+
+    private MoveResponseMessage readMoveResponse(Input in) throws IOException {
+        int x = (byte) in.readByte();
+        int y = (byte) in.readByte();
+        int flags = in.readByte();
+        Ship.Type type = null;
+        int shipX = 0;
+        int shipY = 0;
+        if ((flags & SHIP_SUNK) != 0) {
+            Ship.Type[] types = Ship.Type.values();
+            int ordinal = in.readByte();
+            if (ordinal >= types.length) {
+                throw new StreamCorruptedException("Unknown ship type "
+                        + ordinal);
+            }
+            type = types[ordinal];
+            shipX = in.readByte();
+            shipY = in.readByte();
+        }
+        return new MoveResponseMessage(x, y, type, shipX, shipY,
+                (flags & VERTICAL) != 0, (flags & HIT) != 0,
+                (flags & OWN_BOARD) != 0);
+    }
+
+    private MatchRoomDeltaMessage readMatchRoomDelta(Input in)
+            throws IOException {
+        long sequence = in.readVarlong();
+        int count = in.readVarint();
+        if (count < 0 || count > in.remaining()) {
+            throw new EOFException("Payload too short");
+        }
+        int[] changes = new int[count];
+        String[] keys = new String[count];
+        String[] names = new String[count];
+        for (int i = 0; i < count; ++i) {
+            changes[i] = in.readByte();
+            keys[i] = in.readString();
+            names[i] = in.readString();
+        }
+        return new MatchRoomDeltaMessage(sequence, changes, keys, names);
+    }
+
+    private static boolean fitsInBytes(int x, int y) {
+        return x == (byte) x && y == (byte) y;
+    }
+
+    /**
+     * Writes an unsigned varint, 7 bits per byte with the high bit set on
+     * every byte but the last.
+     *
+     * @param out the stream to write to
+     * @param value the non-negative value to write
+     */
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Writes an unsigned varint holding a long.
+     *
+     * @param out the stream to write to
+     * @param value the non-negative value to write
+     */
+    static void writeVarlong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    // null is written as 0, any other String as its length + 1
+    private static void writeString(ByteArrayOutputStream out, String string) {
+        if (string == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length + 1);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    // null is written as 0, any other array as its length + 1
+    private static void writeStrings(ByteArrayOutputStream out,
+            String[] strings) {
+        if (strings == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        writeVarint(out, strings.length + 1);
+        for (String string : strings) {
+            writeString(out, string);
+        }
+    }
+
+    /**
+     * Reads the fields of a payload in order.
+     */
+    private static class Input {
+
+        private byte[] buffer;
+        private int position;
+        private int limit;
+
+        Input(byte[] buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.position = offset;
+            this.limit = offset + length;
+        }
+
+        int readByte() throws EOFException {
+            if (position >= limit) {
+                throw new EOFException("Payload too short");
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("Varint too long");
+        }
+
+        long readVarlong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("Varint too long");
+        }
+
+        int remaining() {
+            return limit - position;
+        }
+
+        String readString() throws IOException {
+            int length = readVarint() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (length > limit - position) {
+                throw new EOFException("Payload too short");
+            }
+            String string = new String(buffer, position, length,
+                    StandardCharsets.UTF_8);
+            position += length;
+            return string;
+        }
+
+        String[] readStrings() throws IOException {
+            int length = readVarint() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (length > limit - position) {
+                throw new EOFException("Payload too short");
+            }
+            String[] strings = new String[length];
+            for (int i = 0; i < length; ++i) {
+                strings[i] = readString();
+            }
+            return strings;
+        }
+
+    }
+
+}
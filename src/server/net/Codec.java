@@ -0,0 +1,51 @@
+package server.net;
+
+import java.io.IOException;
+
+/**
+ * Converts messages to and from the payload of a frame of the framed
+ * protocol. The codec used by a connection is agreed on when the client
+ * connects.
+ *
+ * @see Frames
+ */
+public interface Codec {
+
+    /**
+     * Returns the id identifying the codec during the handshake. Ids are
+     * between 0 and 7, so that the codecs the server offers fit in a byte.
+     *
+     * @return the id of the codec
+     */
+    int getId();
+
+    /**
+     * Returns the name used to select the codec in config.properties.
+     *
+     * @return the name of the codec
+     */
+    String getName();
+
+    /**
+     * Encodes a message into a frame payload.
+     *
+     * @param message the message to be encoded
+     * @return the payload
+     * @throws IOException if the message can't be encoded
+     */
+    byte[] encode(Object message) throws IOException;
+
+    /**
+     * Decodes a message from a frame payload.
+     *
+     * @param payload the buffer containing the payload
+     * @param offset start of the payload in the buffer
+     * @param length length of the payload
+     * @return the decoded message
+     * @throws IOException if the payload is corrupt
+     * @throws ClassNotFoundException if the payload contains an unknown class
+     */
+    Object decode(byte[] payload, int offset, int length) throws IOException,
+            ClassNotFoundException;
+
+}
@@ -0,0 +1,30 @@
+package server.net;
+
+/**
+ * The transport a {@link server.Player} sends its messages through. The
+ * implementation decides how a message is written to the client, so that the
+ * game logic doesn't depend on the threading or I/O model of the server.
+ */
+public interface Connection {
+
+    /**
+     * Queues a message to be sent to the client. Never blocks, even if the
+     * client is slow to read.
+     *
+     * @param message the message to be sent
+     */
+    void send(Object message);
+
+    /**
+     * Returns the number of messages waiting to be written to the client.
+     *
+     * @return the outbound queue depth
+     */
+    int getQueueDepth();
+
+    /**
+     * Closes the connection to the client.
+     */
+    void close();
+
+}
@@ -0,0 +1,86 @@
+package server.net;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Settings shared by every {@link Connection} of the server: the codecs
+ * offered to clients, the size of the outbound queue and what happens when a
+ * client falls too far behind.
+ */
+public class ConnectionSettings {
+
+    /**
+     * What to do with a message sent to a client whose outbound queue is
+     * full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Close the connection, as the client has stopped reading.
+         */
+        DISCONNECT,
+        /**
+         * Drop the message and keep the connection open.
+         */
+        DROP
+    }
+
+    private int codecs;
+    private int outboundLimit;
+    private OverflowPolicy overflowPolicy;
+    private ThreadFactory threadFactory;
+
+    /**
+     * Constructs ConnectionSettings.
+     *
+     * @param codecs bit set of the ids of the codecs offered to clients, or 0
+     *            to use plain object streams
+     * @param outboundLimit the most messages queued for a single client
+     * @param overflowPolicy what to do when a client's queue is full
+     * @param threadFactory factory for the threads writing to blocking
+     *            sockets
+     */
+    public ConnectionSettings(int codecs, int outboundLimit,
+            OverflowPolicy overflowPolicy, ThreadFactory threadFactory) {
+        this.codecs = codecs;
+        this.outboundLimit = outboundLimit;
+        this.overflowPolicy = overflowPolicy;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Returns the codecs offered to clients.
+     *
+     * @return bit set of codec ids, or 0 if the framed protocol isn't used
+     */
+    public int getCodecs() {
+        return codecs;
+    }
+
+    /**
+     * Returns the most messages that can be queued for a single client.
+     *
+     * @return the outbound queue limit
+     */
+    public int getOutboundLimit() {
+        return outboundLimit;
+    }
+
+    /**
+     * Returns what to do when a client's outbound queue is full.
+     *
+     * @return the overflow policy
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Returns the factory used for threads writing to blocking sockets.
+     *
+     * @return the thread factory
+     */
+    public ThreadFactory getThreadFactory() {
+        return threadFactory;
+    }
+
+}
@@ -0,0 +1,141 @@
+package server.net;
+
+import server.MatchRoom;
+import server.Player;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A thread that serves many {@link NioConnection}s using a single
+ * {@link Selector}. Reads, writes and the handling of every message received
+ * on its connections all happen on this thread.
+ */
+public class EventLoop extends Thread {
+
+    private Selector selector;
+    private Queue<Runnable> tasks;
+
+    /**
+     * Constructs an EventLoop with its own selector.
+     *
+     * @param index number of the event loop, used to name its thread
+     * @throws IOException if the selector can't be opened
+     */
+    public EventLoop(int index) throws IOException {
+        super("event-loop-" + index);
+        this.selector = Selector.open();
+        this.tasks = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Runs a task on this event loop. If called from another thread the
+     * selector is woken up so that the task runs straight away.
+     *
+     * @param task the task to run
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (!inEventLoop()) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Checks if the current thread is this event loop.
+     *
+     * @return true if called from this event loop
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == this;
+    }
+
+    /**
+     * Hands a newly accepted channel to this event loop, and creates the
+     * {@link Player} connected through it.
+     *
+     * @param channel the accepted channel
+     * @param matchRoom the match room the player will be placed in
+     * @param settings the connection settings of the server
+     */
+    public void register(final SocketChannel channel,
+            final MatchRoom matchRoom, final ConnectionSettings settings) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    channel.configureBlocking(false);
+                    NioConnection connection = new NioConnection(
+                            EventLoop.this, channel, settings);
+                    SelectionKey key = channel.register(selector,
+                            SelectionKey.OP_READ, connection);
+                    connection.setKey(key);
+                    connection.setPlayer(new Player(channel.socket(),
+                            matchRoom, connection));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    try {
+                        channel.close();
+                    } catch (IOException e1) {
+                        e1.printStackTrace();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits for channels to become readable or writable and services them,
+     * running any queued tasks in between.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            runTasks();
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                NioConnection connection = (NioConnection) key.attachment();
+                if (!key.isValid()) {
+                    connection.close();
+                    continue;
+                }
+                try {
+                    if (key.isWritable()) {
+                        connection.flush();
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        connection.read();
+                    }
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+}
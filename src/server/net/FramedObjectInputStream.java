@@ -0,0 +1,53 @@
+package server.net;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+
+/**
+ * An {@link ObjectInputStream} that reads Objects from frames of the framed
+ * protocol, decoded by a {@link Codec}. It can be used anywhere a normal
+ * ObjectInputStream is used to read from the connection.
+ *
+ * @see Frames
+ */
+public class FramedObjectInputStream extends ObjectInputStream {
+
+    private DataInputStream in;
+    private Codec codec;
+
+    /**
+     * Constructs a FramedObjectInputStream reading from the given stream.
+     *
+     * @param in the underlying stream
+     * @param codec the codec to decode Objects with
+     * @throws IOException if the stream can't be created
+     */
+    public FramedObjectInputStream(InputStream in, Codec codec)
+            throws IOException {
+        super();
+        this.in = new DataInputStream(in);
+        this.codec = codec;
+    }
+
+    @Override
+    protected Object readObjectOverride() throws IOException,
+            ClassNotFoundException {
+        int length = Frames.readLength(in);
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return codec.decode(payload, 0, length);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return in.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+}
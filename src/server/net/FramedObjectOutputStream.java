@@ -0,0 +1,55 @@
+package server.net;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * An {@link ObjectOutputStream} that writes every Object as a separate frame
+ * of the framed protocol, encoded by a {@link Codec}. It can be used
+ * anywhere a normal ObjectOutputStream is used to write to the connection.
+ *
+ * @see Frames
+ */
+public class FramedObjectOutputStream extends ObjectOutputStream {
+
+    private OutputStream out;
+    private Codec codec;
+
+    /**
+     * Constructs a FramedObjectOutputStream writing to the given stream.
+     *
+     * @param out the underlying stream
+     * @param codec the codec to encode Objects with
+     * @throws IOException if the stream can't be created
+     */
+    public FramedObjectOutputStream(OutputStream out, Codec codec)
+            throws IOException {
+        super();
+        this.out = out;
+        this.codec = codec;
+    }
+
+    @Override
+    protected void writeObjectOverride(Object obj) throws IOException {
+        out.write(Frames.encode(obj, codec));
+    }
+
+    /**
+     * Does nothing, as every frame is already serialized independently.
+     */
+    @Override
+    public void reset() {
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+}
@@ -0,0 +1,272 @@
+package server.net;
+
+import server.metrics.Histogram;
+import server.metrics.Metrics;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * Helpers for the framed protocol, where every message is sent as its length
+ * followed by the message encoded on its own by a {@link Codec}. Because
+ * each frame can be decoded without the frames before it, the server can
+ * read messages from non-blocking channels. The length is written as an
+ * unsigned varint, so small messages only need one byte of header.
+ * <p>
+ * A server using the framed protocol starts the connection with a greeting
+ * listing the codecs it supports, which also lets the client tell it apart
+ * from a server using a plain {@link ObjectOutputStream}. The client answers
+ * with a single byte, the id of the codec it has chosen, which is then used
+ * in both directions.
+ */
+public class Frames {
+
+    // time to encode a message into a frame
+    private static final Histogram ENCODE_TIME =
+            Metrics.histogram("send.encode");
+
+    /**
+     * Bytes the greeting starts with.
+     */
+    public static final byte[] MAGIC = { 'B', 'S', 'H', 'P' };
+
+    /**
+     * Version of the framed protocol.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * Largest payload accepted in a single frame.
+     */
+    public static final int MAX_FRAME_SIZE = 1 << 20;
+
+    /**
+     * Largest number of bytes in a frame header.
+     */
+    public static final int MAX_HEADER_SIZE = 3;
+
+    private static final Codec[] CODECS = { new SerializationCodec(),
+            new BinaryCodec() };
+
+    /**
+     * Returns the codec with the given id.
+     *
+     * @param id id of the codec
+     * @return the codec, or null if there is no codec with that id
+     */
+    public static Codec getCodec(int id) {
+        for (Codec codec : CODECS) {
+            if (codec.getId() == id) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the codec with the given name.
+     *
+     * @param name name of the codec
+     * @return the codec, or null if there is no codec with that name
+     */
+    public static Codec getCodec(String name) {
+        for (Codec codec : CODECS) {
+            if (codec.getName().equals(name)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses a comma separated list of codec names into the set of codecs
+     * offered in the greeting. Java serialization is always offered, as the
+     * fallback.
+     *
+     * @param names comma separated codec names
+     * @return a bit set with the bit of every codec id set
+     */
+    public static int parseCodecs(String names) {
+        int codecs = 1 << SerializationCodec.ID;
+        for (String name : names.split(",")) {
+            Codec codec = getCodec(name.trim());
+            if (codec != null) {
+                codecs |= 1 << codec.getId();
+            } else {
+                System.out.println("Unknown codec " + name);
+            }
+        }
+        return codecs;
+    }
+
+    /**
+     * Returns the greeting sent by the server when a client connects.
+     *
+     * @param codecs bit set of the ids of the codecs the server supports
+     * @return the greeting
+     */
+    public static byte[] greeting(int codecs) {
+        byte[] greeting = new byte[MAGIC.length + 2];
+        System.arraycopy(MAGIC, 0, greeting, 0, MAGIC.length);
+        greeting[MAGIC.length] = VERSION;
+        greeting[MAGIC.length + 1] = (byte) codecs;
+        return greeting;
+    }
+
+    /**
+     * Reads the greeting from the server, if there is one. If the server
+     * doesn't use the framed protocol, the stream is reset so that it can be
+     * read by an {@link ObjectInputStream}.
+     *
+     * @param in the stream from the server, which must support mark
+     * @return bit set of the codecs the server supports, or 0 if the server
+     *         doesn't use the framed protocol
+     * @throws IOException if reading from the stream fails
+     */
+    public static int readGreeting(InputStream in) throws IOException {
+        in.mark(MAGIC.length);
+        for (byte b : MAGIC) {
+            if (in.read() != (b & 0xFF)) {
+                in.reset();
+                return 0;
+            }
+        }
+        int version = in.read();
+        if (version != VERSION) {
+            throw new IOException("Unsupported protocol version " + version);
+        }
+        int codecs = in.read();
+        if (codecs <= 0) {
+            throw new IOException("Server offered no codecs");
+        }
+        return codecs;
+    }
+
+    /**
+     * Chooses the preferred codec if the server supports it, or Java
+     * serialization otherwise, and tells the server which was chosen.
+     *
+     * @param out the stream to the server
+     * @param codecs bit set of the codecs the server supports
+     * @param preferred name of the codec the client would like to use
+     * @return the chosen codec
+     * @throws IOException if writing to the stream fails
+     */
+    public static Codec chooseCodec(OutputStream out, int codecs,
+            String preferred) throws IOException {
+        Codec codec = getCodec(preferred);
+        if (codec == null || (codecs & (1 << codec.getId())) == 0) {
+            codec = getCodec(SerializationCodec.ID);
+        }
+        out.write(codec.getId());
+        out.flush();
+        return codec;
+    }
+
+    /**
+     * Reads the codec chosen by the client.
+     *
+     * @param id the byte sent by the client
+     * @param codecs bit set of the codecs the server supports
+     * @return the chosen codec
+     * @throws IOException if the client chose a codec that wasn't offered
+     */
+    public static Codec chosenCodec(int id, int codecs) throws IOException {
+        if (id < 0 || id > 7 || (codecs & (1 << id)) == 0) {
+            throw new IOException("Client chose unsupported codec " + id);
+        }
+        return getCodec(id);
+    }
+
+    /**
+     * Encodes a message into a frame, including the length header. A
+     * {@link PreparedMessage} returns the frame it has already encoded for
+     * the codec.
+     *
+     * @param message the message to be encoded
+     * @param codec the codec to encode it with
+     * @return the frame
+     * @throws IOException if the message can't be encoded
+     */
+    public static byte[] encode(Object message, Codec codec)
+            throws IOException {
+        if (message instanceof PreparedMessage) {
+            return ((PreparedMessage) message).getFrame(codec);
+        }
+        long start = System.nanoTime();
+        byte[] payload = codec.encode(message);
+        int length = payload.length;
+        if (length > MAX_FRAME_SIZE) {
+            throw new IOException("Frame too large: " + length);
+        }
+        int headerSize = headerSize(length);
+        byte[] frame = new byte[headerSize + length];
+        int position = 0;
+        while ((length & ~0x7F) != 0) {
+            frame[position++] = (byte) ((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        frame[position] = (byte) length;
+        System.arraycopy(payload, 0, frame, headerSize, payload.length);
+        ENCODE_TIME.recordSince(start);
+        return frame;
+    }
+
+    /**
+     * Returns the number of bytes in the header of a frame.
+     *
+     * @param length the length of the payload
+     * @return the size of the header
+     */
+    public static int headerSize(int length) {
+        int size = 1;
+        while ((length & ~0x7F) != 0) {
+            ++size;
+            length >>>= 7;
+        }
+        return size;
+    }
+
+    /**
+     * Reads the length of a frame from a blocking stream.
+     *
+     * @param in the stream to read from
+     * @return the length of the payload
+     * @throws IOException if the stream ends or the length is invalid
+     */
+    public static int readLength(InputStream in) throws IOException {
+        int length = 0;
+        for (int i = 0; i < MAX_HEADER_SIZE; ++i) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            length |= (b & 0x7F) << (7 * i);
+            if ((b & 0x80) == 0) {
+                return checkLength(length);
+            }
+        }
+        throw new StreamCorruptedException("Frame header too long");
+    }
+
+    /**
+     * Checks that the length of a frame is allowed.
+     *
+     * @param length the length of the payload
+     * @return the length
+     * @throws StreamCorruptedException if the frame is too large
+     */
+    public static int checkLength(int length) throws StreamCorruptedException {
+        if (length > MAX_FRAME_SIZE) {
+            throw new StreamCorruptedException("Invalid frame length "
+                    + length);
+        }
+        return length;
+    }
+
+}
@@ -0,0 +1,298 @@
+package server.net;
+
+import server.EventLog;
+import server.Player;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Connection} over a non-blocking {@link SocketChannel}, serviced by
+ * an {@link EventLoop}. Messages are exchanged as frames of the framed
+ * protocol, using the codec chosen by the client. Outgoing frames are put in
+ * an {@link OutboundQueue} and written by the event loop when the channel is
+ * writable, so sending never blocks the caller.
+ *
+ * @see Frames
+ */
+public class NioConnection implements Connection {
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private EventLoop eventLoop;
+    private SocketChannel channel;
+    private SelectionKey key;
+    private Player player;
+    // id of the player, for the event log
+    private volatile int id;
+    private ByteBuffer readBuffer;
+    private OutboundQueue<ByteBuffer> writeQueue;
+    private ConnectionSettings settings;
+    private volatile Codec codec;
+    private List<Object> pendingMessages;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a NioConnection for a channel serviced by the given event
+     * loop, and queues the greeting of the framed protocol.
+     *
+     * @param eventLoop the event loop servicing the channel
+     * @param channel the channel connected to the client
+     * @param settings the connection settings of the server
+     */
+    public NioConnection(EventLoop eventLoop, SocketChannel channel,
+            ConnectionSettings settings) {
+        this.eventLoop = eventLoop;
+        this.channel = channel;
+        this.settings = settings;
+        this.readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        this.writeQueue = new OutboundQueue<>(settings.getOutboundLimit());
+        this.pendingMessages = new ArrayList<>();
+        writeQueue.offer(ByteBuffer.wrap(Frames.greeting(
+                settings.getCodecs())));
+    }
+
+    /**
+     * Sets the selection key of the channel, and writes anything queued
+     * before the channel was registered.
+     *
+     * @param key the selection key of the channel
+     */
+    void setKey(SelectionKey key) {
+        this.key = key;
+        flush();
+    }
+
+    /**
+     * Sets the player that messages read from the channel are passed to.
+     *
+     * @param player the player connected through this connection
+     */
+    void setPlayer(Player player) {
+        this.player = player;
+        this.id = player.getId();
+    }
+
+    /**
+     * Encodes a message into a frame and queues it to be written by the
+     * event loop. Messages sent before the client has chosen a codec are
+     * held back until it has. If the queue is full the overflow policy
+     * decides whether the message is dropped or the client is disconnected.
+     *
+     * @param message the message to be sent
+     */
+    @Override
+    public void send(Object message) {
+        if (closed) {
+            return;
+        }
+        Codec codec = this.codec;
+        if (codec == null) {
+            synchronized (pendingMessages) {
+                codec = this.codec;
+                if (codec == null) {
+                    pendingMessages.add(message);
+                    return;
+                }
+            }
+        }
+        ByteBuffer frame = encode(message, codec);
+        if (frame == null) {
+            return;
+        }
+        if (writeQueue.offer(frame)) {
+            runInEventLoop(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        } else {
+            overflow();
+        }
+    }
+
+    // encodes a message into a frame, or returns null if it can't be encoded
+    private ByteBuffer encode(Object message, Codec codec) {
+        try {
+            return ByteBuffer.wrap(Frames.encode(message, codec));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // applies the overflow policy to a frame that didn't fit in the queue
+    private void overflow() {
+        if (settings.getOverflowPolicy()
+                == ConnectionSettings.OverflowPolicy.DISCONNECT) {
+            EventLog.log(EventLog.WARN, EventLog.OUT, id, EventLog.QUEUE_FULL,
+                    channel.socket().getRemoteSocketAddress());
+            runInEventLoop(new Runnable() {
+                @Override
+                public void run() {
+                    close();
+                }
+            });
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return writeQueue.size();
+    }
+
+    private void runInEventLoop(Runnable task) {
+        if (eventLoop.inEventLoop()) {
+            task.run();
+        } else {
+            eventLoop.execute(task);
+        }
+    }
+
+    /**
+     * Writes as many queued frames as the channel accepts. If the channel is
+     * full, the event loop is asked to call this again once it is writable.
+     */
+    void flush() {
+        if (closed || key == null) {
+            return;
+        }
+        try {
+            ByteBuffer buffer;
+            while ((buffer = writeQueue.peek()) != null) {
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+                writeQueue.poll();
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /**
+     * Reads from the channel and passes every complete frame to the player.
+     */
+    void read() {
+        try {
+            if (channel.read(readBuffer) < 0) {
+                close();
+                return;
+            }
+            readBuffer.flip();
+            if (codec == null && readBuffer.hasRemaining()) {
+                setCodec(Frames.chosenCodec(readBuffer.get(),
+                        settings.getCodecs()));
+            }
+            while (!closed && readBuffer.hasRemaining()) {
+                int length = peekLength();
+                if (length < 0) {
+                    break;
+                }
+                int start = readBuffer.position() + Frames.headerSize(length);
+                if (readBuffer.limit() < start + length) {
+                    break;
+                }
+                Object input = codec.decode(readBuffer.array(),
+                        readBuffer.arrayOffset() + start, length);
+                readBuffer.position(start + length);
+                player.parseInput(input);
+            }
+            readBuffer.compact();
+            ensureCapacity();
+        } catch (IOException e) {
+            close();
+        } catch (ClassNotFoundException e) {
+            e.printStackTrace();
+            close();
+        }
+    }
+
+    // sets the codec chosen by the client, and sends any messages that were
+    // waiting for it. They are queued before the codec is published, so a
+    // message sent meanwhile can't overtake them
+    private void setCodec(Codec codec) {
+        boolean overflowed = false;
+        synchronized (pendingMessages) {
+            for (Object message : pendingMessages) {
+                ByteBuffer frame = encode(message, codec);
+                if (frame != null && !writeQueue.offer(frame)) {
+                    overflowed = true;
+                }
+            }
+            pendingMessages.clear();
+            this.codec = codec;
+        }
+        if (overflowed) {
+            overflow();
+        }
+        flush();
+    }
+
+    // returns the length of the frame at the buffer position, or -1 if the
+    // header hasn't been fully received yet
+    private int peekLength() throws IOException {
+        int length = 0;
+        int position = readBuffer.position();
+        for (int i = 0; i < Frames.MAX_HEADER_SIZE; ++i) {
+            if (position + i >= readBuffer.limit()) {
+                return -1;
+            }
+            int b = readBuffer.get(position + i);
+            length |= (b & 0x7F) << (7 * i);
+            if ((b & 0x80) == 0) {
+                return Frames.checkLength(length);
+            }
+        }
+        throw new IOException("Frame header too long");
+    }
+
+    // grows the read buffer if the next frame doesn't fit in it
+    private void ensureCapacity() throws IOException {
+        readBuffer.flip();
+        int length = peekLength();
+        readBuffer.compact();
+        if (length < 0) {
+            return;
+        }
+        int needed = Frames.headerSize(length) + length;
+        if (needed > readBuffer.capacity()) {
+            ByteBuffer bigger = ByteBuffer.allocate(needed);
+            readBuffer.flip();
+            bigger.put(readBuffer);
+            readBuffer = bigger;
+        }
+    }
+
+    /**
+     * Closes the channel and informs the player that they have disconnected.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writeQueue.clear();
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (player != null) {
+            player.disconnect();
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package server.net;
+
+import server.MatchRoom;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A server that accepts connections on a {@link ServerSocketChannel} and
+ * spreads them over a fixed number of {@link EventLoop}s, instead of starting
+ * a thread for every player.
+ */
+public class NioServer {
+
+    private ServerSocketChannel serverChannel;
+    private Selector selector;
+    private EventLoop[] eventLoops;
+    private MatchRoom matchRoom;
+    private ConnectionSettings settings;
+    private int nextEventLoop;
+
+    /**
+     * Constructs a NioServer listening on a port, and starts its event loops.
+     *
+     * @param port the port to listen on
+     * @param matchRoom the match room players will be placed in
+     * @param eventLoopCount the number of event loops to start
+     * @param settings the connection settings of the server
+     * @throws IOException if the port can't be bound
+     */
+    public NioServer(int port, MatchRoom matchRoom, int eventLoopCount,
+            ConnectionSettings settings) throws IOException {
+        this.matchRoom = matchRoom;
+        this.settings = settings;
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        this.selector = Selector.open();
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        this.eventLoops = new EventLoop[Math.max(1, eventLoopCount)];
+        for (int i = 0; i < eventLoops.length; ++i) {
+            eventLoops[i] = new EventLoop(i);
+            eventLoops[i].start();
+        }
+    }
+
+    /**
+     * Accepts connections forever, handing each one to the next event loop.
+     *
+     * @throws IOException if accepting fails
+     */
+    public void run() throws IOException {
+        while (true) {
+            selector.select();
+            selector.selectedKeys().clear();
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                eventLoops[nextEventLoop].register(channel, matchRoom,
+                        settings);
+                nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package server.net;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import server.messages.NotificationMessage;
+
+/**
+ * Notifications without text, encoded once by every codec when the server
+ * starts. Most notifications sent during a game, like YOUR_TURN, carry no
+ * text, so they are sent as a shared {@link PreparedMessage} whose frames
+ * are written straight to the client instead of being encoded again.
+ */
+public class NotificationCache {
+
+    private static final HashMap<Integer, PreparedMessage> cache =
+            new HashMap<>();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    static {
+        for (Field field : NotificationMessage.class.getFields()) {
+            int modifiers = field.getModifiers();
+            if (field.getType() != int.class || !Modifier.isStatic(modifiers)
+                    || !Modifier.isFinal(modifiers)) {
+                continue;
+            }
+            try {
+                int code = field.getInt(null);
+                PreparedMessage message = new PreparedMessage(
+                        new NotificationMessage(code, new String[0]));
+                for (int id = 0; id < 8; ++id) {
+                    Codec codec = Frames.getCodec(id);
+                    if (codec != null) {
+                        message.getFrame(codec);
+                    }
+                }
+                cache.put(code, message);
+            } catch (IllegalAccessException | IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Returns the cached notification for a code, if the notification has no
+     * text. Every call counts as a hit or a miss.
+     *
+     * @param code the notification code
+     * @param text the text of the notification
+     * @return the cached notification, or null if it has to be encoded
+     */
+    public static PreparedMessage get(int code, String... text) {
+        PreparedMessage message = null;
+        if (text == null || text.length == 0) {
+            message = cache.get(code);
+        }
+        if (message != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return message;
+    }
+
+    /**
+     * Returns the number of notifications sent from the cache.
+     *
+     * @return the number of hits
+     */
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of notifications that had to be encoded.
+     *
+     * @return the number of misses
+     */
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the share of notifications sent from the cache.
+     *
+     * @return the hit rate, between 0 and 1
+     */
+    public static double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+}
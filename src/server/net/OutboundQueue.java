@@ -0,0 +1,134 @@
+package server.net;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded queue of messages waiting to be written to a client. Sending a
+ * message only adds it to the queue, so a slow client never blocks the
+ * thread sending to it. Keeps server-wide counts of queued, dropped and
+ * overflowing messages.
+ *
+ * @param <T> the type of the queued messages
+ */
+public class OutboundQueue<T> {
+
+    private static final AtomicLong totalDepth = new AtomicLong();
+    private static final AtomicInteger highestDepth = new AtomicInteger();
+    private static final AtomicLong overflowCount = new AtomicLong();
+
+    private LinkedBlockingQueue<T> queue;
+
+    /**
+     * Constructs an OutboundQueue holding at most the given number of
+     * messages.
+     *
+     * @param limit the most messages the queue can hold
+     */
+    public OutboundQueue(int limit) {
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, limit));
+    }
+
+    /**
+     * Adds a message to the queue, unless it is full.
+     *
+     * @param message the message to be queued
+     * @return true if the message was queued, false if the queue is full
+     */
+    public boolean offer(T message) {
+        if (!queue.offer(message)) {
+            overflowCount.incrementAndGet();
+            return false;
+        }
+        totalDepth.incrementAndGet();
+        int depth = queue.size();
+        int highest;
+        while (depth > (highest = highestDepth.get())) {
+            if (highestDepth.compareAndSet(highest, depth)) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the message at the head of the queue without removing it.
+     *
+     * @return the head of the queue, or null if it is empty
+     */
+    public T peek() {
+        return queue.peek();
+    }
+
+    /**
+     * Removes the message at the head of the queue.
+     *
+     * @return the head of the queue, or null if it is empty
+     */
+    public T poll() {
+        T message = queue.poll();
+        if (message != null) {
+            totalDepth.decrementAndGet();
+        }
+        return message;
+    }
+
+    /**
+     * Removes the message at the head of the queue, waiting for one if the
+     * queue is empty.
+     *
+     * @return the head of the queue
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public T take() throws InterruptedException {
+        T message = queue.take();
+        totalDepth.decrementAndGet();
+        return message;
+    }
+
+    /**
+     * Returns the number of messages in the queue.
+     *
+     * @return the queue depth
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Removes every message from the queue.
+     */
+    public void clear() {
+        while (poll() != null) {
+        }
+    }
+
+    /**
+     * Returns the number of messages queued for all clients.
+     *
+     * @return the total queue depth
+     */
+    public static long getTotalDepth() {
+        return totalDepth.get();
+    }
+
+    /**
+     * Returns the deepest any single queue has been.
+     *
+     * @return the highest queue depth
+     */
+    public static int getHighestDepth() {
+        return highestDepth.get();
+    }
+
+    /**
+     * Returns the number of messages that didn't fit in a full queue.
+     *
+     * @return the number of overflows
+     */
+    public static long getOverflowCount() {
+        return overflowCount.get();
+    }
+
+}
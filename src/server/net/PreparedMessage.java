@@ -0,0 +1,55 @@
+package server.net;
+
+import java.io.IOException;
+
+/**
+ * A message sent to many clients at once. Each codec encodes the message
+ * the first time it is needed, and the same frame is then written to every
+ * client using that codec, instead of encoding the message once per client.
+ * <p>
+ * Clients using plain object streams are sent the wrapped message, as an
+ * ObjectOutputStream can't write bytes encoded by another stream.
+ */
+public class PreparedMessage {
+
+    private Object message;
+    private byte[][] frames;
+
+    /**
+     * Constructs a PreparedMessage wrapping the given message.
+     *
+     * @param message the message to be sent
+     */
+    public PreparedMessage(Object message) {
+        this.message = message;
+        this.frames = new byte[8][];
+    }
+
+    /**
+     * Returns the wrapped message.
+     *
+     * @return the message
+     */
+    public Object getMessage() {
+        return message;
+    }
+
+    /**
+     * Returns the message encoded as a frame by the given codec, encoding it
+     * if this is the first time the codec is used. The returned array is
+     * shared and must not be modified.
+     *
+     * @param codec the codec of the connection
+     * @return the frame, including the length header
+     * @throws IOException if the message can't be encoded
+     */
+    public synchronized byte[] getFrame(Codec codec) throws IOException {
+        byte[] frame = frames[codec.getId()];
+        if (frame == null) {
+            frame = Frames.encode(message, codec);
+            frames[codec.getId()] = frame;
+        }
+        return frame;
+    }
+
+}
@@ -0,0 +1,45 @@
+package server.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * A {@link Codec} that uses Java serialization, serializing each message on
+ * its own. Works for any Serializable message, and is used when the client
+ * or server doesn't support the {@link BinaryCodec}.
+ */
+public class SerializationCodec implements Codec {
+
+    public static final int ID = 0;
+
+    @Override
+    public int getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "serialized";
+    }
+
+    @Override
+    public byte[] encode(Object message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(message);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] payload, int offset, int length)
+            throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(payload, offset, length));
+        return in.readObject();
+    }
+
+}
@@ -0,0 +1,127 @@
+package server.net;
+
+import server.EventLog;
+import server.metrics.Histogram;
+import server.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+
+/**
+ * A {@link Connection} that writes to a blocking {@link ObjectOutputStream}.
+ * Used when each player has its own thread reading from the socket. Messages
+ * are put in an {@link OutboundQueue} and written by a writer thread of the
+ * connection, so sending never waits for the client.
+ */
+public class StreamConnection implements Connection, Runnable {
+
+    // time to serialize a message onto a plain object stream
+    private static final Histogram SERIALIZE_TIME =
+            Metrics.histogram("send.serialize");
+
+    private int id;
+    private Socket socket;
+    private ObjectOutputStream out;
+    private ConnectionSettings settings;
+    private OutboundQueue<Object> queue;
+    private Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a StreamConnection writing to the given stream, and starts
+     * its writer thread.
+     *
+     * @param id the id of the player, for the event log
+     * @param socket the socket connected to the client
+     * @param out the stream connected to the client
+     * @param settings the connection settings of the server
+     */
+    public StreamConnection(int id, Socket socket, ObjectOutputStream out,
+            ConnectionSettings settings) {
+        this.id = id;
+        this.socket = socket;
+        this.out = out;
+        this.settings = settings;
+        this.queue = new OutboundQueue<>(settings.getOutboundLimit());
+        this.writer = settings.getThreadFactory().newThread(this);
+        writer.start();
+    }
+
+    /**
+     * Queues an Object to be written to the stream. If the queue is full the
+     * overflow policy decides whether the Object is dropped or the client is
+     * disconnected.
+     *
+     * @param message the Object to be sent
+     */
+    @Override
+    public void send(Object message) {
+        if (closed) {
+            return;
+        }
+        if (!queue.offer(message) && settings.getOverflowPolicy()
+                == ConnectionSettings.OverflowPolicy.DISCONNECT) {
+            EventLog.log(EventLog.WARN, EventLog.OUT, id, EventLog.QUEUE_FULL,
+                    socket.getRemoteSocketAddress());
+            close();
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Writes queued Objects to the stream until the connection is closed,
+     * flushing whenever the queue has been emptied.
+     */
+    @Override
+    public void run() {
+        try {
+            while (!closed) {
+                Object message = queue.take();
+                if (message instanceof PreparedMessage
+                        && !(out instanceof FramedObjectOutputStream)) {
+                    message = ((PreparedMessage) message).getMessage();
+                }
+                if (out instanceof FramedObjectOutputStream) {
+                    out.writeObject(message);
+                } else {
+                    // framed messages are timed as they are encoded
+                    long start = System.nanoTime();
+                    out.writeObject(message);
+                    SERIALIZE_TIME.recordSince(start);
+                }
+                if (queue.size() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            close();
+        } catch (InterruptedException e) {
+            // closed while waiting for a message
+        }
+        queue.clear();
+    }
+
+    /**
+     * Closes the socket, which stops the writer thread and the thread
+     * reading from the client.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writer.interrupt();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+}
@@ -0,0 +1,320 @@
+package server.replay;
+
+import model.Board;
+import model.FleetValidator;
+import model.Square;
+import model.Ship;
+import server.messages.FleetPlacementMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A finished game: the fleets of both players, who had the first turn and
+ * every shot in order. A shot is one byte, the square y * 10 + x in the low
+ * seven bits and the player who made it in the high bit, so a whole game
+ * takes a few hundred bytes. Player 0 is the player who was sent the game's
+ * first notifications.
+ */
+public class Replay {
+
+    /**
+     * The winner sank all of their opponent's ships.
+     */
+    public static final int SUNK_ALL = 0;
+
+    /**
+     * The winner's opponent ran out of time to shoot.
+     */
+    public static final int TIMEOUT = 1;
+
+    /**
+     * The winner's opponent left the game or didn't come back to it.
+     */
+    public static final int FORFEIT = 2;
+
+    /**
+     * The game ended without a winner.
+     */
+    public static final int ABANDONED = 3;
+
+    private long id;
+    private long endTime;
+    private int outcome;
+    private int winner;
+    private String[] names;
+    private FleetPlacementMessage[] fleets;
+    private int firstTurn;
+    private byte[] moves;
+    private int moveCount;
+
+    /**
+     * Constructs a Replay.
+     *
+     * @param id the id of the game
+     * @param endTime the time the game ended, in milliseconds since the
+     *            epoch
+     * @param outcome how the game ended, such as {@link #SUNK_ALL}
+     * @param winner 0 or 1, or -1 if nobody won
+     * @param name1 the name of player 0
+     * @param name2 the name of player 1
+     * @param fleet1 the fleet of player 0
+     * @param fleet2 the fleet of player 1
+     * @param firstTurn the player who had the first turn
+     * @param moves the shots, as described above
+     * @param moveCount the number of shots
+     */
+    public Replay(long id, long endTime, int outcome, int winner,
+            String name1, String name2, FleetPlacementMessage fleet1,
+            FleetPlacementMessage fleet2, int firstTurn, byte[] moves,
+            int moveCount) {
+        this.id = id;
+        this.endTime = endTime;
+        this.outcome = outcome;
+        this.winner = winner;
+        this.names = new String[] { name1, name2 };
+        this.fleets = new FleetPlacementMessage[] { fleet1, fleet2 };
+        this.firstTurn = firstTurn;
+        this.moves = moves;
+        this.moveCount = moveCount;
+    }
+
+    /**
+     * Returns the id of the game.
+     *
+     * @return the game's id
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the time the game ended.
+     *
+     * @return milliseconds since the epoch
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Returns how the game ended.
+     *
+     * @return {@link #SUNK_ALL}, {@link #TIMEOUT}, {@link #FORFEIT} or
+     *         {@link #ABANDONED}
+     */
+    public int getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Returns the player who won.
+     *
+     * @return 0 or 1, or -1 if nobody won
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    /**
+     * Returns the name of a player.
+     *
+     * @param player 0 or 1
+     * @return the player's name
+     */
+    public String getName(int player) {
+        return names[player];
+    }
+
+    /**
+     * Returns the fleet of a player.
+     *
+     * @param player 0 or 1
+     * @return the player's fleet
+     */
+    public FleetPlacementMessage getFleet(int player) {
+        return fleets[player];
+    }
+
+    /**
+     * Returns the player who had the first turn.
+     *
+     * @return 0 or 1
+     */
+    public int getFirstTurn() {
+        return firstTurn;
+    }
+
+    /**
+     * Returns the number of shots.
+     *
+     * @return the number of shots
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Returns the player who made a shot.
+     *
+     * @param i the index of the shot
+     * @return 0 or 1
+     */
+    public int getMovePlayer(int i) {
+        return (moves[i] >> 7) & 1;
+    }
+
+    /**
+     * Returns the square a shot was made at, as y * 10 + x.
+     *
+     * @param i the index of the shot
+     * @return the index of the square
+     */
+    public int getMoveSquare(int i) {
+        return moves[i] & 0x7F;
+    }
+
+    /**
+     * Plays the game again on {@link Board}s built from the fleets, and
+     * checks that it follows the rules: both fleets are valid, each shot is
+     * made by the player whose turn it was, a player who hits a ship shoots
+     * again, no square is shot twice, and the game ends when the last ship
+     * of the loser sinks if the outcome is {@link #SUNK_ALL}.
+     *
+     * @return null if the game followed the rules, otherwise a description
+     *         of the first thing that didn't
+     */
+    public String check() {
+        Board[] boards = new Board[2];
+        for (int player = 0; player < 2; ++player) {
+            boards[player] = fleets[player].toBoard();
+            if (!FleetValidator.isValid(boards[player])) {
+                return "invalid fleet for player " + player;
+            }
+        }
+        int turn = firstTurn;
+        for (int i = 0; i < moveCount; ++i) {
+            int player = getMovePlayer(i);
+            if (player != turn) {
+                return "shot " + i + " made out of turn";
+            }
+            Board board = boards[1 - player];
+            if (board.gameOver()) {
+                return "shot " + i + " made after the game was won";
+            }
+            int square = getMoveSquare(i);
+            int x = square % Board.BOARD_DIMENSION;
+            int y = square / Board.BOARD_DIMENSION;
+            if (y >= Board.BOARD_DIMENSION) {
+                return "shot " + i + " made off the board";
+            }
+            Square target = board.getSquare(x, y);
+            if (target.isGuessed()) {
+                return "shot " + i + " repeats a square";
+            }
+            if (!target.guess()) {
+                turn = 1 - player;
+            }
+        }
+        boolean sunkAll = boards[0].gameOver() || boards[1].gameOver();
+        if (outcome == SUNK_ALL && (winner < 0 || winner > 1
+                || !boards[1 - winner].gameOver())) {
+            return "winner didn't sink every ship";
+        }
+        if (outcome != SUNK_ALL && sunkAll) {
+            return "every ship was sunk but the outcome is " + outcome;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of bytes the replay takes when encoded, without the
+     * header of its record.
+     *
+     * @return the encoded size
+     */
+    int encodedSize() {
+        int size = 8 + 8 + 1 + 1 + 1 + 2 + moveCount;
+        for (int player = 0; player < 2; ++player) {
+            size += 2 + names[player].getBytes(StandardCharsets.UTF_8).length;
+            size += 1 + fleets[player].getShipCount() * 2;
+        }
+        return size;
+    }
+
+    /**
+     * Writes the replay to a buffer.
+     *
+     * @param buffer the buffer, with at least {@link #encodedSize()} bytes
+     *            remaining
+     */
+    void encode(ByteBuffer buffer) {
+        buffer.putLong(id);
+        buffer.putLong(endTime);
+        buffer.put((byte) outcome);
+        buffer.put((byte) winner);
+        for (int player = 0; player < 2; ++player) {
+            byte[] name = names[player].getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) name.length);
+            buffer.put(name);
+        }
+        for (int player = 0; player < 2; ++player) {
+            FleetPlacementMessage fleet = fleets[player];
+            buffer.put((byte) fleet.getShipCount());
+            for (int i = 0; i < fleet.getShipCount(); ++i) {
+                buffer.put((byte) fleet.getType(i).ordinal());
+                int square = fleet.getY(i) * Board.BOARD_DIMENSION
+                        + fleet.getX(i);
+                buffer.put((byte) (fleet.isVertical(i) ? square | 0x80
+                        : square));
+            }
+        }
+        buffer.put((byte) firstTurn);
+        buffer.putShort((short) moveCount);
+        buffer.put(moves, 0, moveCount);
+    }
+
+    /**
+     * Reads a replay written by {@link #encode(ByteBuffer)}.
+     *
+     * @param buffer the buffer, positioned at the start of the replay
+     * @return the replay
+     */
+    static Replay decode(ByteBuffer buffer) {
+        long id = buffer.getLong();
+        long endTime = buffer.getLong();
+        int outcome = buffer.get();
+        int winner = buffer.get();
+        String[] names = new String[2];
+        for (int player = 0; player < 2; ++player) {
+            byte[] name = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(name);
+            names[player] = new String(name, StandardCharsets.UTF_8);
+        }
+        Ship.Type[] shipTypes = Ship.Type.values();
+        FleetPlacementMessage[] fleets = new FleetPlacementMessage[2];
+        for (int player = 0; player < 2; ++player) {
+            int count = buffer.get();
+            int[] types = new int[count];
+            int[] xs = new int[count];
+            int[] ys = new int[count];
+            boolean[] vertical = new boolean[count];
+            for (int i = 0; i < count; ++i) {
+                types[i] = (buffer.get() & 0xFF) % shipTypes.length;
+                int square = buffer.get() & 0xFF;
+                vertical[i] = (square & 0x80) != 0;
+                xs[i] = (square & 0x7F) % Board.BOARD_DIMENSION;
+                ys[i] = (square & 0x7F) / Board.BOARD_DIMENSION;
+            }
+            fleets[player] = new FleetPlacementMessage(types, xs, ys,
+                    vertical);
+        }
+        int firstTurn = buffer.get();
+        int moveCount = buffer.getShort() & 0xFFFF;
+        byte[] moves = new byte[moveCount];
+        buffer.get(moves);
+        return new Replay(id, endTime, outcome, winner, names[0], names[1],
+                fleets[0], fleets[1], firstTurn, moves, moveCount);
+    }
+
+}
@@ -0,0 +1,171 @@
+package server.replay;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the {@link Replay}s written by {@link ReplayWriter}s one at a time,
+ * from a single file or from every replay file in a directory, without
+ * loading whole files into memory. A file which ends part way through a
+ * record, or with a record that fails its checksum, is read up to that
+ * record.
+ * <p>
+ * Run on its own, it checks every replay in a directory against the rules
+ * of the game:
+ *
+ * <pre>
+ * java -classpath src server.replay.ReplayReader &lt;directory&gt;
+ * </pre>
+ */
+public class ReplayReader {
+
+    // longer records can't have been written by a ReplayWriter
+    private static final int MAX_RECORD = 64 * 1024;
+
+    private File[] files;
+    private int nextFile;
+    private DataInputStream in;
+    private byte[] record;
+    private CRC32 crc;
+    private long damaged;
+
+    /**
+     * Constructs a ReplayReader reading a replay file, or every replay file
+     * in a directory, oldest first.
+     *
+     * @param path a replay file or a directory of replay files
+     */
+    public ReplayReader(File path) {
+        this.files = path.isDirectory() ? ReplayWriter.listFiles(path)
+                : new File[] { path };
+        this.record = new byte[1024];
+        this.crc = new CRC32();
+    }
+
+    /**
+     * Reads the next replay.
+     *
+     * @return the replay, or null once every file has been read
+     * @throws IOException if a file can't be read
+     */
+    public Replay next() throws IOException {
+        while (true) {
+            if (in == null) {
+                if (nextFile == files.length) {
+                    return null;
+                }
+                in = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(files[nextFile++]), 64 * 1024));
+            }
+            Replay replay = readRecord();
+            if (replay != null) {
+                return replay;
+            }
+            in.close();
+            in = null;
+        }
+    }
+
+    /**
+     * Returns the number of files which ended with a damaged or unfinished
+     * record.
+     *
+     * @return the number of damaged files
+     */
+    public long getDamagedCount() {
+        return damaged;
+    }
+
+    /**
+     * Closes the file being read.
+     */
+    public void close() {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            in = null;
+        }
+        nextFile = files.length;
+    }
+
+    // reads a record of the current file, null at its end
+    private Replay readRecord() throws IOException {
+        int length;
+        int checksum;
+        try {
+            length = in.readInt();
+            checksum = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length <= 0 || length > MAX_RECORD) {
+            ++damaged;
+            return null;
+        }
+        if (record.length < length) {
+            record = new byte[Math.max(length, record.length * 2)];
+        }
+        try {
+            in.readFully(record, 0, length);
+        } catch (EOFException e) {
+            ++damaged;
+            return null;
+        }
+        crc.reset();
+        crc.update(record, 0, length);
+        if ((int) crc.getValue() != checksum) {
+            ++damaged;
+            return null;
+        }
+        try {
+            return Replay.decode(ByteBuffer.wrap(record, 0, length));
+        } catch (RuntimeException e) {
+            ++damaged;
+            return null;
+        }
+    }
+
+    /**
+     * Checks every replay in a directory, and prints the ones which break
+     * the rules along with how fast they were checked.
+     *
+     * @param args the directory of the replay files
+     * @throws IOException if a file can't be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: ReplayReader <directory>");
+            return;
+        }
+        ReplayReader reader = new ReplayReader(new File(args[0]));
+        long start = System.nanoTime();
+        long count = 0;
+        long broken = 0;
+        long moves = 0;
+        Replay replay;
+        while ((replay = reader.next()) != null) {
+            ++count;
+            moves += replay.getMoveCount();
+            String problem = replay.check();
+            if (problem != null) {
+                ++broken;
+                System.out.println("Game " + replay.getId() + ": " + problem);
+            }
+        }
+        long micros = Math.max(1, (System.nanoTime() - start) / 1000);
+        System.out.println(count + " replays, " + moves + " shots, " + broken
+                + " breaking the rules, " + reader.getDamagedCount()
+                + " damaged files, " + count * 1000000 / micros
+                + " replays per second");
+    }
+
+}
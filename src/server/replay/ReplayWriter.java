@@ -0,0 +1,214 @@
+package server.replay;
+
+import server.TimeoutService;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+/**
+ * Saves the finished games of one shard as {@link Replay}s. Replays are
+ * collected in memory and appended to the current file together, once a
+ * batch is full or the flush interval has passed since the first replay of
+ * the batch, so most games don't cost a write of their own. Files are named
+ * replay-&lt;shard&gt;-&lt;sequence&gt;.rpl, and a new one is started when
+ * the current one reaches the segment size.
+ * <p>
+ * Each replay is a record of an int length, an int CRC32 of the body, then
+ * the body, so that a reader can tell where a file cut short by a crash
+ * ends. The writer must only be used from the shard's thread.
+ */
+public class ReplayWriter {
+
+    // length and checksum
+    static final int RECORD_HEADER = 8;
+
+    private File directory;
+    private int shard;
+    private long sequence;
+    private int segmentSize;
+    private int batchSize;
+    private long flushInterval;
+    private TimeoutService thread;
+    private ByteBuffer batch;
+    private int batched;
+    private boolean flushPending;
+    private FileChannel channel;
+    private long fileSize;
+    private long written;
+    private CRC32 crc;
+
+    /**
+     * Constructs a ReplayWriter, which starts a new file after the last
+     * one the shard already has in the directory.
+     *
+     * @param directory the directory of the replay files
+     * @param shard the number of the shard
+     * @param segmentSize the size in bytes after which a new file is started
+     * @param batchSize the most replays written together
+     * @param flushInterval most time in milliseconds a replay waits for its
+     *            batch to fill before it is written
+     * @param thread the thread of the shard, which runs the flushes
+     * @throws IOException if the directory can't be created
+     */
+    public ReplayWriter(File directory, int shard, int segmentSize,
+            int batchSize, long flushInterval, TimeoutService thread)
+            throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        this.directory = directory;
+        this.shard = shard;
+        this.segmentSize = segmentSize;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushInterval = flushInterval;
+        this.thread = thread;
+        this.batch = ByteBuffer.allocate(64 * 1024);
+        this.crc = new CRC32();
+        for (File file : listFiles(directory)) {
+            if (shardOf(file) == shard) {
+                sequence = Math.max(sequence, sequenceOf(file) + 1);
+            }
+        }
+    }
+
+    /**
+     * Adds a finished game to the current batch, and writes the batch if it
+     * is full.
+     *
+     * @param replay the finished game
+     */
+    public void record(Replay replay) {
+        int size = replay.encodedSize();
+        if (batch.remaining() < RECORD_HEADER + size) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(
+                    batch.capacity() * 2, batch.position() + RECORD_HEADER
+                            + size));
+            batch.flip();
+            grown.put(batch);
+            batch = grown;
+        }
+        int start = batch.position();
+        batch.position(start + RECORD_HEADER);
+        replay.encode(batch);
+        crc.reset();
+        crc.update(batch.array(), start + RECORD_HEADER, size);
+        batch.putInt(start, size);
+        batch.putInt(start + 4, (int) crc.getValue());
+        ++batched;
+        if (batched >= batchSize || flushInterval <= 0) {
+            flush();
+        } else if (!flushPending) {
+            flushPending = true;
+            thread.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flushPending = false;
+                    flush();
+                }
+            }, flushInterval);
+        }
+    }
+
+    /**
+     * Appends the current batch to the current file, starting a new file
+     * first if the batch would take it past the segment size.
+     */
+    public void flush() {
+        if (batched == 0) {
+            return;
+        }
+        batch.flip();
+        try {
+            if (channel != null && fileSize > 0
+                    && fileSize + batch.remaining() > segmentSize) {
+                channel.close();
+                channel = null;
+            }
+            if (channel == null) {
+                File file = new File(directory, "replay-" + shard + "-"
+                        + sequence++ + ".rpl");
+                channel = new FileOutputStream(file, true).getChannel();
+                fileSize = channel.size();
+            }
+            while (batch.hasRemaining()) {
+                fileSize += channel.write(batch);
+            }
+            written += batched;
+        } catch (IOException e) {
+            e.printStackTrace();
+            channel = null;
+        }
+        batch.clear();
+        batched = 0;
+    }
+
+    /**
+     * Writes the current batch and closes the current file.
+     */
+    public void close() {
+        flush();
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Returns the number of replays written to the files since the writer
+     * was created.
+     *
+     * @return the number of replays written
+     */
+    public long getReplaysWritten() {
+        return written;
+    }
+
+    /**
+     * Returns the replay files in a directory, oldest first.
+     *
+     * @param directory the directory of the replay files
+     * @return the files, sorted by sequence number then shard
+     */
+    public static File[] listFiles(File directory) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.matches("replay-\\d+-\\d+\\.rpl");
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                int bySequence = Long.compare(sequenceOf(a), sequenceOf(b));
+                return bySequence != 0 ? bySequence
+                        : Integer.compare(shardOf(a), shardOf(b));
+            }
+        });
+        return files;
+    }
+
+    private static long sequenceOf(File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(name.lastIndexOf('-') + 1,
+                name.indexOf('.')));
+    }
+
+    private static int shardOf(File file) {
+        return Integer.parseInt(file.getName().split("[-.]")[1]);
+    }
+
+}
@@ -1,6 +1,7 @@
 package view;
 
 import client.MatchRoom;
+import server.messages.MatchRoomDeltaMessage;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -19,9 +20,12 @@ public class MatchRoomView extends JFrame {
     private DefaultListModel<RoomPlayer> playersListModel = new DefaultListModel<RoomPlayer>();
     private MatchRoom matchRoom;
     private boolean firstTimeListing = true;
-    private HashMap<String, String> matchRoomList;
+    private HashMap<String, String> matchRoomList = new HashMap<>();
+    private HashMap<String, RoomPlayer> roomPlayers = new HashMap<>();
     private JList<RoomPlayer> playersList;
     private JButton sendInvite;
+    private JButton quickMatch;
+    private boolean inQuickMatch;
     private JLabel playersNumber;
 
     public MatchRoomView() {
@@ -51,6 +55,21 @@ public class MatchRoomView extends JFrame {
         });
 
 
+        quickMatch = new JButton("Quick match");
+        quickMatch.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                inQuickMatch = !inQuickMatch;
+                if (inQuickMatch) {
+                    matchRoom.joinQuickMatch();
+                    quickMatch.setText("Cancel quick match");
+                } else {
+                    matchRoom.cancelQuickMatch();
+                    quickMatch.setText("Quick match");
+                }
+            }
+        });
+
         playersList.addListSelectionListener(new ListSelectionListener() {
             @Override
             public void valueChanged(ListSelectionEvent e) {
@@ -63,7 +82,10 @@ public class MatchRoomView extends JFrame {
 
         mainPanel.add(playersNumber, BorderLayout.NORTH);
         mainPanel.add(new JScrollPane(playersList), BorderLayout.CENTER);
-        mainPanel.add(sendInvite, BorderLayout.SOUTH);
+        JPanel buttons = new JPanel(new GridLayout(1, 2, 5, 0));
+        buttons.add(sendInvite);
+        buttons.add(quickMatch);
+        mainPanel.add(buttons, BorderLayout.SOUTH);
 
         add(mainPanel, BorderLayout.CENTER);
         setVisible(true);
@@ -76,6 +98,15 @@ public class MatchRoomView extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
     }
 
+    /**
+     * Resets the quick match button once the player has left the quick match
+     * queue, by being paired with an opponent.
+     */
+    public void quickMatchEnded() {
+        inQuickMatch = false;
+        quickMatch.setText("Quick match");
+    }
+
     private class PlayersListMouseAdapter extends MouseAdapter {
 
         public void mouseClicked(MouseEvent e) {
@@ -136,14 +167,59 @@ public class MatchRoomView extends JFrame {
             HashMap<String, String> matchRoomList) {
         this.matchRoomList = matchRoomList;
         this.playersListModel.clear();
+        this.roomPlayers.clear();
         for (Map.Entry<String, String> entry : matchRoomList.entrySet()) {
-            String key = entry.getKey();
-            if (!key.equals(matchRoom.getKey())) {
-                String name = entry.getValue();
-                RoomPlayer player = new RoomPlayer(key, name);
-                this.playersListModel.addElement(player);
+            addRoomPlayer(entry.getKey(), entry.getValue());
+        }
+        updatePlayersNumber();
+    }
+
+    /**
+     * Applies changes to the match room list, starting from the change at
+     * the given index, without rebuilding the rest of the list.
+     *
+     * @param delta the changes sent by the server
+     * @param firstIndex index of the first change to apply
+     */
+    public synchronized void applyMatchRoomChanges(MatchRoomDeltaMessage delta,
+            int firstIndex) {
+        for (int i = firstIndex; i < delta.getChangeCount(); ++i) {
+            String key = delta.getKey(i);
+            switch (delta.getChange(i)) {
+            case MatchRoomDeltaMessage.PLAYER_ADDED:
+                matchRoomList.put(key, delta.getName(i));
+                addRoomPlayer(key, delta.getName(i));
+                break;
+            case MatchRoomDeltaMessage.PLAYER_REMOVED:
+                matchRoomList.remove(key);
+                RoomPlayer removed = roomPlayers.remove(key);
+                if (removed != null) {
+                    playersListModel.removeElement(removed);
+                }
+                break;
+            case MatchRoomDeltaMessage.NAME_CHANGED:
+                matchRoomList.put(key, delta.getName(i));
+                RoomPlayer renamed = roomPlayers.get(key);
+                if (renamed != null) {
+                    renamed.name = delta.getName(i);
+                    int index = playersListModel.indexOf(renamed);
+                    playersListModel.set(index, renamed);
+                }
+                break;
             }
         }
+        updatePlayersNumber();
+    }
+
+    private void addRoomPlayer(String key, String name) {
+        if (!key.equals(matchRoom.getKey()) && !roomPlayers.containsKey(key)) {
+            RoomPlayer player = new RoomPlayer(key, name);
+            roomPlayers.put(key, player);
+            this.playersListModel.addElement(player);
+        }
+    }
+
+    private void updatePlayersNumber() {
         if (playersList.isSelectionEmpty()) {
             sendInvite.setEnabled(false);
         }